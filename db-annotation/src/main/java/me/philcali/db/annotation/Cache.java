@@ -0,0 +1,25 @@
+package me.philcali.db.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Read through cache of entities on the generated read method, or of result
+ * pages on the generated list methods. It is disabled until bounded by entries
+ * and / or bytes.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface Cache {
+    enum Eviction {
+        LRU,
+        TINY_LFU;
+    }
+
+    long maxEntries() default 0;
+    long maxBytes() default 0;
+    long ttlSeconds() default 0;
+    Eviction eviction() default Eviction.TINY_LFU;
+    int stripes() default 16;
+}
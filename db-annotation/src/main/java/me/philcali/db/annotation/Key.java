@@ -10,4 +10,9 @@ import java.lang.annotation.Target;
 public @interface Key {
     String partition();
     String sort() default "";
+
+    /**
+     * The secondary index the keys belong to, for the indexes of a Repository.
+     */
+    String index() default "";
 }
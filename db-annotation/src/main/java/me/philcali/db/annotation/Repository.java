@@ -14,13 +14,34 @@ public @interface Repository {
         UPDATE,
         DELETE,
         PUT,
-        LIST;
+        LIST,
+        BATCH_GET,
+        BATCH_PUT,
+        BATCH_DELETE;
+    }
+
+    /**
+     * Where the generated list methods learn the table's keys and indexes:
+     * by describing the table when the repository is built, or from the
+     * declared keys and indexes alone, which VERIFIED also checks against
+     * the table in the background, warning about any difference.
+     */
+    enum Schema {
+        DESCRIBE,
+        DECLARED,
+        VERIFIED;
     }
 
     String[] value() default {};
     String prefix() default "";
     Key[] keys() default {};
+    Key[] indexes() default {};
+    Schema schema() default Schema.DESCRIBE;
     boolean partiallyDefined() default false;
+    Cache cache() default @Cache;
+    Cache listCache() default @Cache;
+    Tracking tracking() default @Tracking;
+    WriteBehind writeBehind() default @WriteBehind;
 
     @Retention(RetentionPolicy.SOURCE)
     @Target(ElementType.METHOD)
@@ -0,0 +1,19 @@
+package me.philcali.db.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Change tracking of the entities the generated methods read and write, so
+ * the generated update only writes the attributes that changed since, and
+ * removes the ones nulled. It is disabled until bounded by entries and / or
+ * bytes, and the update is then a partial update of every non null property.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface Tracking {
+    long maxEntries() default 0;
+    long maxBytes() default 0;
+    int stripes() default 16;
+}
@@ -0,0 +1,20 @@
+package me.philcali.db.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Write behind of the generated puts, updates and deletes, which are held
+ * for up to a window, keeping only the last write of every key, and written
+ * with BatchWriteItem. It is disabled until given a window; the buffer is
+ * also flushed once max batch size keys are pending, and a writer that gets
+ * max pending keys ahead flushes it before returning.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface WriteBehind {
+    long windowMillis() default 0;
+    int maxBatchSize() default 25;
+    int maxPending() default 1000;
+}
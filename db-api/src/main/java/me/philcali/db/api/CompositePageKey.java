@@ -0,0 +1,77 @@
+package me.philcali.db.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A page key made up of many independent cursors, ie: one per scan segment
+ * or sub-query. The flattened key nests every cursor's key under its id, so
+ * the token can be round tripped through anything that handles an IPageKey.
+ */
+public class CompositePageKey implements IPageKey {
+    private final Map<String, IPageKey> cursors;
+    private final Map<String, Object> attributes;
+
+    public CompositePageKey() {
+        this.cursors = new LinkedHashMap<>();
+        this.attributes = new LinkedHashMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Optional<CompositePageKey> fromToken(final IPageKey token) {
+        if (Objects.isNull(token) || token instanceof CompositePageKey) {
+            return Optional.ofNullable((CompositePageKey) token);
+        }
+        final CompositePageKey composite = new CompositePageKey();
+        token.getKey().forEach((id, value) -> {
+            if (value instanceof Map) {
+                final PageKey cursor = new PageKey();
+                cursor.setKey((Map<String, Object>) value);
+                composite.addCursor(id, cursor);
+            } else {
+                composite.addAttribute(id, value);
+            }
+        });
+        return Optional.of(composite);
+    }
+
+    public CompositePageKey addAttribute(final String name, final Object value) {
+        attributes.put(name, value);
+        return this;
+    }
+
+    public CompositePageKey addCursor(final String id, final IPageKey cursor) {
+        cursors.put(id, cursor);
+        return this;
+    }
+
+    public Optional<Object> getAttribute(final String name) {
+        return Optional.ofNullable(attributes.get(name));
+    }
+
+    public Optional<IPageKey> getCursor(final String id) {
+        return Optional.ofNullable(cursors.get(id));
+    }
+
+    public Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    public Map<String, IPageKey> getCursors() {
+        return Collections.unmodifiableMap(cursors);
+    }
+
+    public boolean isEmpty() {
+        return cursors.isEmpty();
+    }
+
+    @Override
+    public Map<String, Object> getKey() {
+        final Map<String, Object> key = new LinkedHashMap<>(attributes);
+        cursors.forEach((id, cursor) -> key.put(id, cursor.getKey()));
+        return key;
+    }
+}
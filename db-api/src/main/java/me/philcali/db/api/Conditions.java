@@ -1,6 +1,11 @@
 package me.philcali.db.api;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
 import me.philcali.db.api.ICondition.Comparator;
+import me.philcali.db.api.IConditionExpression.Logical;
 
 public final class Conditions {
     public static class NamedCondition {
@@ -67,6 +72,51 @@ public final class Conditions {
         return new NamedCondition(attribute);
     }
 
+    public static IConditionExpression and(final ICondition ... conditions) {
+        return express(Logical.AND, conditions);
+    }
+
+    public static IConditionExpression not(final ICondition condition) {
+        return express(Logical.NOT, condition);
+    }
+
+    public static IConditionExpression or(final ICondition ... conditions) {
+        return express(Logical.OR, conditions);
+    }
+
+    private static IConditionExpression express(final Logical logical, final ICondition ... children) {
+        if (Objects.isNull(children) || children.length == 0) {
+            throw new IllegalArgumentException(logical + " needs at least one condition");
+        }
+        final List<ICondition> conditions = new ArrayList<>();
+        final List<IConditionExpression> expressions = new ArrayList<>();
+        for (final ICondition child : children) {
+            if (child instanceof IConditionExpression) {
+                expressions.add((IConditionExpression) child);
+            } else {
+                conditions.add(Objects.requireNonNull(child));
+            }
+        }
+        final ICondition[] leaves = conditions.toArray(new ICondition[conditions.size()]);
+        final IConditionExpression[] nested = expressions.toArray(new IConditionExpression[expressions.size()]);
+        return new IConditionExpression() {
+            @Override
+            public ICondition[] getConditions() {
+                return leaves;
+            }
+
+            @Override
+            public IConditionExpression[] getExpressions() {
+                return nested;
+            }
+
+            @Override
+            public Logical getLogicalEvaluation() {
+                return logical;
+            }
+        };
+    }
+
     private static ICondition create(final String attribute, final Comparator condition, final Object...values) {
         return new ICondition() {
             @Override
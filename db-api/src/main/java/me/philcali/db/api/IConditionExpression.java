@@ -1,6 +1,10 @@
 package me.philcali.db.api;
 
-// TODO: make this actually work
+/**
+ * A node in a tree of conditions: every leaf condition and nested expression
+ * under it combined by its logical evaluation. A NOT negates all of them
+ * taken together. Build them with Conditions.and, or and not.
+ */
 public interface IConditionExpression extends ICondition, ILogicalWords<IConditionExpression> {
     enum Logical {
         AND,
@@ -10,22 +14,7 @@ public interface IConditionExpression extends ICondition, ILogicalWords<IConditi
 
     @Override
     default IConditionExpression and(final IConditionExpression combined) {
-        return new IConditionExpression() {
-            @Override
-            public ICondition[] getConditions() {
-                return null;
-            }
-
-            @Override
-            public IConditionExpression[] getExpressions() {
-                return new IConditionExpression[] { IConditionExpression.this, combined };
-            }
-
-            @Override
-            public Logical getLogicalEvaluation() {
-                return Logical.AND;
-            }
-        };
+        return Conditions.and(this, combined);
     }
 
     @Override
@@ -51,21 +40,6 @@ public interface IConditionExpression extends ICondition, ILogicalWords<IConditi
 
     @Override
     default IConditionExpression or(final IConditionExpression combined) {
-        return new IConditionExpression() {
-            @Override
-            public ICondition[] getConditions() {
-                return null;
-            }
-
-            @Override
-            public IConditionExpression[] getExpressions() {
-                return new IConditionExpression[] { IConditionExpression.this, combined };
-            }
-
-            @Override
-            public Logical getLogicalEvaluation() {
-                return Logical.OR;
-            }
-        };
+        return Conditions.or(this, combined);
     }
 }
@@ -1,13 +1,13 @@
 package me.philcali.db.api;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class PageKey implements IPageKey {
     private final Map<String, Object> compositeKey;
 
     public PageKey() {
-        this.compositeKey = new HashMap<>();
+        this.compositeKey = new LinkedHashMap<>();
     }
 
     public PageKey addKey(final String key, final Object value) {
@@ -0,0 +1,498 @@
+package me.philcali.db.api;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Turns page tokens into compact, opaque strings that are safe to put in a
+ * URL, and back. The key attributes keep their types (strings, integers,
+ * decimals, binary, booleans and nested maps), and a CompositePageKey keeps
+ * its attributes and cursors, nested composites included.
+ *
+ * Every token is tagged: with a CRC32 that catches corrupted tokens, or,
+ * given a secret, with a truncated HMAC-SHA256 that also catches forged ones.
+ * A codec with a secret only decodes tokens signed with it. Bad tokens of any
+ * kind fail to decode with an IllegalArgumentException.
+ */
+public final class PageTokenCodec {
+    public static final int VERSION = 1;
+    private static final int MAX_DEPTH = 16;
+    private static final int SIGNATURE_LENGTH = 12;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final String HMAC = "HmacSHA256";
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+    private static final int[] DIGITS = new int[128];
+
+    private static final byte CHECKSUM = 0;
+    private static final byte SIGNATURE = 1;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte STRING = 3;
+    private static final byte INTEGER = 4;
+    private static final byte DECIMAL = 5;
+    private static final byte NUMBER = 6;
+    private static final byte BINARY = 7;
+    private static final byte MAP = 8;
+    private static final byte PAGE_KEY = 9;
+    private static final byte COMPOSITE = 10;
+
+    static {
+        Arrays.fill(DIGITS, -1);
+        for (int index = 0; index < ALPHABET.length; index++) {
+            DIGITS[ALPHABET[index]] = index;
+        }
+    }
+
+    public static class Builder {
+        private byte[] secret;
+
+        public PageTokenCodec build() {
+            return new PageTokenCodec(this);
+        }
+
+        /**
+         * Signs the tokens with the secret, which every codec decoding them must share.
+         */
+        public Builder withSecret(final byte[] secret) {
+            this.secret = Arrays.copyOf(secret, secret.length);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final SecretKeySpec secret;
+    private final ThreadLocal<Mac> macs;
+
+    private PageTokenCodec(final Builder builder) {
+        this.secret = Objects.isNull(builder.secret) ? null : new SecretKeySpec(builder.secret, HMAC);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac mac = Mac.getInstance(HMAC);
+                mac.init(secret);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to sign page tokens with " + HMAC, e);
+            }
+        });
+    }
+
+    /**
+     * @return the token as a string, or null for no token
+     */
+    public String encode(final IPageKey token) {
+        if (Objects.isNull(token)) {
+            return null;
+        }
+        final Output output = new Output();
+        output.write(VERSION);
+        output.write(Objects.isNull(secret) ? CHECKSUM : SIGNATURE);
+        writeToken(output, token, 0);
+        if (Objects.isNull(secret)) {
+            final CRC32 crc = new CRC32();
+            crc.update(output.bytes, 0, output.size);
+            final long value = crc.getValue();
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                output.write((int) (value >>> shift));
+            }
+        } else {
+            final Mac mac = macs.get();
+            mac.update(output.bytes, 0, output.size);
+            output.write(mac.doFinal(), 0, SIGNATURE_LENGTH);
+        }
+        return toBase64(output.bytes, output.size);
+    }
+
+    /**
+     * @return the token the string was encoded from, or null for a null or empty string
+     */
+    public IPageKey decode(final String token) {
+        if (Objects.isNull(token) || token.isEmpty()) {
+            return null;
+        }
+        final byte[] bytes = fromBase64(token);
+        if (bytes.length < 2) {
+            throw invalid("it is too short");
+        }
+        if (bytes[0] != VERSION) {
+            throw invalid("version " + bytes[0] + " is not supported");
+        }
+        final int length;
+        if (Objects.isNull(secret)) {
+            if (bytes[1] != CHECKSUM) {
+                throw invalid("it is signed");
+            }
+            length = bytes.length - CHECKSUM_LENGTH;
+            if (length < 2) {
+                throw invalid("it is too short");
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            final long value = crc.getValue();
+            for (int index = 0; index < CHECKSUM_LENGTH; index++) {
+                if (bytes[length + index] != (byte) (value >>> (24 - index * 8))) {
+                    throw invalid("its checksum does not match");
+                }
+            }
+        } else {
+            if (bytes[1] != SIGNATURE) {
+                throw invalid("it is not signed");
+            }
+            length = bytes.length - SIGNATURE_LENGTH;
+            if (length < 2) {
+                throw invalid("it is too short");
+            }
+            final Mac mac = macs.get();
+            mac.update(bytes, 0, length);
+            final byte[] expected = mac.doFinal();
+            int difference = 0;
+            for (int index = 0; index < SIGNATURE_LENGTH; index++) {
+                difference |= expected[index] ^ bytes[length + index];
+            }
+            if (difference != 0) {
+                throw invalid("its signature does not match");
+            }
+        }
+        final Input input = new Input(bytes, 2, length);
+        final Object decoded = readValue(input, 0);
+        if (!(decoded instanceof IPageKey) || input.position != length) {
+            throw invalid("it is malformed");
+        }
+        return (IPageKey) decoded;
+    }
+
+    private static IllegalArgumentException invalid(final String reason) {
+        return new IllegalArgumentException("Invalid page token: " + reason);
+    }
+
+    private void writeToken(final Output output, final IPageKey token, final int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Page tokens cannot nest deeper than " + MAX_DEPTH);
+        }
+        if (token instanceof CompositePageKey) {
+            final CompositePageKey composite = (CompositePageKey) token;
+            output.write(COMPOSITE);
+            writeEntries(output, composite.getAttributes(), depth);
+            output.writeLength(composite.getCursors().size());
+            composite.getCursors().forEach((id, cursor) -> {
+                output.writeString(id);
+                writeToken(output, cursor, depth + 1);
+            });
+        } else {
+            output.write(PAGE_KEY);
+            writeEntries(output, token.getKey(), depth);
+        }
+    }
+
+    private void writeEntries(final Output output, final Map<?, ?> entries, final int depth) {
+        output.writeLength(entries.size());
+        entries.forEach((name, value) -> {
+            output.writeString(name.toString());
+            writeValue(output, value, depth + 1);
+        });
+    }
+
+    private void writeValue(final Output output, final Object value, final int depth) {
+        if (Objects.isNull(value)) {
+            output.write(NULL);
+        } else if (value instanceof String) {
+            output.write(STRING);
+            output.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            output.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            output.write(INTEGER);
+            output.writeSigned(((Number) value).longValue());
+        } else if (value instanceof BigDecimal && ((BigDecimal) value).unscaledValue().bitLength() < Long.SIZE) {
+            final BigDecimal decimal = (BigDecimal) value;
+            output.write(DECIMAL);
+            output.writeSigned(decimal.scale());
+            output.writeSigned(decimal.unscaledValue().longValue());
+        } else if (value instanceof Number) {
+            output.write(NUMBER);
+            output.writeString(value instanceof BigDecimal || value instanceof BigInteger
+                    ? value.toString()
+                    : new BigDecimal(value.toString()).toString());
+        } else if (value instanceof byte[]) {
+            final byte[] binary = (byte[]) value;
+            output.write(BINARY);
+            output.writeLength(binary.length);
+            output.write(binary, 0, binary.length);
+        } else if (value instanceof ByteBuffer) {
+            final ByteBuffer binary = ((ByteBuffer) value).duplicate();
+            final int length = binary.remaining();
+            output.write(BINARY);
+            output.writeLength(length);
+            output.ensure(length);
+            binary.get(output.bytes, output.size, length);
+            output.size += length;
+        } else if (value instanceof IPageKey) {
+            writeToken(output, (IPageKey) value, depth);
+        } else if (value instanceof Map) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Page tokens cannot nest deeper than " + MAX_DEPTH);
+            }
+            output.write(MAP);
+            writeEntries(output, (Map<?, ?>) value, depth);
+        } else {
+            throw new IllegalArgumentException("Page tokens cannot hold a " + value.getClass().getName());
+        }
+    }
+
+    private Object readValue(final Input input, final int depth) {
+        if (depth > MAX_DEPTH) {
+            throw invalid("it nests too deep");
+        }
+        final byte type = input.read();
+        switch (type) {
+        case NULL:
+            return null;
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case STRING:
+            return input.readString();
+        case INTEGER:
+            return input.readSigned();
+        case DECIMAL:
+            final long scale = input.readSigned();
+            if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+                throw invalid("it is malformed");
+            }
+            return BigDecimal.valueOf(input.readSigned(), (int) scale);
+        case NUMBER:
+            try {
+                return new BigDecimal(input.readString());
+            } catch (NumberFormatException e) {
+                throw invalid("it is malformed");
+            }
+        case BINARY:
+            final int length = input.readLength();
+            final byte[] binary = Arrays.copyOfRange(input.bytes, input.position, input.position + length);
+            input.position += length;
+            return binary;
+        case MAP:
+            final Map<String, Object> map = new LinkedHashMap<>();
+            readEntries(input, depth, map::put);
+            return map;
+        case PAGE_KEY:
+            final PageKey pageKey = new PageKey();
+            readEntries(input, depth, pageKey::addKey);
+            return pageKey;
+        case COMPOSITE:
+            final CompositePageKey composite = new CompositePageKey();
+            readEntries(input, depth, composite::addAttribute);
+            final int cursors = input.readLength();
+            for (int index = 0; index < cursors; index++) {
+                final String id = input.readString();
+                final Object cursor = readValue(input, depth + 1);
+                if (!(cursor instanceof IPageKey)) {
+                    throw invalid("it is malformed");
+                }
+                composite.addCursor(id, (IPageKey) cursor);
+            }
+            return composite;
+        default:
+            throw invalid("it is malformed");
+        }
+    }
+
+    private interface Entries {
+        Object add(String name, Object value);
+    }
+
+    private void readEntries(final Input input, final int depth, final Entries entries) {
+        final int count = input.readLength();
+        for (int index = 0; index < count; index++) {
+            final String name = input.readString();
+            entries.add(name, readValue(input, depth + 1));
+        }
+    }
+
+    private static String toBase64(final byte[] bytes, final int length) {
+        final char[] chars = new char[(length * 4 + 2) / 3];
+        int position = 0;
+        int index = 0;
+        for (; index + 2 < length; index += 3) {
+            final int bits = (bytes[index] & 0xff) << 16 | (bytes[index + 1] & 0xff) << 8 | bytes[index + 2] & 0xff;
+            chars[position++] = ALPHABET[bits >>> 18];
+            chars[position++] = ALPHABET[bits >>> 12 & 0x3f];
+            chars[position++] = ALPHABET[bits >>> 6 & 0x3f];
+            chars[position++] = ALPHABET[bits & 0x3f];
+        }
+        if (index < length) {
+            final int bits = (bytes[index] & 0xff) << 16 | (index + 1 < length ? (bytes[index + 1] & 0xff) << 8 : 0);
+            chars[position++] = ALPHABET[bits >>> 18];
+            chars[position++] = ALPHABET[bits >>> 12 & 0x3f];
+            if (index + 1 < length) {
+                chars[position++] = ALPHABET[bits >>> 6 & 0x3f];
+            }
+        }
+        return new String(chars);
+    }
+
+    private static byte[] fromBase64(final String token) {
+        final int length = token.length();
+        if (length % 4 == 1) {
+            throw invalid("it is not URL safe base64");
+        }
+        final byte[] bytes = new byte[length * 3 / 4];
+        int position = 0;
+        int bits = 0;
+        int count = 0;
+        for (int index = 0; index < length; index++) {
+            final char c = token.charAt(index);
+            final int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                throw invalid("it is not URL safe base64");
+            }
+            bits = bits << 6 | digit;
+            if (++count == 4) {
+                bytes[position++] = (byte) (bits >>> 16);
+                bytes[position++] = (byte) (bits >>> 8);
+                bytes[position++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            bytes[position++] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            bytes[position++] = (byte) (bits >>> 10);
+            bytes[position++] = (byte) (bits >>> 2);
+        }
+        return bytes;
+    }
+
+    /*
+     * A growing buffer of the encoded token, with room for its tag.
+     */
+    private static final class Output {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        private void ensure(final int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        private void write(final int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void write(final byte[] values, final int offset, final int length) {
+            ensure(length);
+            System.arraycopy(values, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void writeLength(final int length) {
+            writeUnsigned(length);
+        }
+
+        private void writeSigned(final long value) {
+            writeUnsigned(value << 1 ^ value >> 63);
+        }
+
+        private void writeUnsigned(final long value) {
+            ensure(10);
+            long remaining = value;
+            while ((remaining & ~0x7fL) != 0) {
+                bytes[size++] = (byte) (remaining & 0x7f | 0x80);
+                remaining >>>= 7;
+            }
+            bytes[size++] = (byte) remaining;
+        }
+
+        private void writeString(final String value) {
+            final int length = value.length();
+            for (int index = 0; index < length; index++) {
+                if (value.charAt(index) >= 0x80) {
+                    final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    writeLength(encoded.length);
+                    write(encoded, 0, encoded.length);
+                    return;
+                }
+            }
+            writeLength(length);
+            ensure(length);
+            for (int index = 0; index < length; index++) {
+                bytes[size++] = (byte) value.charAt(index);
+            }
+        }
+    }
+
+    /*
+     * Reads the body of a decoded token, never past its tag.
+     */
+    private static final class Input {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        private Input(final byte[] bytes, final int position, final int limit) {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private byte read() {
+            if (position >= limit) {
+                throw invalid("it is truncated");
+            }
+            return bytes[position++];
+        }
+
+        private int readLength() {
+            final long length = readUnsigned();
+            if (length > limit - position) {
+                throw invalid("it is truncated");
+            }
+            return (int) length;
+        }
+
+        private long readSigned() {
+            final long value = readUnsigned();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        private long readUnsigned() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                final byte next = read();
+                value |= (long) (next & 0x7f) << shift;
+                if (next >= 0) {
+                    return value;
+                }
+            }
+            throw invalid("it is malformed");
+        }
+
+        private String readString() {
+            final int length = readLength();
+            final String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
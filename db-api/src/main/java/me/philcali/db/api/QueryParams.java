@@ -1,8 +1,15 @@
 package me.philcali.db.api;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class QueryParams {
@@ -10,7 +17,9 @@ public class QueryParams {
         private int maxSize = DEFAULT_MAX_SIZE;
         private IPageKey token;
         private Map<String, ICondition> conditions = new ConcurrentHashMap<>();
+        private IConditionExpression expression;
         private Collation collation = Collation.ASCENDING;
+        private Set<String> projections = new LinkedHashSet<>();
 
         public QueryParams build() {
             return new QueryParams(this);
@@ -24,10 +33,18 @@ public class QueryParams {
             return conditions;
         }
 
+        public IConditionExpression getExpression() {
+            return expression;
+        }
+
         public int getMaxSize() {
             return maxSize;
         }
 
+        public Set<String> getProjections() {
+            return projections;
+        }
+
         public IPageKey getToken() {
             return token;
         }
@@ -41,18 +58,44 @@ public class QueryParams {
             return withConditions(Arrays.asList(conditions));
         }
 
+        /**
+         * Expressions among the conditions are combined with any expression
+         * already set; every other condition replaces the one on its attribute.
+         */
         public Builder withConditions(final List<ICondition> conditions) {
             conditions.forEach(condition -> {
-                this.conditions.put(condition.getAttribute(), condition);
+                if (condition instanceof IConditionExpression) {
+                    final IConditionExpression combined = (IConditionExpression) condition;
+                    withExpression(Objects.isNull(expression) ? combined : expression.and(combined));
+                } else {
+                    this.conditions.put(condition.getAttribute(), condition);
+                }
             });
             return this;
         }
 
+        /**
+         * Expression tree that has to hold along with the conditions.
+         */
+        public Builder withExpression(final IConditionExpression expression) {
+            this.expression = expression;
+            return this;
+        }
+
         public Builder withMaxSize(final int maxSize) {
             this.maxSize = maxSize;
             return this;
         }
 
+        public Builder withProjections(final String ... attributes) {
+            return withProjections(Arrays.asList(attributes));
+        }
+
+        public Builder withProjections(final Collection<String> attributes) {
+            this.projections.addAll(attributes);
+            return this;
+        }
+
         public Builder withToken(final IPageKey token) {
             this.token = token;
             return this;
@@ -73,13 +116,17 @@ public class QueryParams {
     private final IPageKey token;
     private final int maxSize;
     private final Map<String, ICondition> conditions;
+    private final IConditionExpression expression;
     private final Collation collation;
+    private final Set<String> projections;
 
     public QueryParams(final Builder builder) {
         this.conditions = builder.getConditions();
+        this.expression = builder.getExpression();
         this.maxSize = builder.getMaxSize();
         this.token = builder.getToken();
         this.collation = builder.getCollation();
+        this.projections = Collections.unmodifiableSet(new LinkedHashSet<>(builder.getProjections()));
     }
 
     public Collation getCollation() {
@@ -90,11 +137,29 @@ public class QueryParams {
         return conditions;
     }
 
+    public Optional<IConditionExpression> getExpression() {
+        return Optional.ofNullable(expression);
+    }
+
     public int getMaxSize() {
         return maxSize;
     }
 
+    public Set<String> getProjections() {
+        return projections;
+    }
+
     public IPageKey getToken() {
         return token;
     }
+
+    public Builder toBuilder() {
+        return builder()
+                .withCollation(collation)
+                .withConditions(new ArrayList<>(conditions.values()))
+                .withExpression(expression)
+                .withMaxSize(maxSize)
+                .withProjections(projections)
+                .withToken(token);
+    }
 }
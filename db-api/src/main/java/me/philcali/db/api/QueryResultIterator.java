@@ -0,0 +1,139 @@
+package me.philcali.db.api;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks every page of a query, following page tokens until they run out.
+ * Nothing is requested before the first hasNext, and from then on up to
+ * prefetch pages are requested ahead of the page being consumed, so the next
+ * round trip overlaps with the caller's work on the current page.
+ */
+public class QueryResultIterator<T> implements Iterator<T>, AutoCloseable {
+    public static final int DEFAULT_PREFETCH = 1;
+
+    public static <T> Stream<T> stream(final Function<QueryParams, QueryResult<T>> pager, final QueryParams params) {
+        return stream(pager, params, ForkJoinPool.commonPool(), DEFAULT_PREFETCH);
+    }
+
+    public static <T> Stream<T> stream(
+            final Function<QueryParams, QueryResult<T>> pager,
+            final QueryParams params,
+            final Executor executor,
+            final int prefetch) {
+        final QueryResultIterator<T> iterator = new QueryResultIterator<>(pager, params, executor, prefetch);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close);
+    }
+
+    private final Function<QueryParams, QueryResult<T>> pager;
+    private final QueryParams params;
+    private final Executor executor;
+    private final int prefetch;
+    private final Deque<CompletableFuture<QueryResult<T>>> pages;
+    private CompletableFuture<QueryResult<T>> tail;
+    private Iterator<T> current;
+    private boolean finished;
+    private volatile boolean closed;
+
+    public QueryResultIterator(
+            final Function<QueryParams, QueryResult<T>> pager,
+            final QueryParams params,
+            final Executor executor,
+            final int prefetch) {
+        this.pager = pager;
+        this.params = params;
+        this.executor = executor;
+        this.prefetch = Math.max(0, prefetch);
+        this.pages = new ArrayDeque<>();
+        this.current = Collections.emptyIterator();
+    }
+
+    public QueryResultIterator(final Function<QueryParams, QueryResult<T>> pager, final QueryParams params) {
+        this(pager, params, ForkJoinPool.commonPool(), DEFAULT_PREFETCH);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (finished || closed) {
+                return false;
+            }
+            if (pages.isEmpty()) {
+                schedule();
+            }
+            final CompletableFuture<QueryResult<T>> next = pages.poll();
+            while (pages.size() < prefetch && !isTailExhausted()) {
+                schedule();
+            }
+            final QueryResult<T> page = join(next);
+            if (Objects.isNull(page)) {
+                close();
+                return false;
+            }
+            current = page.getItems().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        closed = true;
+        pages.forEach(page -> page.cancel(false));
+        pages.clear();
+    }
+
+    private boolean isTailExhausted() {
+        return Objects.nonNull(tail) && tail.isDone() && !tail.isCompletedExceptionally() && Objects.isNull(tail.join());
+    }
+
+    private void schedule() {
+        if (Objects.isNull(tail)) {
+            tail = CompletableFuture.supplyAsync(() -> closed ? null : pager.apply(params), executor);
+        } else {
+            tail = tail.thenApplyAsync(this::nextPage, executor);
+        }
+        pages.add(tail);
+    }
+
+    private QueryResult<T> nextPage(final QueryResult<T> previous) {
+        if (closed || Objects.isNull(previous) || Objects.isNull(previous.getToken())) {
+            return null;
+        }
+        return pager.apply(params.toBuilder().withToken(previous.getToken()).build());
+    }
+
+    private QueryResult<T> join(final CompletableFuture<QueryResult<T>> page) {
+        try {
+            return page.join();
+        } catch (CompletionException ce) {
+            close();
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.philcali.db.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PageTokenCodecTest {
+    private final PageTokenCodec codec = PageTokenCodec.builder().build();
+
+    @Test
+    public void testRoundTripsTypedKeys() {
+        final PageKey token = new PageKey()
+                .addKey("id", "person-42")
+                .addKey("updateTime", new BigDecimal("1550000000042"))
+                .addKey("score", new BigDecimal("2.50"))
+                .addKey("huge", new BigDecimal("123456789012345678901234567890.5"))
+                .addKey("page", 7)
+                .addKey("photo", new byte[] { 1, 2, 3 })
+                .addKey("thumb", ByteBuffer.wrap(new byte[] { 4, 5 }))
+                .addKey("dead", true)
+                .addKey("name", "Frodo Bäggins")
+                .addKey("gone", null)
+                .addKey("nested", Collections.singletonMap("a", 1.5));
+        final String encoded = codec.encode(token);
+        assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+
+        final Map<String, Object> key = codec.decode(encoded).getKey();
+        assertEquals(Arrays.asList("id", "updateTime", "score", "huge", "page", "photo", "thumb", "dead", "name",
+                "gone", "nested"), Arrays.asList(key.keySet().toArray()));
+        assertEquals("person-42", key.get("id"));
+        assertEquals(new BigDecimal("1550000000042"), key.get("updateTime"));
+        assertEquals(new BigDecimal("2.50"), key.get("score"));
+        assertEquals(new BigDecimal("123456789012345678901234567890.5"), key.get("huge"));
+        assertEquals(7L, key.get("page"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) key.get("photo"));
+        assertArrayEquals(new byte[] { 4, 5 }, (byte[]) key.get("thumb"));
+        assertEquals(true, key.get("dead"));
+        assertEquals("Frodo Bäggins", key.get("name"));
+        assertNull(key.get("gone"));
+        assertEquals(Collections.singletonMap("a", new BigDecimal("1.5")), key.get("nested"));
+        assertNull(codec.encode(null));
+        assertNull(codec.decode(""));
+    }
+
+    @Test
+    public void testRoundTripsCompositeCursors() {
+        final CompositePageKey token = new CompositePageKey()
+                .addAttribute("union", 2)
+                .addCursor("0", new PageKey().addKey("id", "a"))
+                .addCursor("1", new CompositePageKey()
+                        .addAttribute("totalSegments", 4)
+                        .addCursor("3", new PageKey().addKey("id", "b")));
+        final CompositePageKey decoded = (CompositePageKey) codec.decode(codec.encode(token));
+        assertEquals(2L, decoded.getAttribute("union").get());
+        assertEquals(Arrays.asList("0", "1"), Arrays.asList(decoded.getCursors().keySet().toArray()));
+        assertEquals("a", decoded.getCursor("0").get().getKey().get("id"));
+        final CompositePageKey nested = (CompositePageKey) decoded.getCursor("1").get();
+        assertEquals(4L, nested.getAttribute("totalSegments").get());
+        assertEquals("b", nested.getCursor("3").get().getKey().get("id"));
+    }
+
+    @Test
+    public void testRejectsDamagedAndForgedTokens() {
+        final PageKey token = new PageKey().addKey("nextToken", "1ueGcxLPRx1Tr/XYExHnhbYLgveDs2J/wm36Hy4vbOwM=");
+        final String encoded = codec.encode(token);
+        final char last = encoded.charAt(encoded.length() / 2);
+        assertInvalid(codec, encoded.substring(0, encoded.length() / 2) + (last == 'A' ? 'B' : 'A')
+                + encoded.substring(encoded.length() / 2 + 1));
+        assertInvalid(codec, encoded + "!");
+        assertInvalid(codec, "Ag" + encoded.substring(2));
+
+        final PageTokenCodec signed = PageTokenCodec.builder()
+                .withSecret("secret".getBytes(StandardCharsets.UTF_8))
+                .build();
+        final String signedToken = signed.encode(token);
+        assertEquals(token.getKey(), signed.decode(signedToken).getKey());
+        assertInvalid(signed, encoded);
+        assertInvalid(codec, signedToken);
+        assertInvalid(PageTokenCodec.builder().withSecret(new byte[] { 1 }).build(), signedToken);
+    }
+
+    private static void assertInvalid(final PageTokenCodec codec, final String token) {
+        try {
+            codec.decode(token);
+            fail("Expected " + token + " to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid page token"));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package me.philcali.db.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +30,26 @@ public class QueryParamsTest {
         assertEquals(ICondition.Comparator.EQUALS, params.getConditions().get("name").getComparator());
         assertEquals("Philip", params.getConditions().get("name").getValue());
         assertNull(params.getToken());
+        assertFalse(params.getExpression().isPresent());
+    }
+
+    @Test
+    public void testExpressionsCombine() {
+        final QueryParams combined = params.toBuilder()
+                .withConditions(Conditions.or(
+                        Conditions.attribute("age").lt(20),
+                        Conditions.attribute("age").gt(60)))
+                .withConditions(Conditions.not(Conditions.attribute("race").equalsTo("elf")))
+                .build();
+        assertEquals(1, combined.getConditions().size());
+        final IConditionExpression expression = combined.getExpression().get();
+        assertEquals(IConditionExpression.Logical.AND, expression.getLogicalEvaluation());
+        assertEquals(0, expression.getConditions().length);
+        assertEquals(IConditionExpression.Logical.OR, expression.getExpressions()[0].getLogicalEvaluation());
+        assertEquals(2, expression.getExpressions()[0].getConditions().length);
+        assertEquals(IConditionExpression.Logical.NOT, expression.getExpressions()[1].getLogicalEvaluation());
+        assertEquals("race", expression.getExpressions()[1].getConditions()[0].getAttribute());
+        assertEquals(expression, combined.toBuilder().build().getExpression().get());
     }
 
 }
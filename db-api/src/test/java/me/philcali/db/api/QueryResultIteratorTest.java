@@ -0,0 +1,75 @@
+package me.philcali.db.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryResultIteratorTest {
+    private List<QueryParams> requests;
+    private Function<QueryParams, QueryResult<Integer>> pager;
+
+    @Before
+    public void setUp() {
+        requests = Collections.synchronizedList(new ArrayList<>());
+        pager = params -> {
+            requests.add(params);
+            final int page = Optional.ofNullable(params.getToken())
+                    .map(token -> (Integer) token.getKey().get("page"))
+                    .orElse(0);
+            final IPageKey next = page < 2 ? new PageKey().addKey("page", page + 1) : null;
+            return new QueryResult<>(next, Arrays.asList(page * 2, page * 2 + 1), next != null);
+        };
+    }
+
+    @Test
+    public void testStreamAllPages() {
+        final QueryParams params = QueryParams.builder()
+                .withMaxSize(2)
+                .withConditions(Conditions.attribute("name").equalsTo("Philip"))
+                .build();
+        try (Stream<Integer> stream = QueryResultIterator.stream(pager, params, Runnable::run, 2)) {
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), stream.collect(Collectors.toList()));
+        }
+        assertEquals(3, requests.size());
+        requests.forEach(request -> {
+            assertEquals(2, request.getMaxSize());
+            assertEquals("Philip", request.getConditions().get("name").getValue());
+        });
+    }
+
+    @Test
+    public void testFetchesNothingBeforeFirstUse() {
+        final QueryResultIterator<Integer> iterator = new QueryResultIterator<>(
+                pager, QueryParams.builder().build(), Runnable::run, 2);
+        assertEquals(0, requests.size());
+        assertEquals(Integer.valueOf(0), iterator.next());
+        assertEquals(3, requests.size());
+        iterator.close();
+    }
+
+    @Test
+    public void testEarlyTermination() {
+        final AtomicInteger calls = new AtomicInteger();
+        final QueryResultIterator<Integer> iterator = new QueryResultIterator<>(params -> {
+            calls.incrementAndGet();
+            return pager.apply(params);
+        }, QueryParams.builder().build(), Runnable::run, 0);
+        assertEquals(Integer.valueOf(0), iterator.next());
+        assertEquals(Integer.valueOf(1), iterator.next());
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        assertEquals(1, calls.get());
+    }
+}
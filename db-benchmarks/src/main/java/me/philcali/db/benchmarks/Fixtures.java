@@ -0,0 +1,121 @@
+package me.philcali.db.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.ICondition;
+import me.philcali.db.dynamo.BatchWriteAdapter;
+
+/**
+ * Synthetic data shared by the benchmarks. Nothing here touches the network:
+ * end to end cases run against an embedded DynamoDB Local.
+ */
+public final class Fixtures {
+    public static final String TABLE_NAME = "Benchmarks";
+    public static final String PEOPLE_TABLE_NAME = "GeneratedPeople";
+    public static final String[] RACES = { "hobbit", "human", "elf", "dwarf" };
+
+    public static Item person(final int index) {
+        final Map<String, Object> vehicle = new HashMap<>();
+        vehicle.put("make", "Nissan");
+        vehicle.put("model", "Leaf");
+        vehicle.put("year", 2000 + index % 20);
+        final Map<String, Object> vehicles = new HashMap<>();
+        vehicles.put("car", vehicle);
+        return new Item()
+                .withString("id", "person-" + index)
+                .withLong("updateTime", 1550000000000L + index)
+                .withString("name", "Person " + index)
+                .withString("race", RACES[index % RACES.length])
+                .withInt("age", 18 + index % 80)
+                .withBoolean("dead", index % 7 == 0)
+                .withStringSet("scopes", "auth", "fortitude")
+                .withMap("origin", new HashMap<>(Collections.singletonMap("place", "Shire " + index % 10)))
+                .withMap("vehicles", vehicles);
+    }
+
+    public static List<Item> people(final int count) {
+        final List<Item> items = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            items.add(person(index));
+        }
+        return items;
+    }
+
+    public static Map<String, AttributeValue> lastKey(final int index) {
+        final Map<String, AttributeValue> lastKey = new HashMap<>();
+        lastKey.put("id", new AttributeValue("person-" + index));
+        lastKey.put("updateTime", new AttributeValue().withN(Long.toString(1550000000000L + index)));
+        return lastKey;
+    }
+
+    public static List<ICondition> conditions() {
+        return Arrays.asList(
+                Conditions.attribute("race").equalsTo("hobbit"),
+                Conditions.attribute("age").between(20, 50),
+                Conditions.attribute("origin.place").in("Shire 1", "Shire 2", "Shire 3"),
+                Conditions.attribute("dead").notEqualsTo(true));
+    }
+
+    public static AmazonDynamoDB embedded() {
+        return DynamoDBEmbedded.create().amazonDynamoDB();
+    }
+
+    public static Table seed(final AmazonDynamoDB client, final int count) {
+        client.createTable(new CreateTableRequest()
+                .withTableName(TABLE_NAME)
+                .withAttributeDefinitions(
+                        new AttributeDefinition("id", ScalarAttributeType.S),
+                        new AttributeDefinition("updateTime", ScalarAttributeType.N),
+                        new AttributeDefinition("race", ScalarAttributeType.S),
+                        new AttributeDefinition("age", ScalarAttributeType.N))
+                .withKeySchema(
+                        new KeySchemaElement("id", KeyType.HASH),
+                        new KeySchemaElement("updateTime", KeyType.RANGE))
+                .withGlobalSecondaryIndexes(new GlobalSecondaryIndex()
+                        .withIndexName("age-index")
+                        .withProjection(new Projection().withProjectionType(ProjectionType.ALL))
+                        .withProvisionedThroughput(new ProvisionedThroughput(100L, 100L))
+                        .withKeySchema(
+                                new KeySchemaElement("race", KeyType.HASH),
+                                new KeySchemaElement("age", KeyType.RANGE)))
+                .withProvisionedThroughput(new ProvisionedThroughput(100L, 100L)));
+        client.createTable(new CreateTableRequest()
+                .withTableName(PEOPLE_TABLE_NAME)
+                .withAttributeDefinitions(new AttributeDefinition("name", ScalarAttributeType.S))
+                .withKeySchema(new KeySchemaElement("name", KeyType.HASH))
+                .withProvisionedThroughput(new ProvisionedThroughput(100L, 100L)));
+        final DynamoDB db = new DynamoDB(client);
+        BatchWriteAdapter.builder()
+                .withDynamoDB(db)
+                .withTableName(TABLE_NAME)
+                .withKeyNames("id", "updateTime")
+                .build()
+                .put(people(count));
+        return db.getTable(TABLE_NAME);
+    }
+
+    private Fixtures() {
+    }
+}
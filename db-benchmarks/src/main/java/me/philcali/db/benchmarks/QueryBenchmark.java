@@ -0,0 +1,86 @@
+package me.philcali.db.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+import me.philcali.db.dynamo.IRetrievalStrategy;
+import me.philcali.db.dynamo.QueryRetrievalStrategy;
+
+/**
+ * End to end retrieval against an embedded DynamoDB Local seeded with
+ * synthetic people.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int SEED_SIZE = 1000;
+
+    private AmazonDynamoDB client;
+    private Table table;
+    private IRetrievalStrategy query;
+    private QueryParams indexParams;
+    private QueryParams scanParams;
+
+    @Setup
+    public void setUp() {
+        client = Fixtures.embedded();
+        table = Fixtures.seed(client, SEED_SIZE);
+        query = QueryRetrievalStrategy.fromTable(table);
+        indexParams = QueryParams.builder()
+                .withConditions(Conditions.attribute("race").equalsTo("hobbit"))
+                .withConditions(Conditions.attribute("age").between(20, 50))
+                .withMaxSize(25)
+                .build();
+        scanParams = QueryParams.builder()
+                .withConditions(Conditions.attribute("origin.place").in("Shire 1", "Shire 2"))
+                .withMaxSize(25)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Benchmark
+    public QueryResult<Item> queryIndex() {
+        return query.apply(indexParams, table);
+    }
+
+    @Benchmark
+    public QueryResult<Item> scanWithFilter() {
+        return query.apply(scanParams, table);
+    }
+
+    @Benchmark
+    public List<Item> streamIndex() {
+        try (Stream<Item> items = query.stream(indexParams, table)) {
+            return items.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package me.philcali.db.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * Building params for every page request and mapping every page of results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParamsBenchmark {
+    @Param({ "10", "100" })
+    private int pageSize;
+    private List<ICondition> conditions;
+    private QueryParams params;
+    private PageKey token;
+    private QueryResult<Item> page;
+
+    @Setup
+    public void setUp() {
+        conditions = Fixtures.conditions();
+        params = QueryParams.builder().withConditions(conditions).withMaxSize(pageSize).build();
+        token = new PageKey().addKey("id", "person-42").addKey("updateTime", 1550000000042L);
+        page = new QueryResult<>(token, Fixtures.people(pageSize), true);
+    }
+
+    @Benchmark
+    public QueryParams build() {
+        return QueryParams.builder()
+                .withConditions(conditions)
+                .withMaxSize(pageSize)
+                .build();
+    }
+
+    @Benchmark
+    public QueryParams nextPage() {
+        return params.toBuilder().withToken(token).build();
+    }
+
+    @Benchmark
+    public QueryResult<String> map() {
+        return page.map(item -> item.getString("name"));
+    }
+}
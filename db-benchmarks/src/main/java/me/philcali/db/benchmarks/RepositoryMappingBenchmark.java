@@ -0,0 +1,113 @@
+package me.philcali.db.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+import me.philcali.db.processor.example.PersonRepositoryDynamo;
+import me.philcali.zero.lombok.example.Person;
+import me.philcali.zero.lombok.example.PersonData;
+import me.philcali.zero.lombok.example.VehicleData;
+
+/**
+ * The generated repository's Item to entity mapping, which every read and
+ * write funnels through, next to the Jackson conversion it falls back on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryMappingBenchmark {
+    public static class MappingRepository extends PersonRepositoryDynamo {
+        public MappingRepository(final String tableName, final DynamoDB db) {
+            super(tableName, db);
+        }
+
+        public Person read(final Item item) {
+            return fromItem(item);
+        }
+
+        public Item write(final Person person) {
+            return toItem(person);
+        }
+
+        public Person readConverted(final Item item) {
+            return fromItem(item, Person.class);
+        }
+
+        public Item writeConverted(final Person person) {
+            return toItem((Object) person);
+        }
+    }
+
+    private AmazonDynamoDB client;
+    private MappingRepository repository;
+    private Person person;
+    private Item item;
+
+    @Setup
+    public void setUp() {
+        client = Fixtures.embedded();
+        Fixtures.seed(client, 0);
+        repository = new MappingRepository(Fixtures.PEOPLE_TABLE_NAME, new DynamoDB(client));
+        person = PersonData.builder()
+                .withName("Philip Cali")
+                .withAge(99)
+                .withDead(false)
+                .addScopes("auth")
+                .addScopes("fortitude")
+                .putVehicles("car", VehicleData.builder()
+                        .withMake("Nissan")
+                        .withModel("Leaf")
+                        .withYear(2015)
+                        .build())
+                .build();
+        item = repository.write(person);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Benchmark
+    public Person fromItem() {
+        return repository.read(item);
+    }
+
+    @Benchmark
+    public Item toItem() {
+        return repository.write(person);
+    }
+
+    @Benchmark
+    public Person fromItemConverted() {
+        return repository.readConverted(item);
+    }
+
+    @Benchmark
+    public Item toItemConverted() {
+        return repository.writeConverted(person);
+    }
+
+    @Benchmark
+    public Person roundTrip() {
+        return repository.read(repository.write(person));
+    }
+}
@@ -0,0 +1,105 @@
+package me.philcali.db.dynamo;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import me.philcali.db.api.CompositePageKey;
+import me.philcali.db.api.IPageKey;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.PageTokenCodec;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.benchmarks.Fixtures;
+
+/**
+ * Converting last evaluated keys into page tokens and back into start keys,
+ * and encoding tokens for clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageKeyBenchmark {
+    private Map<String, AttributeValue> lastKey;
+    private QueryParams dynamoToken;
+    private QueryParams clientToken;
+    private PageTokenCodec codec;
+    private PageTokenCodec signedCodec;
+    private CompositePageKey compositeToken;
+    private String encodedToken;
+    private String encodedCompositeToken;
+
+    @Setup
+    public void setUp() {
+        lastKey = Fixtures.lastKey(42);
+        final PageKeyDynamo token = new PageKeyDynamo(lastKey);
+        final PageKey decoded = new PageKey();
+        decoded.setKey(token.getKey());
+        dynamoToken = QueryParams.builder().withToken(token).build();
+        clientToken = QueryParams.builder().withToken(decoded).build();
+        codec = PageTokenCodec.builder().build();
+        signedCodec = PageTokenCodec.builder().withSecret(new byte[] { 4, 2 }).build();
+        compositeToken = new CompositePageKey().addAttribute("totalSegments", 4);
+        for (int segment = 0; segment < 4; segment++) {
+            compositeToken.addCursor(Integer.toString(segment), new PageKeyDynamo(Fixtures.lastKey(segment)));
+        }
+        encodedToken = codec.encode(token);
+        encodedCompositeToken = codec.encode(compositeToken);
+    }
+
+    @Benchmark
+    public Map<String, Object> getKey() {
+        return new PageKeyDynamo(lastKey).getKey();
+    }
+
+    @Benchmark
+    public Optional<PrimaryKey> buildLastKeyFromDynamo() {
+        return TranslationUtils.buildLastKey(dynamoToken);
+    }
+
+    @Benchmark
+    public Optional<PrimaryKey> buildLastKeyFromClient() {
+        return TranslationUtils.buildLastKey(clientToken);
+    }
+
+    @Benchmark
+    public String encodeToken() {
+        return codec.encode(new PageKeyDynamo(lastKey));
+    }
+
+    @Benchmark
+    public String encodeSignedToken() {
+        return signedCodec.encode(new PageKeyDynamo(lastKey));
+    }
+
+    @Benchmark
+    public IPageKey decodeToken() {
+        return codec.decode(encodedToken);
+    }
+
+    @Benchmark
+    public String encodeCompositeToken() {
+        return codec.encode(compositeToken);
+    }
+
+    @Benchmark
+    public IPageKey decodeCompositeToken() {
+        return codec.decode(encodedCompositeToken);
+    }
+}
@@ -0,0 +1,70 @@
+package me.philcali.db.dynamo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.benchmarks.Fixtures;
+
+/**
+ * Expression translation, per condition and per compiled query shape. Lives in
+ * the dynamo package to reach the package private TranslationUtils.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslationBenchmark {
+    private List<ICondition> conditions;
+    private QueryParams params;
+    private QueryRetrievalStrategy query;
+
+    @Setup
+    public void setUp() {
+        conditions = Fixtures.conditions();
+        params = QueryParams.builder().withConditions(conditions).build();
+        // Planning never calls DynamoDB, so a client that refuses every call will do
+        final Table table = new DynamoDB(new AbstractAmazonDynamoDB() { }).getTable(Fixtures.TABLE_NAME);
+        query = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndexMap("race", "age", table.getIndex("age-index"))
+                .build();
+    }
+
+    @Benchmark
+    public String translateFilter() {
+        return TranslationUtils.translateFilter(new StringBuilder(), 1, new ValueMap(), new NameMap(),
+                conditions.get(2)).toString();
+    }
+
+    @Benchmark
+    public String translateFilters() {
+        return TranslationUtils.translateFilters(conditions, new ValueMap(), new NameMap());
+    }
+
+    @Benchmark
+    public ValueMap planAndBind() {
+        return query.plan(params).bind(params);
+    }
+}
@@ -5,11 +5,14 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -29,9 +32,13 @@ import javax.tools.JavaFileObject;
 
 import com.google.auto.service.AutoService;
 
+import me.philcali.db.annotation.Cache;
 import me.philcali.db.annotation.ExceptionTranslation;
 import me.philcali.db.annotation.ExceptionTranslations;
+import me.philcali.db.annotation.Key;
 import me.philcali.db.annotation.Repository;
+import me.philcali.db.annotation.Tracking;
+import me.philcali.db.annotation.WriteBehind;
 import me.philcali.db.processor.RepositoryProcessor;
 import me.philcali.db.processor.RepositoryProcessorContext;
 
@@ -39,6 +46,13 @@ import me.philcali.db.processor.RepositoryProcessorContext;
 public class DynamoRepositoryProcessor extends RepositoryProcessor {
     private static final String TEMPLATE_NAME = "Repository";
     private static final String DYNAMO = "Dynamo";
+    private static final String QUERY_PARAMS = "me.philcali.db.api.QueryParams";
+    private static final String STREAM = "java.util.stream.Stream";
+    private static final String ITERATOR = "java.util.Iterator";
+    private static final Set<Repository.Action> BATCH_ACTIONS = Collections.unmodifiableSet(EnumSet.of(
+            Repository.Action.BATCH_GET,
+            Repository.Action.BATCH_PUT,
+            Repository.Action.BATCH_DELETE));
 
     @Override
     protected String getId() {
@@ -75,10 +89,118 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
         return keyMap;
     }
 
+    private Optional<Map<String, Object>> createCacheContext(
+            final RepositoryProcessorContext context,
+            final Repository repository,
+            final Cache cache,
+            final boolean requiresKeys) {
+        if (cache.maxEntries() <= 0 && cache.maxBytes() <= 0) {
+            return Optional.empty();
+        }
+        if (requiresKeys && repository.keys().length == 0) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository cache requires the keys to be defined", context.getElement());
+            return Optional.empty();
+        }
+        final Map<String, Object> cacheContext = new HashMap<>();
+        cacheContext.put("maxEntries", cache.maxEntries());
+        cacheContext.put("maxBytes", cache.maxBytes());
+        cacheContext.put("ttlSeconds", cache.ttlSeconds());
+        cacheContext.put("eviction", cache.eviction().name());
+        cacheContext.put("stripes", cache.stripes());
+        return Optional.of(cacheContext);
+    }
+
+    private Optional<Map<String, Object>> createTrackingContext(
+            final RepositoryProcessorContext context,
+            final Repository repository) {
+        final Tracking tracking = repository.tracking();
+        if (tracking.maxEntries() <= 0 && tracking.maxBytes() <= 0) {
+            return Optional.empty();
+        }
+        if (repository.keys().length == 0) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository change tracking requires the keys to be defined", context.getElement());
+            return Optional.empty();
+        }
+        final Map<String, Object> trackingContext = new HashMap<>();
+        trackingContext.put("maxEntries", tracking.maxEntries());
+        trackingContext.put("maxBytes", tracking.maxBytes());
+        trackingContext.put("stripes", tracking.stripes());
+        return Optional.of(trackingContext);
+    }
+
+    private Optional<Map<String, Object>> createWriteBehindContext(
+            final RepositoryProcessorContext context,
+            final Repository repository) {
+        final WriteBehind writeBehind = repository.writeBehind();
+        if (writeBehind.windowMillis() <= 0) {
+            return Optional.empty();
+        }
+        if (repository.keys().length == 0) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository write behind requires the keys to be defined", context.getElement());
+            return Optional.empty();
+        }
+        final Map<String, Object> writeBehindContext = new HashMap<>();
+        writeBehindContext.put("windowMillis", writeBehind.windowMillis());
+        writeBehindContext.put("maxBatchSize", writeBehind.maxBatchSize());
+        writeBehindContext.put("maxPending", writeBehind.maxPending());
+        return Optional.of(writeBehindContext);
+    }
+
+    /**
+     * The key schema of the table from the annotation, when the list methods
+     * should not describe the table to find it.
+     */
+    private Optional<Map<String, Object>> createSchemaContext(
+            final RepositoryProcessorContext context,
+            final Repository repository) {
+        if (repository.schema() == Repository.Schema.DESCRIBE) {
+            return Optional.empty();
+        }
+        if (repository.keys().length == 0) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository schema " + repository.schema() + " requires the keys to be defined",
+                    context.getElement());
+            return Optional.empty();
+        }
+        final Function<String, String> nonEmpty = value -> value.isEmpty() ? null : value;
+        final List<Map<String, Object>> indexes = new ArrayList<>();
+        Arrays.stream(repository.indexes()).forEach(index -> {
+            if (index.index().isEmpty()) {
+                processingEnv.getMessager().printMessage(Kind.ERROR,
+                        "Repository index on " + index.partition() + " requires the index name",
+                        context.getElement());
+                return;
+            }
+            final Map<String, Object> indexContext = new HashMap<>();
+            indexContext.put("name", index.index());
+            indexContext.put("partition", index.partition());
+            indexContext.put("sort", nonEmpty.apply(index.sort()));
+            indexes.add(indexContext);
+        });
+        final Key key = repository.keys()[0];
+        final Map<String, Object> schemaContext = new HashMap<>();
+        schemaContext.put("hashKey", key.partition());
+        schemaContext.put("rangeKey", nonEmpty.apply(key.sort()));
+        schemaContext.put("indexes", indexes);
+        schemaContext.put("verify", repository.schema() == Repository.Schema.VERIFIED);
+        return Optional.of(schemaContext);
+    }
+
     private Map<String, Object> generateTemplateContext(final RepositoryProcessorContext context) {
         final Repository repository = context.getElement().getAnnotation(Repository.class);
         final String packageName = processingEnv.getElementUtils().getPackageOf(context.getElement()).toString();
         final List<ExecutableElement> abstractMethods = abstractMethods(context);
+        final List<ExecutableElement> projectionMethods = abstractMethods.stream()
+                .filter(this::isProjectionMethod)
+                .collect(Collectors.toList());
+        abstractMethods.removeAll(projectionMethods);
+        final List<ExecutableElement> streamMethods = abstractMethods.stream()
+                .filter(this::isStreamMethod)
+                .collect(Collectors.toList());
+        abstractMethods.removeAll(streamMethods);
         final Map<String, Object> keys = createKeyMap(repository);
         final Map<Repository.Action, ExecutableElement> methods = separateMethods(abstractMethods);
         final boolean isAbstract;
@@ -96,6 +218,39 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
         templateContext.put("simpleName", getSimpleName(isAbstract, context));
         templateContext.put("elementName", context.getElement().getSimpleName().toString());
         templateContext.put("keys", keys.values());
+        templateContext.put("projections", projectionMethods.stream().map(method -> {
+            final Map<String, Object> methodContext = new HashMap<>();
+            methodContext.put("method", method.getSimpleName());
+            methodContext.put("exceptions", generateExceptions(context.getElement(), method));
+            return methodContext;
+        }).collect(Collectors.toList()));
+        createCacheContext(context, repository, repository.cache(), true)
+                .ifPresent(cache -> templateContext.put("cache", cache));
+        createCacheContext(context, repository, repository.listCache(), false)
+                .ifPresent(cache -> templateContext.put("listCache", cache));
+        createTrackingContext(context, repository)
+                .ifPresent(tracking -> templateContext.put("tracking", tracking));
+        createWriteBehindContext(context, repository)
+                .ifPresent(writeBehind -> templateContext.put("writeBehind", writeBehind));
+        templateContext.put("retrieval", methods.containsKey(Repository.Action.LIST)
+                || !projectionMethods.isEmpty()
+                || !streamMethods.isEmpty());
+        createSchemaContext(context, repository)
+                .ifPresent(schema -> templateContext.put("schema", schema));
+        final Optional<TypeMirror> entityType = entityType(methods);
+        entityType.ifPresent(type -> templateContext.put("mapping", new EntityMapping(processingEnv).generate(type)));
+        templateContext.put("streams", streamMethods.stream().map(method -> {
+            final TypeMirror type = elementType(method.getReturnType()).orElseGet(method::getReturnType);
+            final Map<String, Object> methodContext = new HashMap<>();
+            methodContext.put("method", method.getSimpleName());
+            methodContext.put("type", type.toString());
+            methodContext.put("iterator", processingEnv.getTypeUtils().erasure(method.getReturnType())
+                    .toString().equals(ITERATOR));
+            methodContext.put("mapped", entityType.filter(entity -> processingEnv.getTypeUtils()
+                    .isSameType(entity, type)).isPresent());
+            methodContext.put("exceptions", generateExceptions(context.getElement(), method));
+            return methodContext;
+        }).collect(Collectors.toList()));
         methods.forEach((action, method) -> {
             final Map<String, Object> methodContext = new HashMap<>();
             TypeMirror type = method.getReturnType();
@@ -105,6 +260,7 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
                         .map(mapper -> (TypeMirror) mapper)
                         .orElseGet(method::getReturnType);
             }
+            final TypeMirror methodType = type;
 
             final List<Map<String, Object>> parameters = new ArrayList<>();
             method.getParameters().forEach(parameter -> {
@@ -115,13 +271,102 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
             });
             methodContext.put("method", method.getSimpleName());
             methodContext.put("type", type.toString());
+            methodContext.put("mapped", entityType.filter(entity -> processingEnv.getTypeUtils()
+                    .isSameType(entity, methodType)).isPresent());
             methodContext.put("parameters", parameters);
             methodContext.put("exceptions", generateExceptions(context.getElement(), method));
+            if (BATCH_ACTIONS.contains(action)) {
+                createBatchContext(repository, action, method, entityType, methodContext);
+                templateContext.put("batch", true);
+            }
             templateContext.put(action.name().toLowerCase(), methodContext);
         });
         return templateContext;
     }
 
+    /**
+     * A batch method takes one collection: of the entities to put, or of the
+     * keys to get or delete, which are either partition key values or entities
+     * holding their keys. Gets return the entities found as a List.
+     */
+    private void createBatchContext(
+            final Repository repository,
+            final Repository.Action action,
+            final ExecutableElement method,
+            final Optional<TypeMirror> entityType,
+            final Map<String, Object> methodContext) {
+        if (repository.keys().length == 0) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository batch methods require the keys to be defined", method);
+            return;
+        }
+        if (method.getParameters().size() != 1) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository batch methods take a single collection", method);
+            return;
+        }
+        if (action != Repository.Action.BATCH_GET && method.getReturnType().getKind() != TypeKind.VOID) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository batch puts and deletes return void", method);
+            return;
+        }
+        final TypeMirror parameterType = method.getParameters().get(0).asType();
+        final Optional<TypeMirror> elementType = elementType(parameterType);
+        final boolean entityKeys = elementType.flatMap(element -> entityType
+                .filter(entity -> processingEnv.getTypeUtils().isSameType(entity, element)))
+                .isPresent();
+        final Key key = repository.keys()[0];
+        if (!entityKeys && !key.sort().isEmpty()) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Repository batch methods on a table with a sort key take entities as keys", method);
+        }
+        methodContext.put("argument", method.getParameters().get(0).getSimpleName());
+        methodContext.put("argumentType", parameterType.toString());
+        methodContext.put("returnType", method.getReturnType().toString());
+        methodContext.put("entityKeys", entityKeys);
+        methodContext.put("partitionKey", key.partition());
+    }
+
+    /**
+     * The type the repository stores, which gets a generated item mapper: the
+     * one written by its create, put or update, or else the one read.
+     */
+    private Optional<TypeMirror> entityType(final Map<Repository.Action, ExecutableElement> methods) {
+        return Stream.of(Repository.Action.CREATE, Repository.Action.PUT, Repository.Action.UPDATE)
+                .map(methods::get)
+                .filter(Objects::nonNull)
+                .filter(method -> !method.getParameters().isEmpty())
+                .map(method -> method.getParameters().get(0).asType())
+                .filter(type -> type.getKind() == TypeKind.DECLARED)
+                .findFirst()
+                .map(Optional::of)
+                .orElseGet(() -> Optional.ofNullable(methods.get(Repository.Action.BATCH_PUT))
+                        .filter(method -> !method.getParameters().isEmpty())
+                        .flatMap(method -> elementType(method.getParameters().get(0).asType())))
+                .map(Optional::of)
+                .orElseGet(() -> Stream.of(Repository.Action.READ, Repository.Action.LIST, Repository.Action.BATCH_GET)
+                        .map(methods::get)
+                        .filter(Objects::nonNull)
+                        .map(ExecutableElement::getReturnType)
+                        .map(this::elementType)
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .findFirst());
+    }
+
+    /**
+     * The declared type a container holds: T of an {@code Optional<T>} or {@code Collection<T>}.
+     */
+    private Optional<TypeMirror> elementType(final TypeMirror container) {
+        if (container.getKind() != TypeKind.DECLARED) {
+            return Optional.empty();
+        }
+        return ((DeclaredType) container).getTypeArguments().stream()
+                .map(type -> (TypeMirror) type)
+                .filter(type -> type.getKind() == TypeKind.DECLARED)
+                .findFirst();
+    }
+
     private List<Map<String, Object>> generateExceptions(final TypeElement element, final ExecutableElement method) {
         final List<Map<String, Object>> exceptions = new ArrayList<>();
         final Function<Element, Stream<AnnotationMirror>> generateTranslationMirrors = elem -> elem.getAnnotationMirrors().stream()
@@ -173,6 +418,40 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * A list method that maps into a caller supplied type, in the form of:
+     * {@code <P> QueryResult<P> listAs(QueryParams params, Class<P> projectionType)}
+     */
+    private boolean isProjectionMethod(final ExecutableElement method) {
+        return method.getParameters().size() == 2
+                && method.getParameters().get(0).asType().toString().equals(QUERY_PARAMS)
+                && processingEnv.getTypeUtils().erasure(method.getParameters().get(1).asType())
+                        .toString().equals(Class.class.getCanonicalName());
+    }
+
+    /**
+     * The name a method of the action starts with: batchGet for BATCH_GET.
+     */
+    private static String methodPrefix(final Repository.Action action) {
+        final String[] words = action.name().toLowerCase().split("_");
+        final StringBuilder prefix = new StringBuilder(words[0]);
+        for (int index = 1; index < words.length; index++) {
+            prefix.append(Character.toUpperCase(words[index].charAt(0))).append(words[index].substring(1));
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * A list method that walks every page, in the form of:
+     * {@code Stream<T> listAll(QueryParams params)} or {@code Iterator<T> iterate(QueryParams params)}
+     */
+    private boolean isStreamMethod(final ExecutableElement method) {
+        final String container = processingEnv.getTypeUtils().erasure(method.getReturnType()).toString();
+        return method.getParameters().size() == 1
+                && method.getParameters().get(0).asType().toString().equals(QUERY_PARAMS)
+                && (container.equals(STREAM) || container.equals(ITERATOR));
+    }
+
     private Map<Repository.Action, ExecutableElement> separateMethods(final List<ExecutableElement> methods) {
         final Map<Repository.Action, ExecutableElement> separatedMethods = new HashMap<>();
         methods.forEach(method -> {
@@ -180,7 +459,7 @@ public class DynamoRepositoryProcessor extends RepositoryProcessor {
                     .map(Repository.Method::value)
                     .orElseGet(() -> {
                         for (final Repository.Action action : Repository.Action.values()) {
-                            if (method.getSimpleName().toString().startsWith(action.name().toLowerCase())) {
+                            if (method.getSimpleName().toString().startsWith(methodPrefix(action))) {
                                 return action;
                             }
                         }
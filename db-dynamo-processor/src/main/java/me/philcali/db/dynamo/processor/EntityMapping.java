@@ -0,0 +1,488 @@
+package me.philcali.db.dynamo.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Works out how to map an entity straight to and from an Item, the way
+ * Jackson would with its defaults: getters are written, and items are read
+ * through setters, or the builder named by {@code @JsonDeserialize}. A
+ * property whose type isn't a plain value, or a collection or string keyed
+ * map of them, is converted by Jackson on its own, as is an enum with
+ * Jackson annotations. A type with Jackson annotations beyond naming and
+ * ignoring properties is left to Jackson as a whole.
+ */
+final class EntityMapping {
+    private static final String JACKSON = "com.fasterxml.jackson";
+    private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+    private static final String JSON_IGNORE_PROPERTIES = "com.fasterxml.jackson.annotation.JsonIgnoreProperties";
+    private static final String JSON_DESERIALIZE = "com.fasterxml.jackson.databind.annotation.JsonDeserialize";
+    private static final String JSON_POJO_BUILDER = "com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder";
+    private static final String ITEM_MAPPERS = "ItemMappers.";
+    private static final Map<String, String> NUMBERS = new HashMap<>();
+
+    static {
+        Arrays.asList("int", "java.lang.Integer").forEach(type -> NUMBERS.put(type, ".intValue()"));
+        Arrays.asList("long", "java.lang.Long").forEach(type -> NUMBERS.put(type, ".longValue()"));
+        Arrays.asList("short", "java.lang.Short").forEach(type -> NUMBERS.put(type, ".shortValue()"));
+        Arrays.asList("byte", "java.lang.Byte").forEach(type -> NUMBERS.put(type, ".byteValue()"));
+        Arrays.asList("float", "java.lang.Float").forEach(type -> NUMBERS.put(type, ".floatValue()"));
+        Arrays.asList("double", "java.lang.Double").forEach(type -> NUMBERS.put(type, ".doubleValue()"));
+        NUMBERS.put("java.math.BigDecimal", "");
+    }
+
+    /**
+     * Code to read a value out of an Object holding an attribute, and to
+     * write a property's value as an attribute.
+     */
+    private static final class Conversion {
+        private final Function<String, String> read;
+        private final Function<String, String> write;
+
+        private Conversion(final Function<String, String> read, final Function<String, String> write) {
+            this.read = read;
+            this.write = write;
+        }
+
+        private boolean isIdentityWrite() {
+            return write.apply("e").equals("e");
+        }
+    }
+
+    private final Elements elements;
+    private final Types types;
+    private final Map<String, Map<String, Object>> typeReferences = new LinkedHashMap<>();
+
+    EntityMapping(final ProcessingEnvironment processingEnv) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    /**
+     * @return the template context of the mapper: the statements of the
+     * toItem and fromItem bodies, and the Jackson type references they use
+     */
+    Map<String, Object> generate(final TypeMirror entityType) {
+        final Map<String, Object> context = new HashMap<>();
+        final String type = entityType.toString();
+        context.put("type", type);
+        final Optional<DeclaredType> declared = Optional.of(entityType)
+                .filter(mirror -> mirror.getKind() == TypeKind.DECLARED)
+                .map(mirror -> (DeclaredType) mirror)
+                .filter(this::isAnalyzable);
+        context.put("writes", declared.flatMap(this::writes)
+                .orElseGet(() -> Arrays.asList("return toItem((Object) entity);")));
+        context.put("reads", declared.flatMap(mirror -> reads(mirror))
+                .orElseGet(() -> Arrays.asList("return fromItem(item, " + types.erasure(entityType) + ".class);")));
+        context.put("typeReferences", new ArrayList<>(typeReferences.values()));
+        return context;
+    }
+
+    private Optional<List<String>> writes(final DeclaredType entityType) {
+        final List<String> writes = new ArrayList<>();
+        writes.add("final Item item = new Item();");
+        int index = 0;
+        for (final ExecutableElement getter : ElementFilter.methodsIn(elements.getAllMembers(asElement(entityType)))) {
+            final Optional<String> property = getterProperty(getter);
+            if (!property.isPresent()) {
+                continue;
+            }
+            final Optional<String> name = attributeName(asElement(entityType), getter, property.get());
+            if (!name.isPresent()) {
+                continue;
+            }
+            final TypeMirror type = ((ExecutableType) types.asMemberOf(entityType, getter)).getReturnType();
+            final Conversion conversion = conversion(type);
+            final String value = "entity." + getter.getSimpleName() + "()";
+            if (type.getKind().isPrimitive()) {
+                writes.add("item.with(\"" + name.get() + "\", " + conversion.write.apply(value) + ");");
+            } else {
+                final String local = "p" + index++;
+                writes.add("final " + type + " " + local + " = " + value + ";");
+                writes.add("if (Objects.nonNull(" + local + ")) { item.with(\"" + name.get() + "\", "
+                        + conversion.write.apply(local) + "); }");
+            }
+        }
+        writes.add("return item;");
+        return Optional.of(writes);
+    }
+
+    private Optional<List<String>> reads(final DeclaredType entityType) {
+        final TypeElement element = asElement(entityType);
+        final Optional<AnnotationMirror> deserialize = annotation(element, JSON_DESERIALIZE);
+        final Optional<TypeMirror> as = deserialize.flatMap(mirror -> annotationValue(mirror, "as"))
+                .map(value -> (TypeMirror) value.getValue())
+                .filter(mirror -> !mirror.toString().equals(Void.class.getCanonicalName()));
+        if (as.isPresent()) {
+            return Optional.of(as.get())
+                    .filter(mirror -> mirror.getKind() == TypeKind.DECLARED && types.isAssignable(mirror, entityType))
+                    .map(mirror -> (DeclaredType) mirror)
+                    .filter(this::isAnalyzable)
+                    .flatMap(mirror -> reads(mirror));
+        }
+        final Optional<TypeMirror> builder = deserialize.flatMap(mirror -> annotationValue(mirror, "builder"))
+                .map(value -> (TypeMirror) value.getValue())
+                .filter(mirror -> !mirror.toString().equals(Void.class.getCanonicalName()));
+        if (builder.isPresent()) {
+            return builder.filter(mirror -> mirror.getKind() == TypeKind.DECLARED)
+                    .flatMap(mirror -> builderReads((DeclaredType) mirror, entityType));
+        }
+        if (element.getKind() != ElementKind.CLASS
+                || element.getModifiers().contains(Modifier.ABSTRACT)
+                || !hasPublicConstructor(element)) {
+            return Optional.empty();
+        }
+        final List<String> reads = new ArrayList<>();
+        reads.add("final " + entityType + " entity = new " + entityType + "();");
+        setters(entityType, "set", "entity", reads);
+        reads.add("return entity;");
+        return Optional.of(reads);
+    }
+
+    private Optional<List<String>> builderReads(final DeclaredType builderType, final DeclaredType entityType) {
+        final TypeElement builder = asElement(builderType);
+        final Optional<AnnotationMirror> pojoBuilder = annotation(builder, JSON_POJO_BUILDER);
+        final String prefix = pojoBuilder.flatMap(mirror -> annotationValue(mirror, "withPrefix"))
+                .map(value -> value.getValue().toString())
+                .orElse("with");
+        final String buildMethod = pojoBuilder.flatMap(mirror -> annotationValue(mirror, "buildMethodName"))
+                .map(value -> value.getValue().toString())
+                .orElse("build");
+        final boolean builds = ElementFilter.methodsIn(elements.getAllMembers(builder)).stream()
+                .anyMatch(method -> method.getSimpleName().contentEquals(buildMethod)
+                        && method.getModifiers().contains(Modifier.PUBLIC)
+                        && method.getParameters().isEmpty()
+                        && types.isAssignable(method.getReturnType(), entityType));
+        final Optional<String> creation = creation(builder, builderType);
+        if (!builds || !creation.isPresent() || !isAnalyzable(builderType)) {
+            return Optional.empty();
+        }
+        final List<String> reads = new ArrayList<>();
+        reads.add("final " + builderType + " builder = " + creation.get() + ";");
+        setters(builderType, prefix, "builder", reads);
+        reads.add("return builder." + buildMethod + "();");
+        return Optional.of(reads);
+    }
+
+    /*
+     * A builder is made with its public no argument constructor, or the
+     * static builder() of the class enclosing it.
+     */
+    private Optional<String> creation(final TypeElement builder, final DeclaredType builderType) {
+        if (hasPublicConstructor(builder) && !builder.getModifiers().contains(Modifier.ABSTRACT)) {
+            return Optional.of("new " + builderType + "()");
+        }
+        final Element enclosing = builder.getEnclosingElement();
+        if (enclosing.getKind() != ElementKind.CLASS && enclosing.getKind() != ElementKind.INTERFACE) {
+            return Optional.empty();
+        }
+        return ElementFilter.methodsIn(enclosing.getEnclosedElements()).stream()
+                .filter(method -> method.getSimpleName().contentEquals("builder"))
+                .filter(method -> method.getModifiers().containsAll(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC)))
+                .filter(method -> method.getParameters().isEmpty())
+                .filter(method -> types.isSameType(types.erasure(method.getReturnType()), types.erasure(builderType)))
+                .findFirst()
+                .map(method -> ((TypeElement) enclosing).getQualifiedName() + ".builder()");
+    }
+
+    private void setters(
+            final DeclaredType targetType,
+            final String prefix,
+            final String target,
+            final List<String> reads) {
+        final TypeElement element = asElement(targetType);
+        final Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+        for (final ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(element))) {
+            final String methodName = method.getSimpleName().toString();
+            if (!method.getModifiers().contains(Modifier.PUBLIC)
+                    || method.getModifiers().contains(Modifier.STATIC)
+                    || method.getParameters().size() != 1
+                    || !methodName.startsWith(prefix)
+                    || methodName.length() == prefix.length()) {
+                continue;
+            }
+            final String property = mangle(methodName.substring(prefix.length()));
+            // Prefers the setter of the whole value over a collection's element adder
+            setters.putIfAbsent(property, method);
+        }
+        int index = 0;
+        for (final Map.Entry<String, ExecutableElement> setter : setters.entrySet()) {
+            final Optional<String> name = attributeName(element, setter.getValue(), setter.getKey());
+            if (!name.isPresent()) {
+                continue;
+            }
+            final TypeMirror type = ((ExecutableType) types.asMemberOf(targetType, setter.getValue()))
+                    .getParameterTypes().get(0);
+            final Conversion conversion = conversion(type);
+            final String local = "v" + index++;
+            reads.add("final Object " + local + " = item.get(\"" + name.get() + "\");");
+            reads.add("if (Objects.nonNull(" + local + ")) { " + target + "." + setter.getValue().getSimpleName()
+                    + "(" + conversion.read.apply(local) + "); }");
+        }
+    }
+
+    private Conversion conversion(final TypeMirror type) {
+        return Optional.ofNullable(scalar(type))
+                .orElseGet(() -> Optional.ofNullable(container(type)).orElseGet(() -> fallback(type)));
+    }
+
+    private Conversion scalar(final TypeMirror type) {
+        final String name = type.toString();
+        if (NUMBERS.containsKey(name)) {
+            final String unbox = NUMBERS.get(name);
+            return new Conversion(value -> ITEM_MAPPERS + "number(" + value + ")" + unbox, value -> value);
+        }
+        switch (name) {
+        case "java.lang.String":
+            return new Conversion(value -> ITEM_MAPPERS + "string(" + value + ")", value -> value);
+        case "boolean":
+        case "java.lang.Boolean":
+            return new Conversion(value -> ITEM_MAPPERS + "bool(" + value + ")", value -> value);
+        case "java.math.BigInteger":
+            return new Conversion(value -> ITEM_MAPPERS + "bigInteger(" + value + ")", value -> value);
+        case "byte[]":
+            return new Conversion(value -> ITEM_MAPPERS + "binary(" + value + ")",
+                    value -> ITEM_MAPPERS + "base64(" + value + ")");
+        default:
+            break;
+        }
+        if (type.getKind() == TypeKind.DECLARED && asElement(type).getKind() == ElementKind.ENUM
+                && isPlainEnum(asElement(type))) {
+            final TypeMirror erasure = types.erasure(type);
+            return new Conversion(
+                    value -> ITEM_MAPPERS + "enumeration(" + value + ", " + erasure + ".class)",
+                    value -> value + ".name()");
+        }
+        return null;
+    }
+
+    private Conversion container(final TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final DeclaredType declared = (DeclaredType) type;
+        final String erasure = types.erasure(type).toString();
+        final List<? extends TypeMirror> arguments = declared.getTypeArguments();
+        if (Arrays.asList("java.util.List", "java.util.Collection", "java.util.Set").contains(erasure)
+                && arguments.size() == 1) {
+            final Conversion element = scalar(arguments.get(0));
+            if (Objects.isNull(element)) {
+                return null;
+            }
+            final String collection = erasure.equals("java.util.Set") ? "set" : "list";
+            final String write = elementWrite(element, arguments.get(0));
+            return new Conversion(
+                    value -> ITEM_MAPPERS + collection + "(" + value + ", e -> " + element.read.apply("e") + ")",
+                    value -> erasure.equals("java.util.List") && element.isIdentityWrite()
+                            ? value
+                            : ITEM_MAPPERS + "toAttributeList(" + value + ", e -> " + write + ")");
+        }
+        if (erasure.equals("java.util.Map") && arguments.size() == 2
+                && arguments.get(0).toString().equals("java.lang.String")) {
+            final Conversion element = scalar(arguments.get(1));
+            if (Objects.isNull(element)) {
+                return null;
+            }
+            final String write = elementWrite(element, arguments.get(1));
+            return new Conversion(
+                    value -> ITEM_MAPPERS + "map(" + value + ", e -> " + element.read.apply("e") + ")",
+                    value -> element.isIdentityWrite()
+                            ? value
+                            : ITEM_MAPPERS + "toAttributeMap(" + value + ", e -> " + write + ")");
+        }
+        return null;
+    }
+
+    private String elementWrite(final Conversion element, final TypeMirror type) {
+        return element.isIdentityWrite() ? "e" : element.write.apply("((" + types.erasure(type) + ") e)");
+    }
+
+    /*
+     * Jackson converts the value on its own, without a trip through JSON text,
+     * to a type reference shared by every property of the same type.
+     */
+    private Conversion fallback(final TypeMirror type) {
+        final String boxed = type.getKind().isPrimitive()
+                ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+        final Map<String, Object> reference = typeReferences.computeIfAbsent(boxed, name -> {
+            final Map<String, Object> context = new HashMap<>();
+            context.put("name", referenceName(name));
+            context.put("type", name);
+            return context;
+        });
+        return new Conversion(
+                value -> "mapper.convertValue(" + value + ", " + reference.get("name") + ")",
+                value -> "mapper.convertValue(" + value + ", Object.class)");
+    }
+
+    /*
+     * The type's simple names, ie: LIST_VEHICLE_TYPE, numbered when two types
+     * share them.
+     */
+    private String referenceName(final String type) {
+        final String simple = type.replaceAll("\\b[a-z][A-Za-z0-9_$]*\\.", "")
+                .replaceAll("[^A-Za-z0-9]+", "_")
+                .replaceAll("^_|_$", "")
+                .toUpperCase();
+        final String name = (simple.isEmpty() ? "VALUE" : simple) + "_TYPE";
+        final long taken = typeReferences.values().stream()
+                .filter(reference -> reference.get("name").toString().matches(name + "(_\\d+)?"))
+                .count();
+        return taken == 0 ? name : name + "_" + taken;
+    }
+
+    private Optional<String> getterProperty(final ExecutableElement method) {
+        final String name = method.getSimpleName().toString();
+        if (!method.getModifiers().contains(Modifier.PUBLIC)
+                || method.getModifiers().contains(Modifier.STATIC)
+                || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID
+                || name.equals("getClass")) {
+            return Optional.empty();
+        }
+        if (name.startsWith("get") && name.length() > 3) {
+            return Optional.of(mangle(name.substring(3)));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return Optional.of(mangle(name.substring(2)));
+        }
+        return Optional.empty();
+    }
+
+    /*
+     * The property's attribute, renamed by @JsonProperty on the method or its
+     * field; empty when either is @JsonIgnore.
+     */
+    private Optional<String> attributeName(final TypeElement type, final ExecutableElement method, final String property) {
+        final List<Element> annotated = new ArrayList<>();
+        annotated.add(method);
+        ElementFilter.fieldsIn(elements.getAllMembers(type)).stream()
+                .filter(field -> field.getSimpleName().contentEquals(property))
+                .forEach(annotated::add);
+        if (annotated.stream().anyMatch(element -> annotation(element, JSON_IGNORE).isPresent())) {
+            return Optional.empty();
+        }
+        return Optional.of(annotated.stream()
+                .map(element -> annotation(element, JSON_PROPERTY))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .map(mirror -> annotationValue(mirror, "value").map(value -> value.getValue().toString()).orElse(""))
+                .filter(value -> !value.isEmpty())
+                .findFirst()
+                .orElse(property));
+    }
+
+    /*
+     * Jackson annotations that change more than a property's name or presence
+     * are beyond these mappers.
+     */
+    private boolean isAnalyzable(final DeclaredType type) {
+        final TypeElement element = asElement(type);
+        final List<Element> annotated = new ArrayList<>();
+        annotated.add(element);
+        annotated.addAll(ElementFilter.methodsIn(elements.getAllMembers(element)));
+        annotated.addAll(ElementFilter.fieldsIn(elements.getAllMembers(element)));
+        ElementFilter.methodsIn(elements.getAllMembers(element))
+                .forEach(method -> annotated.addAll(method.getParameters()));
+        return annotated.stream().allMatch(member -> member.getAnnotationMirrors().stream().allMatch(mirror -> {
+            final String name = mirror.getAnnotationType().toString();
+            if (!name.startsWith(JACKSON)) {
+                return true;
+            }
+            switch (name) {
+            case JSON_PROPERTY:
+            case JSON_IGNORE:
+            case JSON_DESERIALIZE:
+            case JSON_POJO_BUILDER:
+                return mirror.getElementValues().keySet().stream().allMatch(key -> Arrays
+                        .asList("value", "as", "builder", "withPrefix", "buildMethodName")
+                        .contains(key.getSimpleName().toString()));
+            case JSON_IGNORE_PROPERTIES:
+                return mirror.getElementValues().keySet().stream()
+                        .allMatch(key -> key.getSimpleName().contentEquals("ignoreUnknown"));
+            default:
+                return false;
+            }
+        }));
+    }
+
+    /*
+     * Jackson annotations on an enum, its constants or methods change the
+     * value it is written as, which name() and valueOf know nothing of.
+     */
+    private boolean isPlainEnum(final TypeElement element) {
+        final List<Element> annotated = new ArrayList<>();
+        annotated.add(element);
+        annotated.addAll(elements.getAllMembers(element));
+        element.getInterfaces().forEach(mirror -> annotated.addAll(elements.getAllMembers(asElement(mirror))));
+        ElementFilter.methodsIn(annotated).forEach(method -> annotated.addAll(method.getParameters()));
+        return annotated.stream()
+                .flatMap(member -> member.getAnnotationMirrors().stream())
+                .noneMatch(mirror -> mirror.getAnnotationType().toString().startsWith(JACKSON));
+    }
+
+    private boolean hasPublicConstructor(final TypeElement element) {
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(element.getEnclosedElements());
+        return constructors.stream().anyMatch(constructor -> constructor.getParameters().isEmpty()
+                && constructor.getModifiers().contains(Modifier.PUBLIC))
+                && (element.getNestingKind().isNested() ? element.getModifiers().contains(Modifier.STATIC) : true);
+    }
+
+    private TypeElement asElement(final TypeMirror type) {
+        return (TypeElement) types.asElement(type);
+    }
+
+    private static Optional<AnnotationMirror> annotation(final Element element, final String annotationType) {
+        return element.getAnnotationMirrors().stream()
+                .filter(mirror -> mirror.getAnnotationType().toString().equals(annotationType))
+                .map(mirror -> (AnnotationMirror) mirror)
+                .findFirst();
+    }
+
+    private static Optional<AnnotationValue> annotationValue(final AnnotationMirror mirror, final String name) {
+        return mirror.getElementValues().entrySet().stream()
+                .filter(entry -> entry.getKey().getSimpleName().contentEquals(name))
+                .map(entry -> (AnnotationValue) entry.getValue())
+                .findFirst();
+    }
+
+    /*
+     * Jackson's default property naming: the leading upper case letters are
+     * lower cased, so getURL is url and getName is name.
+     */
+    private static String mangle(final String name) {
+        final StringBuilder builder = new StringBuilder(name.length());
+        int index = 0;
+        while (index < name.length() && Character.isUpperCase(name.charAt(index))) {
+            builder.append(Character.toLowerCase(name.charAt(index)));
+            index++;
+        }
+        return builder.append(name.substring(index)).toString();
+    }
+}
@@ -0,0 +1,235 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+
+/**
+ * Non blocking counterpart of the BatchGetAdapter. Chunks go through the
+ * limiter, and unprocessed keys are retried on a timer rather than a
+ * sleeping thread. Cancelling the returned future cancels every chunk.
+ */
+public class AsyncBatchGetAdapter implements Function<List<PrimaryKey>, CompletableFuture<List<Item>>> {
+    private static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_MAX_RETRIES = 8;
+
+    public static class Builder {
+        private AmazonDynamoDBAsync client;
+        private String tableName;
+        private AsyncLimiter limiter;
+        private ExponentialBackoff backoff;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private boolean preserveOrder;
+        private Set<String> projections = new LinkedHashSet<>();
+        private IRetrievalMetrics metrics;
+
+        public AsyncBatchGetAdapter build() {
+            Objects.requireNonNull(client);
+            Objects.requireNonNull(tableName);
+            return new AsyncBatchGetAdapter(this);
+        }
+
+        public Builder withBackoff(final ExponentialBackoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder withClient(final AmazonDynamoDBAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder withLimiter(final AsyncLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withProjections(final String ... attributes) {
+            return withProjections(Arrays.asList(attributes));
+        }
+
+        public Builder withProjections(final Collection<String> attributes) {
+            this.projections.addAll(attributes);
+            return this;
+        }
+
+        public Builder withPreserveOrder(final boolean preserveOrder) {
+            this.preserveOrder = preserveOrder;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final AmazonDynamoDBAsync client;
+    private final String tableName;
+    private final AsyncLimiter limiter;
+    private final ExponentialBackoff backoff;
+    private final int maxRetries;
+    private final boolean preserveOrder;
+    private final Set<String> projections;
+    private final IRetrievalMetrics metrics;
+
+    private AsyncBatchGetAdapter(final Builder builder) {
+        this.client = builder.client;
+        this.tableName = builder.tableName;
+        this.limiter = Optional.ofNullable(builder.limiter).orElseGet(AsyncLimiter::new);
+        this.backoff = Optional.ofNullable(builder.backoff).orElseGet(ExponentialBackoff::new);
+        this.maxRetries = Math.max(0, builder.maxRetries);
+        this.preserveOrder = builder.preserveOrder;
+        this.projections = new LinkedHashSet<>(builder.projections);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+    }
+
+    @Override
+    public CompletableFuture<List<Item>> apply(final List<PrimaryKey> primaryKeys) {
+        return execute(primaryKeys).thenApply(BatchGetResult::getItems);
+    }
+
+    public CompletableFuture<BatchGetResult> execute(final Collection<PrimaryKey> primaryKeys) {
+        final BatchStatistics statistics = new BatchStatistics();
+        final List<PrimaryKey> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(primaryKeys));
+        final List<CompletableFuture<List<Item>>> chunks = new ArrayList<>();
+        for (int start = 0; start < uniqueKeys.size(); start += MAX_PAGE_SIZE) {
+            chunks.add(fetch(uniqueKeys.subList(start, Math.min(uniqueKeys.size(), start + MAX_PAGE_SIZE)), statistics));
+        }
+        final CompletableFuture<BatchGetResult> result = CompletableFuture
+                .allOf(chunks.toArray(new CompletableFuture[chunks.size()]))
+                .thenApply(nothing -> {
+                    final List<Item> items = new ArrayList<>();
+                    chunks.forEach(chunk -> items.addAll(chunk.join()));
+                    return new BatchGetResult(preserveOrder ? BatchGetAdapter.order(uniqueKeys, items) : items, statistics);
+                });
+        result.whenComplete((items, error) -> {
+            if (result.isCancelled()) {
+                chunks.forEach(chunk -> chunk.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<List<Item>> fetch(final List<PrimaryKey> keys, final BatchStatistics statistics) {
+        final KeysAndAttributes tableKeys = new KeysAndAttributes()
+                .withKeys(keys.stream().map(ItemUtils::toAttributeValueMap).collect(Collectors.toList()));
+        if (!projections.isEmpty()) {
+            // Keys are always projected, so that results can be put back in order
+            final Set<String> attributes = new LinkedHashSet<>(keys.get(0).getComponentNameSet());
+            attributes.addAll(projections);
+            final Map<String, String> names = new HashMap<>();
+            tableKeys.withProjectionExpression(TranslationUtils.translateProjections(attributes, names))
+                    .withExpressionAttributeNames(names);
+        }
+        statistics.addChunk();
+        final CompletableFuture<List<Item>> result = new CompletableFuture<>();
+        final AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>();
+        result.whenComplete((items, error) -> {
+            if (result.isCancelled()) {
+                Optional.ofNullable(inFlight.get()).ifPresent(call -> call.cancel(true));
+            }
+        });
+        fetch(Collections.singletonMap(tableName, tableKeys), 0, new ArrayList<>(), statistics, result, inFlight);
+        return result;
+    }
+
+    private void fetch(
+            final Map<String, KeysAndAttributes> requestItems,
+            final int attempt,
+            final List<Item> items,
+            final BatchStatistics statistics,
+            final CompletableFuture<List<Item>> result,
+            final AtomicReference<CompletableFuture<?>> inFlight) {
+        final BatchGetItemRequest request = new BatchGetItemRequest()
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withRequestItems(requestItems);
+        final int requested = requestItems.values().stream().mapToInt(k -> k.getKeys().size()).sum();
+        final CompletableFuture<BatchGetItemResult> call = limiter.submit(() -> {
+            final long start = System.nanoTime();
+            return ConcurrentUtils.<BatchGetItemRequest, BatchGetItemResult>call(client::batchGetItemAsync, request)
+                    .thenApply(response -> {
+                        metrics.record(RetrievalEvent.builder()
+                                .withTableName(tableName)
+                                .withStrategy(RetrievalEvent.BATCH_GET)
+                                .withLatencyNanos(System.nanoTime() - start)
+                                .withConsumedCapacity(response.getConsumedCapacity())
+                                .withScannedCount(requested)
+                                .withReturnedCount(tableItems(response).size())
+                                .build());
+                        return response;
+                    });
+        });
+        inFlight.set(call);
+        if (result.isDone()) {
+            call.cancel(true);
+            return;
+        }
+        call.whenComplete((response, error) -> {
+            if (Objects.nonNull(error)) {
+                result.completeExceptionally(ConcurrentUtils.unwrap(error));
+                return;
+            }
+            items.addAll(ItemUtils.toItemList(tableItems(response)));
+            statistics.addConsumedCapacity(response.getConsumedCapacity());
+            final Map<String, KeysAndAttributes> unprocessed = response.getUnprocessedKeys();
+            if (Objects.isNull(unprocessed) || unprocessed.isEmpty()) {
+                result.complete(items);
+                return;
+            }
+            final int remaining = unprocessed.values().stream().mapToInt(k -> k.getKeys().size()).sum();
+            if (attempt >= maxRetries) {
+                result.completeExceptionally(new UnprocessedItemsException("Failed to get " + remaining + " keys from "
+                        + tableName + " after " + attempt + " retries", remaining));
+                return;
+            }
+            statistics.addRetry();
+            final CompletableFuture<Void> pause = ConcurrentUtils.delay(backoff.getDelayMillis(attempt), TimeUnit.MILLISECONDS);
+            inFlight.set(pause);
+            pause.thenRun(() -> fetch(unprocessed, attempt + 1, items, statistics, result, inFlight));
+        });
+    }
+
+    private List<Map<String, AttributeValue>> tableItems(final BatchGetItemResult response) {
+        return Optional.ofNullable(response.getResponses())
+                .map(responses -> responses.get(tableName))
+                .orElse(Collections.emptyList());
+    }
+}
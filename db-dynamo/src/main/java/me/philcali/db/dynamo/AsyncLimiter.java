@@ -0,0 +1,119 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the asynchronous calls in flight without blocking the caller. Calls
+ * over the limit wait in a queue, and start as the running ones finish. A
+ * call cancelled while it waits never starts; one cancelled while it runs is
+ * cancelled too. Strategies sharing a limiter share its bound.
+ */
+public final class AsyncLimiter {
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+    private final int maxConcurrency;
+    private final Queue<Runnable> waiting;
+    private int running;
+    private int releases;
+    private boolean draining;
+
+    public AsyncLimiter(final int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.waiting = new ArrayDeque<>();
+    }
+
+    public AsyncLimiter() {
+        this(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Runnable start = () -> {
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            final CompletableFuture<T> inFlight;
+            try {
+                inFlight = call.get();
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    inFlight.cancel(true);
+                }
+            });
+            inFlight.whenComplete((value, error) -> {
+                release();
+                if (Objects.nonNull(error)) {
+                    result.completeExceptionally(ConcurrentUtils.unwrap(error));
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        final boolean now;
+        synchronized (this) {
+            now = running < maxConcurrency;
+            if (now) {
+                running++;
+            } else {
+                waiting.add(start);
+            }
+        }
+        if (now) {
+            start.run();
+        }
+        return result;
+    }
+
+    /*
+     * A waiting call that was cancelled, or finishes as it starts, releases
+     * again right away; those releases are counted and handed out in a loop
+     * by the one thread draining the queue, instead of recursing into it.
+     */
+    private void release() {
+        synchronized (this) {
+            releases++;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        for (;;) {
+            final Runnable next;
+            synchronized (this) {
+                if (releases == 0) {
+                    draining = false;
+                    return;
+                }
+                releases--;
+                next = waiting.poll();
+                if (Objects.isNull(next)) {
+                    running--;
+                    continue;
+                }
+            }
+            next.run();
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,205 @@
+package me.philcali.db.dynamo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryParams.Collation;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * Runs the plans of a QueryRetrievalStrategy through the AmazonDynamoDBAsync
+ * client. Params that don't fit a query go to the fallback, which defaults to
+ * an AsyncScanRetrievalStrategy sharing the limiter, fill policy and metrics.
+ */
+public final class AsyncQueryRetrievalStrategy implements IAsyncRetrievalStrategy {
+    public static class Builder {
+        private AmazonDynamoDBAsync client;
+        private QueryRetrievalStrategy planner;
+        private IAsyncRetrievalStrategy fallback;
+        private AsyncLimiter limiter;
+        private PageFillPolicy fillPolicy;
+        private IRetrievalMetrics metrics;
+
+        public AsyncQueryRetrievalStrategy build() {
+            Objects.requireNonNull(client);
+            Objects.requireNonNull(planner);
+            return new AsyncQueryRetrievalStrategy(this);
+        }
+
+        public Builder withClient(final AmazonDynamoDBAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder withFallback(final IAsyncRetrievalStrategy fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        public Builder withFillPolicy(final PageFillPolicy fillPolicy) {
+            this.fillPolicy = fillPolicy;
+            return this;
+        }
+
+        public Builder withLimiter(final AsyncLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withPlanner(final QueryRetrievalStrategy planner) {
+            this.planner = planner;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final AmazonDynamoDBAsync client;
+    private final QueryRetrievalStrategy planner;
+    private final IAsyncRetrievalStrategy fallback;
+    private final AsyncLimiter limiter;
+    private final PageFillPolicy fillPolicy;
+    private final IRetrievalMetrics metrics;
+
+    private AsyncQueryRetrievalStrategy(final Builder builder) {
+        this.client = builder.client;
+        this.planner = builder.planner;
+        this.limiter = Optional.ofNullable(builder.limiter).orElseGet(AsyncLimiter::new);
+        this.fillPolicy = Optional.ofNullable(builder.fillPolicy).orElse(PageFillPolicy.SINGLE_REQUEST);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+        this.fallback = Optional.ofNullable(builder.fallback).orElseGet(() -> AsyncScanRetrievalStrategy.builder()
+                .withClient(client)
+                .withLimiter(limiter)
+                .withFillPolicy(fillPolicy)
+                .withMetrics(metrics)
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<QueryResult<Item>> apply(final QueryParams params, final String tableName) {
+        final QueryParams normalized = ConditionTrees.normalize(params);
+        final QueryPlan plan = planner.plan(normalized);
+        if (plan.isUnion()) {
+            return union(new UnionQuery(normalized), tableName);
+        }
+        if (!plan.isQuery()) {
+            return fallback.apply(normalized, tableName);
+        }
+        if (plan.isFanOut()) {
+            final FanOutQuery fanOut = new FanOutQuery(plan, normalized);
+            final Map<Integer, CompletableFuture<QueryResult<Item>>> queries = new LinkedHashMap<>();
+            fanOut.getActive().forEach(id -> queries.put(id, query(plan, fanOut.params(id), fanOut.bind(id), tableName)));
+            return merge(queries, fanOut::merge);
+        }
+        return query(plan, normalized, plan.bind(normalized), tableName);
+    }
+
+    private CompletableFuture<QueryResult<Item>> union(final UnionQuery union, final String tableName) {
+        if (union.getActive().isEmpty()) {
+            return CompletableFuture.completedFuture(union.result());
+        }
+        final Map<Integer, CompletableFuture<QueryResult<Item>>> queries = new LinkedHashMap<>();
+        union.getActive().forEach(id -> queries.put(id, apply(union.params(id), tableName)));
+        return merge(queries, pages -> {
+            union.merge(pages);
+            return union;
+        }).thenCompose(next -> union(next, tableName));
+    }
+
+    private static <T> CompletableFuture<T> merge(
+            final Map<Integer, CompletableFuture<QueryResult<Item>>> queries,
+            final Function<Map<Integer, QueryResult<Item>>, T> merge) {
+        final CompletableFuture<T> result = CompletableFuture
+                .allOf(queries.values().toArray(new CompletableFuture[queries.size()]))
+                .thenApply(nothing -> {
+                    final Map<Integer, QueryResult<Item>> pages = new LinkedHashMap<>();
+                    queries.forEach((id, query) -> pages.put(id, query.join()));
+                    return merge.apply(pages);
+                });
+        result.whenComplete((page, error) -> {
+            if (result.isCancelled()) {
+                queries.values().forEach(query -> query.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<QueryResult<Item>> query(
+            final QueryPlan plan,
+            final QueryParams params,
+            final ValueMap values,
+            final String tableName) {
+        final QueryRequest base = new QueryRequest(tableName)
+                .withIndexName(plan.getIndexName().orElse(null))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withScanIndexForward(params.getCollation() == Collation.ASCENDING)
+                .withKeyConditionExpression(plan.getKeyConditionExpression())
+                .withFilterExpression(plan.getFilterExpression().orElse(null))
+                .withProjectionExpression(plan.getProjectionExpression().orElse(null))
+                .withExpressionAttributeNames(plan.getNameMap())
+                .withExpressionAttributeValues(ItemUtils.fromSimpleMap(values));
+        return fillPolicy.fillAsync(params, (limit, startKey) -> {
+            final QueryRequest request = base.clone()
+                    .withLimit(limit)
+                    .withExclusiveStartKey(Objects.isNull(startKey) ? null : ItemUtils.toAttributeValueMap(startKey));
+            return limiter.submit(() -> {
+                final long start = System.nanoTime();
+                return ConcurrentUtils.<QueryRequest, com.amazonaws.services.dynamodbv2.model.QueryResult>call(
+                        client::queryAsync, request).thenApply(result -> {
+                    metrics.record(RetrievalEvent.builder()
+                            .withTableName(tableName)
+                            .withIndexName(plan.getIndexName().orElse(null))
+                            .withStrategy(RetrievalEvent.QUERY)
+                            .withLatencyNanos(System.nanoTime() - start)
+                            .withConsumedCapacity(result.getConsumedCapacity())
+                            .withScannedCount(result.getScannedCount())
+                            .withReturnedCount(result.getCount())
+                            .build());
+                    return new PageFillPolicy.Read(
+                            ItemUtils.toItemList(result.getItems()),
+                            result.getLastEvaluatedKey(),
+                            result.getScannedCount(),
+                            Optional.ofNullable(result.getConsumedCapacity())
+                                    .map(capacity -> capacity.getCapacityUnits())
+                                    .orElse(null));
+                });
+            });
+        });
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof AsyncQueryRetrievalStrategy)) {
+            return false;
+        }
+        final AsyncQueryRetrievalStrategy query = (AsyncQueryRetrievalStrategy) obj;
+        return Objects.equals(client, query.client)
+                && Objects.equals(planner, query.planner)
+                && Objects.equals(fallback, query.fallback)
+                && Objects.equals(fillPolicy, query.fillPolicy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(client, planner, fallback, fillPolicy);
+    }
+}
@@ -0,0 +1,128 @@
+package me.philcali.db.dynamo;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+public final class AsyncScanRetrievalStrategy implements IAsyncRetrievalStrategy {
+    public static class Builder {
+        private AmazonDynamoDBAsync client;
+        private AsyncLimiter limiter;
+        private PageFillPolicy fillPolicy;
+        private IRetrievalMetrics metrics;
+
+        public AsyncScanRetrievalStrategy build() {
+            Objects.requireNonNull(client);
+            return new AsyncScanRetrievalStrategy(this);
+        }
+
+        public Builder withClient(final AmazonDynamoDBAsync client) {
+            this.client = client;
+            return this;
+        }
+
+        public Builder withFillPolicy(final PageFillPolicy fillPolicy) {
+            this.fillPolicy = fillPolicy;
+            return this;
+        }
+
+        public Builder withLimiter(final AsyncLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final AmazonDynamoDBAsync client;
+    private final AsyncLimiter limiter;
+    private final PageFillPolicy fillPolicy;
+    private final IRetrievalMetrics metrics;
+
+    private AsyncScanRetrievalStrategy(final Builder builder) {
+        this.client = builder.client;
+        this.limiter = Optional.ofNullable(builder.limiter).orElseGet(AsyncLimiter::new);
+        this.fillPolicy = Optional.ofNullable(builder.fillPolicy).orElse(PageFillPolicy.SINGLE_REQUEST);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+    }
+
+    @Override
+    public CompletableFuture<QueryResult<Item>> apply(final QueryParams params, final String tableName) {
+        final ScanSpec spec = ScanRetrievalStrategy.applyFilters(new ScanSpec(), params);
+        final ScanRequest base = new ScanRequest(tableName)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withFilterExpression(spec.getFilterExpression())
+                .withProjectionExpression(spec.getProjectionExpression())
+                .withExpressionAttributeNames(spec.getNameMap())
+                .withExpressionAttributeValues(Optional.ofNullable(spec.getValueMap())
+                        .map(ItemUtils::fromSimpleMap)
+                        .orElse(null));
+        return fillPolicy.fillAsync(params, (limit, startKey) -> {
+            final ScanRequest request = base.clone()
+                    .withLimit(limit)
+                    .withExclusiveStartKey(Objects.isNull(startKey) ? null : ItemUtils.toAttributeValueMap(startKey));
+            return limiter.submit(() -> {
+                final long start = System.nanoTime();
+                return ConcurrentUtils.<ScanRequest, ScanResult>call(client::scanAsync, request).thenApply(result -> {
+                    record(metrics, tableName, RetrievalEvent.SCAN, start, result);
+                    return new PageFillPolicy.Read(
+                            ItemUtils.toItemList(result.getItems()),
+                            result.getLastEvaluatedKey(),
+                            result.getScannedCount(),
+                            Optional.ofNullable(result.getConsumedCapacity())
+                                    .map(capacity -> capacity.getCapacityUnits())
+                                    .orElse(null));
+                });
+            });
+        });
+    }
+
+    private static void record(
+            final IRetrievalMetrics metrics,
+            final String tableName,
+            final String strategy,
+            final long start,
+            final ScanResult result) {
+        metrics.record(RetrievalEvent.builder()
+                .withTableName(tableName)
+                .withStrategy(strategy)
+                .withLatencyNanos(System.nanoTime() - start)
+                .withConsumedCapacity(result.getConsumedCapacity())
+                .withScannedCount(result.getScannedCount())
+                .withReturnedCount(result.getCount())
+                .build());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof AsyncScanRetrievalStrategy)) {
+            return false;
+        }
+        final AsyncScanRetrievalStrategy scan = (AsyncScanRetrievalStrategy) obj;
+        return Objects.equals(client, scan.client)
+                && Objects.equals(fillPolicy, scan.fillPolicy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(client, fillPolicy);
+    }
+}
@@ -1,45 +1,235 @@
 package me.philcali.db.dynamo;
 
+import static me.philcali.db.dynamo.ConcurrentUtils.acquire;
+import static me.philcali.db.dynamo.ConcurrentUtils.join;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.amazonaws.services.dynamodbv2.document.BatchGetItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
 import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchGetItemSpec;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 
 public class BatchGetAdapter implements Function<List<PrimaryKey>, List<Item>> {
     private static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRIES = 8;
+
+    public static class Builder {
+        private DynamoDB db;
+        private String tableName;
+        private Executor executor;
+        private ExponentialBackoff backoff;
+        private IThroughputGovernor governor;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private boolean preserveOrder;
+        private Set<String> projections = new LinkedHashSet<>();
+        private IRetrievalMetrics metrics;
+
+        public BatchGetAdapter build() {
+            Objects.requireNonNull(db);
+            Objects.requireNonNull(tableName);
+            return new BatchGetAdapter(this);
+        }
+
+        public Builder withBackoff(final ExponentialBackoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder withDynamoDB(final DynamoDB db) {
+            this.db = db;
+            return this;
+        }
+
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        public Builder withMaxConcurrency(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withProjections(final String ... attributes) {
+            return withProjections(Arrays.asList(attributes));
+        }
+
+        public Builder withProjections(final Collection<String> attributes) {
+            this.projections.addAll(attributes);
+            return this;
+        }
+
+        public Builder withPreserveOrder(final boolean preserveOrder) {
+            this.preserveOrder = preserveOrder;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
 
     private final String tableName;
     private final DynamoDB db;
+    private final Executor executor;
+    private final ExponentialBackoff backoff;
+    private final IThroughputGovernor governor;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final boolean preserveOrder;
+    private final Set<String> projections;
+    private final IRetrievalMetrics metrics;
 
     public BatchGetAdapter(final DynamoDB db, final String tableName) {
-        this.tableName = tableName;
-        this.db = db;
+        this(builder().withDynamoDB(db).withTableName(tableName).withMaxConcurrency(1));
+    }
+
+    private BatchGetAdapter(final Builder builder) {
+        this.tableName = builder.tableName;
+        this.db = builder.db;
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.backoff = Optional.ofNullable(builder.backoff).orElseGet(ExponentialBackoff::new);
+        this.governor = Optional.ofNullable(builder.governor).orElse(IThroughputGovernor.NONE);
+        this.maxConcurrency = Math.max(1, builder.maxConcurrency);
+        this.maxRetries = Math.max(0, builder.maxRetries);
+        this.preserveOrder = builder.preserveOrder;
+        this.projections = new LinkedHashSet<>(builder.projections);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
     }
 
     @Override
     public List<Item> apply(final List<PrimaryKey> primaryKeys) {
-        final List<Item> rval = new ArrayList<>();
-        final List<PrimaryKey> keys = new ArrayList<>();
-        final Supplier<List<Item>> lazyGet = () -> {
-            final TableKeysAndAttributes tableKeys = new TableKeysAndAttributes(tableName);
-            keys.forEach(tableKeys::addPrimaryKey);
-            return db.batchGetItem(tableKeys).getTableItems().get(tableName);
-        };
-        for (final PrimaryKey key : primaryKeys) {
-            keys.add(key);
-            if (keys.size() == MAX_PAGE_SIZE) {
-                rval.addAll(lazyGet.get());
-                keys.clear();
-            }
+        return execute(primaryKeys).getItems();
+    }
+
+    public BatchGetResult execute(final Collection<PrimaryKey> primaryKeys) {
+        final BatchStatistics statistics = new BatchStatistics();
+        final List<PrimaryKey> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(primaryKeys));
+        final List<CompletableFuture<List<Item>>> chunks = new ArrayList<>();
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        for (int start = 0; start < uniqueKeys.size(); start += MAX_PAGE_SIZE) {
+            final List<PrimaryKey> chunk = uniqueKeys.subList(start, Math.min(uniqueKeys.size(), start + MAX_PAGE_SIZE));
+            acquire(permits);
+            chunks.add(CompletableFuture.supplyAsync(() -> fetch(chunk, statistics), executor)
+                    .whenComplete((items, error) -> permits.release()));
         }
-        if (!keys.isEmpty()) {
-            rval.addAll(lazyGet.get());
+        final List<Item> items = new ArrayList<>();
+        chunks.forEach(chunk -> items.addAll(join(chunk)));
+        return new BatchGetResult(preserveOrder ? order(uniqueKeys, items) : items, statistics);
+    }
+
+    private List<Item> fetch(final List<PrimaryKey> keys, final BatchStatistics statistics) {
+        final List<Item> items = new ArrayList<>();
+        final TableKeysAndAttributes tableKeys = new TableKeysAndAttributes(tableName);
+        keys.forEach(tableKeys::addPrimaryKey);
+        if (!projections.isEmpty()) {
+            // Keys are always projected, so that results can be put back in order
+            final Set<String> attributes = new LinkedHashSet<>(keys.get(0).getComponentNameSet());
+            attributes.addAll(projections);
+            final Map<String, String> names = new HashMap<>();
+            tableKeys.withProjectionExpression(TranslationUtils.translateProjections(attributes, names))
+                    .withNameMap(names);
+        }
+        BatchGetItemSpec spec = new BatchGetItemSpec()
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withTableKeyAndAttributes(tableKeys);
+        statistics.addChunk();
+        int requested = keys.size();
+        for (int attempt = 0;; attempt++) {
+            final BatchGetItemSpec request = spec;
+            final int expected = requested;
+            final BatchGetItemOutcome outcome = governor.execute(() -> {
+                final long start = System.nanoTime();
+                final BatchGetItemOutcome result = db.batchGetItem(request);
+                metrics.record(RetrievalEvent.builder()
+                        .withTableName(tableName)
+                        .withStrategy(RetrievalEvent.BATCH_GET)
+                        .withLatencyNanos(System.nanoTime() - start)
+                        .withConsumedCapacity(result.getBatchGetItemResult().getConsumedCapacity())
+                        .withScannedCount(expected)
+                        .withReturnedCount(tableItems(result).size())
+                        .build());
+                return result;
+            }, result -> ThroughputGovernor.capacityUnits(result.getBatchGetItemResult().getConsumedCapacity()));
+            items.addAll(tableItems(outcome));
+            statistics.addConsumedCapacity(outcome.getBatchGetItemResult().getConsumedCapacity());
+            final Map<String, KeysAndAttributes> unprocessed = outcome.getUnprocessedKeys();
+            if (Objects.isNull(unprocessed) || unprocessed.isEmpty()) {
+                return items;
+            }
+            if (attempt >= maxRetries) {
+                final int remaining = unprocessed.values().stream().mapToInt(k -> k.getKeys().size()).sum();
+                throw new UnprocessedItemsException("Failed to get " + remaining + " keys from "
+                        + tableName + " after " + attempt + " retries", remaining);
+            }
+            requested = unprocessed.values().stream().mapToInt(k -> k.getKeys().size()).sum();
+            governor.throttled();
+            backoff.pause(attempt);
+            statistics.addRetry();
+            spec = new BatchGetItemSpec()
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                    .withUnprocessedKeys(unprocessed);
         }
-        return rval;
+    }
+
+    private List<Item> tableItems(final BatchGetItemOutcome outcome) {
+        return Optional.ofNullable(outcome.getTableItems())
+                .map(tableItems -> tableItems.get(tableName))
+                .orElse(Collections.emptyList());
+    }
+
+    static List<Item> order(final List<PrimaryKey> keys, final List<Item> items) {
+        final Map<Map<String, Object>, Item> itemsByKey = items.stream().collect(Collectors.toMap(
+                item -> TranslationUtils.normalizeKey(item, keys.get(0).getComponentNameSet()),
+                Function.identity(),
+                (left, right) -> left));
+        return keys.stream()
+                .map(TranslationUtils::normalizeKey)
+                .map(itemsByKey::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 }
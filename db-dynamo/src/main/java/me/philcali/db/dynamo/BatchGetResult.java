@@ -0,0 +1,23 @@
+package me.philcali.db.dynamo;
+
+import java.util.List;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+public class BatchGetResult {
+    private final List<Item> items;
+    private final BatchStatistics statistics;
+
+    public BatchGetResult(final List<Item> items, final BatchStatistics statistics) {
+        this.items = items;
+        this.statistics = statistics;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public BatchStatistics getStatistics() {
+        return statistics;
+    }
+}
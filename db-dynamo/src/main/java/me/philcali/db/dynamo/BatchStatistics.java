@@ -0,0 +1,53 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+
+public class BatchStatistics {
+    private final AtomicInteger chunks = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final DoubleAdder consumedCapacity = new DoubleAdder();
+
+    void addChunk() {
+        chunks.incrementAndGet();
+    }
+
+    void addRetry() {
+        retries.incrementAndGet();
+    }
+
+    void addConsumedCapacity(final Collection<ConsumedCapacity> capacities) {
+        Optional.ofNullable(capacities).ifPresent(cs -> cs.forEach(capacity -> {
+            Optional.ofNullable(capacity.getCapacityUnits()).ifPresent(consumedCapacity::add);
+        }));
+    }
+
+    void addAll(final BatchStatistics statistics) {
+        chunks.addAndGet(statistics.getChunks());
+        retries.addAndGet(statistics.getRetries());
+        consumedCapacity.add(statistics.getConsumedCapacity());
+    }
+
+    public int getChunks() {
+        return chunks.get();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    public double getConsumedCapacity() {
+        return consumedCapacity.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchStatistics [chunks=" + getChunks()
+                + ", retries=" + getRetries()
+                + ", consumedCapacity=" + getConsumedCapacity() + "]";
+    }
+}
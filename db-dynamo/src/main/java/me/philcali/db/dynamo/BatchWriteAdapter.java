@@ -0,0 +1,215 @@
+package me.philcali.db.dynamo;
+
+import static me.philcali.db.dynamo.ConcurrentUtils.acquire;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchWriteItemSpec;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class BatchWriteAdapter implements BiFunction<Collection<Item>, Collection<PrimaryKey>, BatchStatistics> {
+    public static final int MAX_BATCH_SIZE = 25;
+    public static final long MAX_REQUEST_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRIES = 8;
+
+    public static class Builder {
+        private DynamoDB db;
+        private String tableName;
+        private Executor executor;
+        private ExponentialBackoff backoff;
+        private IThroughputGovernor governor;
+        private List<String> keyNames = new ArrayList<>();
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+
+        public BatchWriteAdapter build() {
+            Objects.requireNonNull(db);
+            Objects.requireNonNull(tableName);
+            if (keyNames.isEmpty()) {
+                throw new IllegalArgumentException("A batch write adapter needs the table key names");
+            }
+            return new BatchWriteAdapter(this);
+        }
+
+        public Builder withBackoff(final ExponentialBackoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder withDynamoDB(final DynamoDB db) {
+            this.db = db;
+            return this;
+        }
+
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        /**
+         * The table's key attributes, which tell the writes of the same key apart.
+         */
+        public Builder withKeyNames(final String ... keyNames) {
+            this.keyNames = Arrays.asList(keyNames);
+            return this;
+        }
+
+        public Builder withMaxConcurrency(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+    }
+
+    private static final class Batch {
+        private final TableWriteItems writes;
+        private int size;
+        private long bytes;
+
+        private Batch(final String tableName) {
+            this.writes = new TableWriteItems(tableName);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final String tableName;
+    private final DynamoDB db;
+    private final Executor executor;
+    private final ExponentialBackoff backoff;
+    private final IThroughputGovernor governor;
+    private final List<String> keyNames;
+    private final int maxConcurrency;
+    private final int maxRetries;
+
+    private BatchWriteAdapter(final Builder builder) {
+        this.tableName = builder.tableName;
+        this.db = builder.db;
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.backoff = Optional.ofNullable(builder.backoff).orElseGet(ExponentialBackoff::new);
+        this.governor = Optional.ofNullable(builder.governor).orElse(IThroughputGovernor.NONE);
+        this.keyNames = builder.keyNames;
+        this.maxConcurrency = Math.max(1, builder.maxConcurrency);
+        this.maxRetries = Math.max(0, builder.maxRetries);
+    }
+
+    public BatchStatistics put(final Collection<Item> items) {
+        return apply(items, Collections.emptyList());
+    }
+
+    public BatchStatistics delete(final Collection<PrimaryKey> keys) {
+        return apply(Collections.emptyList(), keys);
+    }
+
+    /**
+     * Writes the last put of every key, unless the key is also deleted: a
+     * delete wins over any put of its key in the same call.
+     */
+    @Override
+    public BatchStatistics apply(final Collection<Item> puts, final Collection<PrimaryKey> deletes) {
+        final BatchStatistics statistics = new BatchStatistics();
+        final List<CompletableFuture<Void>> requests = new ArrayList<>();
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        Batch batch = new Batch(tableName);
+        for (final Object write : coalesce(puts, deletes)) {
+            final long bytes = write instanceof Item ? ItemSizes.estimate((Item) write) : ItemSizes.estimate((PrimaryKey) write);
+            if (batch.size == MAX_BATCH_SIZE || (batch.size > 0 && batch.bytes + bytes > MAX_REQUEST_BYTES)) {
+                requests.add(submit(batch, permits, statistics));
+                batch = new Batch(tableName);
+            }
+            if (write instanceof Item) {
+                batch.writes.addItemToPut((Item) write);
+            } else {
+                batch.writes.addPrimaryKeyToDelete((PrimaryKey) write);
+            }
+            batch.size++;
+            batch.bytes += bytes;
+        }
+        if (batch.size > 0) {
+            requests.add(submit(batch, permits, statistics));
+        }
+        requests.forEach(ConcurrentUtils::join);
+        return statistics;
+    }
+
+    /*
+     * A single BatchWriteItem call rejects two writes on the same key, so the
+     * last put of a key wins, and the deletes, added after, win over the puts.
+     */
+    private Collection<Object> coalesce(final Collection<Item> puts, final Collection<PrimaryKey> deletes) {
+        final Map<Object, Object> writes = new LinkedHashMap<>();
+        puts.forEach(item -> writes.put(TranslationUtils.normalizeKey(item, keyNames), item));
+        deletes.forEach(key -> writes.put(TranslationUtils.normalizeKey(key), key));
+        return writes.values();
+    }
+
+    private CompletableFuture<Void> submit(final Batch batch, final Semaphore permits, final BatchStatistics statistics) {
+        acquire(permits);
+        return CompletableFuture.runAsync(() -> write(batch.writes, statistics), executor)
+                .whenComplete((nothing, error) -> permits.release());
+    }
+
+    private void write(final TableWriteItems writes, final BatchStatistics statistics) {
+        BatchWriteItemSpec spec = new BatchWriteItemSpec()
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withTableWriteItems(writes);
+        statistics.addChunk();
+        for (int attempt = 0;; attempt++) {
+            final BatchWriteItemSpec request = spec;
+            final BatchWriteItemOutcome outcome = governor.execute(() -> db.batchWriteItem(request),
+                    result -> ThroughputGovernor.capacityUnits(result.getBatchWriteItemResult().getConsumedCapacity()));
+            statistics.addConsumedCapacity(outcome.getBatchWriteItemResult().getConsumedCapacity());
+            final Map<String, List<WriteRequest>> unprocessed = outcome.getUnprocessedItems();
+            if (Objects.isNull(unprocessed) || unprocessed.isEmpty()) {
+                return;
+            }
+            if (attempt >= maxRetries) {
+                final int remaining = unprocessed.values().stream().mapToInt(List::size).sum();
+                throw new UnprocessedItemsException("Failed to write " + remaining + " items to "
+                        + tableName + " after " + attempt + " retries", remaining);
+            }
+            governor.throttled();
+            backoff.pause(attempt);
+            statistics.addRetry();
+            spec = new BatchWriteItemSpec()
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                    .withUnprocessedItems(unprocessed);
+        }
+    }
+}
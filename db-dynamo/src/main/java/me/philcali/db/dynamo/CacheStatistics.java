@@ -0,0 +1,83 @@
+package me.philcali.db.dynamo;
+
+public class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long collapsed;
+    private final long evictions;
+    private final long expirations;
+    private final long entries;
+    private final long weightedSize;
+
+    public CacheStatistics(
+            final long hits,
+            final long misses,
+            final long loads,
+            final long collapsed,
+            final long evictions,
+            final long expirations,
+            final long entries,
+            final long weightedSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.collapsed = collapsed;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.entries = entries;
+        this.weightedSize = weightedSize;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getLoadCount() {
+        return loads;
+    }
+
+    /**
+     * @return misses that waited on another caller's load instead of loading
+     */
+    public long getCollapsedCount() {
+        return collapsed;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    public long getExpirationCount() {
+        return expirations;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    public double getHitRate() {
+        final long requests = hits + misses;
+        return requests == 0 ? 0.0 : hits / (double) requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics [hits=" + hits
+                + ", misses=" + misses
+                + ", loads=" + loads
+                + ", collapsed=" + collapsed
+                + ", evictions=" + evictions
+                + ", expirations=" + expirations
+                + ", entries=" + entries
+                + ", weightedSize=" + weightedSize + "]";
+    }
+}
@@ -0,0 +1,109 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * Keeps whole result pages of another strategy for a while. Pages are keyed
+ * on the table and normalized params, weighed by their estimated item sizes,
+ * and concurrent misses on the same page share a single backend call.
+ */
+public class CachingRetrievalStrategy implements IRetrievalStrategy {
+    private static final long PAGE_OVERHEAD = 64;
+
+    public static class Builder {
+        private IRetrievalStrategy strategy;
+        private final NearCache.Builder<QueryCacheKey, QueryResult<Item>> cache =
+                NearCache.<QueryCacheKey, QueryResult<Item>>builder()
+                        .withWeigher(CachingRetrievalStrategy::estimate);
+
+        public CachingRetrievalStrategy build() {
+            Objects.requireNonNull(strategy, "A strategy to cache is required");
+            return new CachingRetrievalStrategy(this);
+        }
+
+        public Builder withEviction(final NearCache.Eviction eviction) {
+            cache.withEviction(eviction);
+            return this;
+        }
+
+        public Builder withMaxBytes(final long maxBytes) {
+            cache.withMaxBytes(maxBytes);
+            return this;
+        }
+
+        public Builder withMaxEntries(final long maxEntries) {
+            cache.withMaxEntries(maxEntries);
+            return this;
+        }
+
+        public Builder withStrategy(final IRetrievalStrategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        public Builder withStripes(final int stripes) {
+            cache.withStripes(stripes);
+            return this;
+        }
+
+        public Builder withTtl(final long ttl, final TimeUnit unit) {
+            cache.withTtl(ttl, unit);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static long estimate(final QueryResult<Item> result) {
+        long size = PAGE_OVERHEAD;
+        for (final Item item : result.getItems()) {
+            size += ItemSizes.estimate(item);
+        }
+        if (Objects.nonNull(result.getToken())) {
+            size += ItemSizes.estimate(result.getToken().getKey());
+        }
+        return size;
+    }
+
+    private final IRetrievalStrategy strategy;
+    private final NearCache<QueryCacheKey, QueryResult<Item>> cache;
+
+    private CachingRetrievalStrategy(final Builder builder) {
+        this.strategy = builder.strategy;
+        this.cache = builder.cache.build();
+    }
+
+    @Override
+    public QueryResult<Item> apply(final QueryParams params, final Table table) {
+        return cache.get(QueryCacheKey.of(table.getTableName(), params), key -> {
+            final QueryResult<Item> result = strategy.apply(params, table);
+            return new QueryResult<>(result.getToken(), Collections.unmodifiableList(result.getItems()),
+                    result.isTruncated());
+        });
+    }
+
+    /**
+     * Drops every cached page, ie: after a write that may change any of them.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    public IRetrievalStrategy getStrategy() {
+        return strategy;
+    }
+}
@@ -0,0 +1,98 @@
+package me.philcali.db.dynamo;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+
+final class ConcurrentUtils {
+    private static final class Timer {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "db-dynamo-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void acquire(final Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while waiting for a permit", ie);
+        }
+    }
+
+    public static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Bridges an AsyncHandler style SDK call to a future; cancelling the
+     * future cancels the request.
+     */
+    public static <R extends AmazonWebServiceRequest, T> CompletableFuture<T> call(
+            final BiFunction<R, AsyncHandler<R, T>, Future<T>> method,
+            final R request) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Future<T> call = method.apply(request, new AsyncHandler<R, T>() {
+            @Override
+            public void onError(final Exception exception) {
+                result.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onSuccess(final R request, final T response) {
+                result.complete(response);
+            }
+        });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled() && Objects.nonNull(call)) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return a future completing after the delay, without holding a thread
+     */
+    public static CompletableFuture<Void> delay(final long delay, final TimeUnit unit) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final ScheduledFuture<?> timer = Timer.SCHEDULER.schedule(() -> result.complete(null), delay, unit);
+        result.whenComplete((nothing, error) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * Runs the task on the timer thread every period until cancelled, so it
+     * should only hand work off to an executor.
+     */
+    public static ScheduledFuture<?> every(final long period, final TimeUnit unit, final Runnable task) {
+        return Timer.SCHEDULER.scheduleWithFixedDelay(task, period, period, unit);
+    }
+
+    public static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+    }
+
+    private ConcurrentUtils() {
+    }
+}
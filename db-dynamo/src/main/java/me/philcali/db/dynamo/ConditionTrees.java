@@ -0,0 +1,115 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.IConditionExpression;
+import me.philcali.db.api.IConditionExpression.Logical;
+import me.philcali.db.api.QueryParams;
+
+/**
+ * Rewrites of the expression tree in a QueryParams that let the planner key
+ * queries on conditions nested in it.
+ */
+final class ConditionTrees {
+
+    /**
+     * @return every leaf condition of the tree, in the order they are compiled
+     */
+    static List<ICondition> leaves(final IConditionExpression tree) {
+        final List<ICondition> leaves = new ArrayList<>();
+        collectLeaves(tree, leaves);
+        return leaves;
+    }
+
+    /**
+     * Lifts the conditions an expression ANDs at its root into the conditions,
+     * where they can key a query, unless another condition is on their
+     * attribute. Whatever is left stays the expression.
+     */
+    static QueryParams normalize(final QueryParams params) {
+        final IConditionExpression tree = params.getExpression().orElse(null);
+        if (Objects.isNull(tree) || tree.getLogicalEvaluation() != Logical.AND) {
+            return params;
+        }
+        final Map<String, ICondition> lifted = new LinkedHashMap<>();
+        final List<ICondition> remaining = new ArrayList<>();
+        for (final ICondition child : flatten(tree, Logical.AND)) {
+            if (child instanceof IConditionExpression
+                    || params.getConditions().containsKey(child.getAttribute())
+                    || lifted.containsKey(child.getAttribute())) {
+                remaining.add(child);
+            } else {
+                lifted.put(child.getAttribute(), child);
+            }
+        }
+        final boolean unwrapped = remaining.size() == 1 && remaining.get(0) instanceof IConditionExpression;
+        if (lifted.isEmpty() && !unwrapped) {
+            return params;
+        }
+        final QueryParams.Builder builder = params.toBuilder().withConditions(new ArrayList<>(lifted.values()));
+        if (remaining.isEmpty()) {
+            builder.withExpression(null);
+        } else if (unwrapped) {
+            builder.withExpression((IConditionExpression) remaining.get(0));
+        } else {
+            builder.withExpression(Conditions.and(remaining.toArray(new ICondition[remaining.size()])));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Splits params whose expression is an OR into params per branch. Each
+     * branch also excludes what the branches before it match, so no two
+     * branches return the same item.
+     */
+    static List<QueryParams> branches(final QueryParams params) {
+        final IConditionExpression tree = params.getExpression().orElse(null);
+        if (Objects.isNull(tree) || tree.getLogicalEvaluation() != Logical.OR) {
+            return Collections.emptyList();
+        }
+        final List<ICondition> disjuncts = flatten(tree, Logical.OR);
+        final List<QueryParams> branches = new ArrayList<>(disjuncts.size());
+        for (int branch = 0; branch < disjuncts.size(); branch++) {
+            final ICondition[] conditions = new ICondition[branch + 1];
+            conditions[0] = disjuncts.get(branch);
+            for (int previous = 0; previous < branch; previous++) {
+                conditions[previous + 1] = Conditions.not(disjuncts.get(previous));
+            }
+            branches.add(normalize(params.toBuilder()
+                    .withExpression(Conditions.and(conditions))
+                    .withToken(null)
+                    .build()));
+        }
+        return branches;
+    }
+
+    private static List<ICondition> flatten(final IConditionExpression tree, final Logical logical) {
+        final List<ICondition> children = new ArrayList<>();
+        Collections.addAll(children, tree.getConditions());
+        for (final IConditionExpression nested : tree.getExpressions()) {
+            if (nested.getLogicalEvaluation() == logical) {
+                children.addAll(flatten(nested, logical));
+            } else {
+                children.add(nested);
+            }
+        }
+        return children;
+    }
+
+    private static void collectLeaves(final IConditionExpression tree, final List<ICondition> leaves) {
+        Collections.addAll(leaves, tree.getConditions());
+        for (final IConditionExpression nested : tree.getExpressions()) {
+            collectLeaves(nested, leaves);
+        }
+    }
+
+    private ConditionTrees() {
+    }
+}
@@ -0,0 +1,41 @@
+package me.philcali.db.dynamo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amazonaws.AbortedException;
+
+/**
+ * Exponential backoff with full jitter: the nth delay is drawn uniformly
+ * between zero and min(maxDelay, baseDelay * 2^n).
+ */
+public class ExponentialBackoff {
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 50;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public ExponentialBackoff(final long baseDelayMillis, final long maxDelayMillis) {
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public ExponentialBackoff() {
+        this(DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public long getDelayMillis(final int attempt) {
+        final long ceiling = baseDelayMillis << Math.min(attempt, 30);
+        final long bound = ceiling <= 0 ? maxDelayMillis : Math.min(maxDelayMillis, ceiling);
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    public void pause(final int attempt) {
+        try {
+            Thread.sleep(getDelayMillis(attempt));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while backing off", ie);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package me.philcali.db.dynamo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * How far one segment of an export got: the files it finished, the items in
+ * them, and the scan key to resume from. It is only saved once the files it
+ * counts are in place.
+ */
+final class ExportCheckpoint {
+    private static final String SEGMENT = "segment";
+    private static final String TOTAL_SEGMENTS = "totalSegments";
+    private static final String PARTS = "parts";
+    private static final String ITEMS = "items";
+    private static final String LAST_KEY = "lastKey";
+    private static final String DONE = "done";
+
+    private final int segment;
+    private final int totalSegments;
+    private final int parts;
+    private final long items;
+    private final Map<String, AttributeValue> lastKey;
+    private final boolean done;
+
+    ExportCheckpoint(
+            final int segment,
+            final int totalSegments,
+            final int parts,
+            final long items,
+            final Map<String, AttributeValue> lastKey,
+            final boolean done) {
+        this.segment = segment;
+        this.totalSegments = totalSegments;
+        this.parts = parts;
+        this.items = items;
+        this.lastKey = lastKey;
+        this.done = done;
+    }
+
+    static Optional<ExportCheckpoint> load(final IExportSink sink, final String name) throws IOException {
+        final Optional<InputStream> input = sink.open(name);
+        if (!input.isPresent()) {
+            return Optional.empty();
+        }
+        try (ExportFormat.ItemReader reader = ExportFormat.BINARY.reader(input.get())) {
+            final Item item = reader.read();
+            return Optional.of(new ExportCheckpoint(
+                    item.getInt(SEGMENT),
+                    item.getInt(TOTAL_SEGMENTS),
+                    item.getInt(PARTS),
+                    item.getLong(ITEMS),
+                    item.isPresent(LAST_KEY) ? ItemUtils.toAttributeValue(item.get(LAST_KEY)).getM() : null,
+                    item.getBoolean(DONE)));
+        }
+    }
+
+    void save(final IExportSink sink, final String name) throws IOException {
+        final Item item = new Item()
+                .withInt(SEGMENT, segment)
+                .withInt(TOTAL_SEGMENTS, totalSegments)
+                .withInt(PARTS, parts)
+                .withLong(ITEMS, items)
+                .withBoolean(DONE, done);
+        if (Objects.nonNull(lastKey)) {
+            item.with(LAST_KEY, ItemUtils.toSimpleMapValue(lastKey));
+        }
+        final IExportSink.ExportFile file = sink.create(name);
+        try {
+            final ExportFormat.ItemWriter writer = ExportFormat.BINARY.writer(file);
+            writer.write(item);
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            file.abort();
+            throw e;
+        }
+    }
+
+    int getSegment() {
+        return segment;
+    }
+
+    int getTotalSegments() {
+        return totalSegments;
+    }
+
+    /**
+     * @return the files the segment finished, numbered from zero
+     */
+    int getParts() {
+        return parts;
+    }
+
+    long getItems() {
+        return items;
+    }
+
+    Map<String, AttributeValue> getLastKey() {
+        return lastKey;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+}
@@ -0,0 +1,274 @@
+package me.philcali.db.dynamo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * How exported items are laid out in a file. NDJSON is an item's JSON per
+ * line, for other tools to read; it loses the difference between sets and
+ * lists, and binary values become base64 strings. BINARY is a compact,
+ * length prefixed encoding of the attribute values that round trips every
+ * DynamoDB type.
+ */
+public enum ExportFormat {
+    NDJSON(".ndjson") {
+        @Override
+        public ItemWriter writer(final OutputStream output) {
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            return new ItemWriter() {
+                @Override
+                public void write(final Item item) throws IOException {
+                    writer.write(item.toJSON());
+                    writer.write('\n');
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+
+        @Override
+        public ItemReader reader(final InputStream input) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            return new ItemReader() {
+                @Override
+                public Item read() throws IOException {
+                    String line;
+                    do {
+                        line = reader.readLine();
+                    } while (Objects.nonNull(line) && line.isEmpty());
+                    return Objects.isNull(line) ? null : Item.fromJSON(line);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+    },
+    BINARY(".bin") {
+        @Override
+        public ItemWriter writer(final OutputStream output) throws IOException {
+            final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+            data.write(MAGIC);
+            return new ItemWriter() {
+                @Override
+                public void write(final Item item) throws IOException {
+                    final Map<String, AttributeValue> values = ItemUtils.toAttributeValues(item);
+                    data.writeInt(values.size());
+                    for (final Map.Entry<String, AttributeValue> entry : values.entrySet()) {
+                        writeBytes(data, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                        writeValue(data, entry.getValue());
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    data.close();
+                }
+            };
+        }
+
+        @Override
+        public ItemReader reader(final InputStream input) throws IOException {
+            final DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+            final byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not a binary export file");
+            }
+            return new ItemReader() {
+                @Override
+                public Item read() throws IOException {
+                    final int size;
+                    try {
+                        size = data.readInt();
+                    } catch (EOFException e) {
+                        return null;
+                    }
+                    final Map<String, AttributeValue> values = new LinkedHashMap<>();
+                    for (int attribute = 0; attribute < size; attribute++) {
+                        values.put(new String(readBytes(data), StandardCharsets.UTF_8), readValue(data));
+                    }
+                    return ItemUtils.toItem(values);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    data.close();
+                }
+            };
+        }
+    };
+
+    private static final byte[] MAGIC = { 'D', 'B', 'X', 1 };
+
+    public interface ItemWriter extends Closeable {
+        void write(Item item) throws IOException;
+    }
+
+    public interface ItemReader extends Closeable {
+        /**
+         * @return the next item, or null at the end of the file
+         */
+        Item read() throws IOException;
+    }
+
+    private final String extension;
+
+    ExportFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public abstract ItemWriter writer(OutputStream output) throws IOException;
+
+    public abstract ItemReader reader(InputStream input) throws IOException;
+
+    private static void writeValue(final DataOutputStream data, final AttributeValue value) throws IOException {
+        if (Objects.nonNull(value.getS())) {
+            data.writeByte('S');
+            writeBytes(data, value.getS().getBytes(StandardCharsets.UTF_8));
+        } else if (Objects.nonNull(value.getN())) {
+            data.writeByte('N');
+            writeBytes(data, value.getN().getBytes(StandardCharsets.UTF_8));
+        } else if (Objects.nonNull(value.getB())) {
+            data.writeByte('B');
+            writeBytes(data, bytes(value.getB()));
+        } else if (Objects.nonNull(value.getBOOL())) {
+            data.writeByte('T');
+            data.writeBoolean(value.getBOOL());
+        } else if (Objects.nonNull(value.getSS())) {
+            data.writeByte('s');
+            data.writeInt(value.getSS().size());
+            for (final String element : value.getSS()) {
+                writeBytes(data, element.getBytes(StandardCharsets.UTF_8));
+            }
+        } else if (Objects.nonNull(value.getNS())) {
+            data.writeByte('n');
+            data.writeInt(value.getNS().size());
+            for (final String element : value.getNS()) {
+                writeBytes(data, element.getBytes(StandardCharsets.UTF_8));
+            }
+        } else if (Objects.nonNull(value.getBS())) {
+            data.writeByte('b');
+            data.writeInt(value.getBS().size());
+            for (final ByteBuffer element : value.getBS()) {
+                writeBytes(data, bytes(element));
+            }
+        } else if (Objects.nonNull(value.getM())) {
+            data.writeByte('M');
+            data.writeInt(value.getM().size());
+            for (final Map.Entry<String, AttributeValue> entry : value.getM().entrySet()) {
+                writeBytes(data, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                writeValue(data, entry.getValue());
+            }
+        } else if (Objects.nonNull(value.getL())) {
+            data.writeByte('L');
+            data.writeInt(value.getL().size());
+            for (final AttributeValue element : value.getL()) {
+                writeValue(data, element);
+            }
+        } else {
+            data.writeByte('0');
+        }
+    }
+
+    private static AttributeValue readValue(final DataInputStream data) throws IOException {
+        final byte type = data.readByte();
+        switch (type) {
+        case 'S':
+            return new AttributeValue().withS(new String(readBytes(data), StandardCharsets.UTF_8));
+        case 'N':
+            return new AttributeValue().withN(new String(readBytes(data), StandardCharsets.UTF_8));
+        case 'B':
+            return new AttributeValue().withB(ByteBuffer.wrap(readBytes(data)));
+        case 'T':
+            return new AttributeValue().withBOOL(data.readBoolean());
+        case 's':
+        case 'n': {
+            final int size = data.readInt();
+            final List<String> elements = new ArrayList<>(size);
+            for (int element = 0; element < size; element++) {
+                elements.add(new String(readBytes(data), StandardCharsets.UTF_8));
+            }
+            return type == 's' ? new AttributeValue().withSS(elements) : new AttributeValue().withNS(elements);
+        }
+        case 'b': {
+            final int size = data.readInt();
+            final List<ByteBuffer> elements = new ArrayList<>(size);
+            for (int element = 0; element < size; element++) {
+                elements.add(ByteBuffer.wrap(readBytes(data)));
+            }
+            return new AttributeValue().withBS(elements);
+        }
+        case 'M': {
+            final int size = data.readInt();
+            final Map<String, AttributeValue> entries = new LinkedHashMap<>();
+            for (int entry = 0; entry < size; entry++) {
+                entries.put(new String(readBytes(data), StandardCharsets.UTF_8), readValue(data));
+            }
+            return new AttributeValue().withM(entries);
+        }
+        case 'L': {
+            final int size = data.readInt();
+            final List<AttributeValue> elements = new ArrayList<>(size);
+            for (int element = 0; element < size; element++) {
+                elements.add(readValue(data));
+            }
+            return new AttributeValue().withL(elements);
+        }
+        case '0':
+            return new AttributeValue().withNULL(true);
+        default:
+            throw new IOException("Unknown attribute type: " + (char) type);
+        }
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer) {
+        final ByteBuffer copy = buffer.duplicate();
+        final byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(final DataOutputStream data, final byte[] bytes) throws IOException {
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream data) throws IOException {
+        final byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,34 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a TableExporter wrote, across every run it took to finish.
+ */
+public class ExportResult {
+    private final int totalSegments;
+    private final long itemCount;
+    private final List<String> files;
+
+    public ExportResult(final int totalSegments, final long itemCount, final List<String> files) {
+        this.totalSegments = totalSegments;
+        this.itemCount = itemCount;
+        this.files = Collections.unmodifiableList(files);
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the name of every file, by segment and part, as listed in the manifest
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+}
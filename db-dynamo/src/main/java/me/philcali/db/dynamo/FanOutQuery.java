@@ -0,0 +1,130 @@
+package me.philcali.db.dynamo;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import me.philcali.db.api.CompositePageKey;
+import me.philcali.db.api.IPageKey;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryParams.Collation;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * One query per value of an IN condition on a hash key, merged back into a
+ * page ordered by the sort key. Every query reads up to the max size, so the
+ * merge can take the first max size items in order. The token holds a cursor
+ * for every query with items left: the key of the last item the page took
+ * from it, or where it was when the page took none. A query that has not
+ * read anything yet keeps an empty cursor.
+ */
+final class FanOutQuery {
+    static final String FAN_OUT = "fanOut";
+
+    private final QueryPlan plan;
+    private final QueryParams params;
+    private final List<Object> values;
+    private final Map<Integer, Optional<IPageKey>> cursors;
+
+    FanOutQuery(final QueryPlan plan, final QueryParams params) {
+        this.plan = plan;
+        this.params = params;
+        this.values = plan.getFanOutValues(params);
+        this.cursors = new LinkedHashMap<>();
+        final Optional<CompositePageKey> token = CompositePageKey.fromToken(params.getToken());
+        if (token.isPresent()) {
+            token.get().getCursors().forEach((id, cursor) -> {
+                cursors.put(Integer.parseInt(id), Optional.of(cursor).filter(key -> !key.getKey().isEmpty()));
+            });
+        } else {
+            for (int id = 0; id < values.size(); id++) {
+                cursors.put(id, Optional.empty());
+            }
+        }
+    }
+
+    Set<Integer> getActive() {
+        return cursors.keySet();
+    }
+
+    QueryParams params(final int id) {
+        return params.toBuilder().withToken(cursors.get(id).orElse(null)).build();
+    }
+
+    ValueMap bind(final int id) {
+        return plan.bind(params, values.get(id));
+    }
+
+    QueryResult<Item> merge(final Map<Integer, QueryResult<Item>> pages) {
+        final List<Object[]> candidates = new ArrayList<>();
+        pages.forEach((id, page) -> page.getItems().forEach(item -> candidates.add(new Object[] { id, item })));
+        Comparator<Object[]> order = Comparator.comparingInt(candidate -> 0);
+        if (plan.getSortKey().isPresent()) {
+            final String sortKey = plan.getSortKey().get();
+            final Comparator<Object[]> bySortKey = (left, right) -> compareValues(
+                    ((Item) left[1]).get(sortKey),
+                    ((Item) right[1]).get(sortKey));
+            order = params.getCollation() == Collation.DESCENDING ? bySortKey.reversed() : bySortKey;
+        }
+        // The sort is stable, so ties and unsorted results keep the order of the queries
+        candidates.sort(order);
+        final List<Item> items = new ArrayList<>();
+        final Map<Integer, Item> lastTaken = new HashMap<>();
+        final Map<Integer, Integer> taken = new HashMap<>();
+        for (final Object[] candidate : candidates.subList(0, Math.min(params.getMaxSize(), candidates.size()))) {
+            final int id = (Integer) candidate[0];
+            items.add((Item) candidate[1]);
+            lastTaken.put(id, (Item) candidate[1]);
+            taken.merge(id, 1, Integer::sum);
+        }
+        final CompositePageKey token = new CompositePageKey().addAttribute(FAN_OUT, values.size());
+        pages.forEach((id, page) -> {
+            final int count = taken.getOrDefault(id, 0);
+            if (count < page.getItems().size()) {
+                token.addCursor(Integer.toString(id), count == 0
+                        ? cursors.get(id).orElseGet(PageKey::new)
+                        : new PageKeyDynamo(keyOf(lastTaken.get(id))));
+            } else if (page.isTruncated()) {
+                token.addCursor(Integer.toString(id), page.getToken());
+            }
+        });
+        return new QueryResult<>(token.isEmpty() ? null : token, items, !token.isEmpty());
+    }
+
+    private Map<String, AttributeValue> keyOf(final Item item) {
+        final Map<String, AttributeValue> key = new HashMap<>();
+        plan.getKeyNames().forEach(name -> key.put(name, ItemUtils.toAttributeValue(item.get(name))));
+        return key;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compareValues(final Object left, final Object right) {
+        if (Objects.isNull(left) || Objects.isNull(right)) {
+            return Objects.isNull(left) ? (Objects.isNull(right) ? 0 : 1) : -1;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        if (left instanceof byte[] && right instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) left).compareTo(ByteBuffer.wrap((byte[]) right));
+        }
+        if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            return ((Comparable) left).compareTo(right);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+}
@@ -0,0 +1,18 @@
+package me.philcali.db.dynamo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * Non blocking counterpart of the IRetrievalStrategy, applied to a table by
+ * name. Cancelling the returned future cancels the request in flight.
+ */
+public interface IAsyncRetrievalStrategy extends BiFunction<QueryParams, String, CompletableFuture<QueryResult<Item>>> {
+    @Override
+    CompletableFuture<QueryResult<Item>> apply(QueryParams params, String tableName);
+}
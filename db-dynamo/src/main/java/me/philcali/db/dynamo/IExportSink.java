@@ -0,0 +1,27 @@
+package me.philcali.db.dynamo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Where a TableExporter puts its files. A file only shows up once it is
+ * closed, replacing any file of the same name, so a file cut short by a
+ * failure is never seen by a resumed export or by its readers.
+ */
+public interface IExportSink {
+    /**
+     * A file being written: closing it puts it in place, aborting drops it.
+     */
+    abstract class ExportFile extends OutputStream {
+        public abstract void abort() throws IOException;
+    }
+
+    ExportFile create(String name) throws IOException;
+
+    /**
+     * @return the contents of the file, if there is one by that name
+     */
+    Optional<InputStream> open(String name) throws IOException;
+}
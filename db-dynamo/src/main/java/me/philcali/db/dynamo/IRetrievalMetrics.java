@@ -0,0 +1,13 @@
+package me.philcali.db.dynamo;
+
+/**
+ * Receives an event for every request the retrieval strategies and adapters
+ * make to DynamoDB. Implementations are called on the requesting thread, so
+ * they should be quick and must be thread safe.
+ */
+@FunctionalInterface
+public interface IRetrievalMetrics {
+    IRetrievalMetrics NONE = event -> { };
+
+    void record(RetrievalEvent event);
+}
@@ -1,14 +1,25 @@
 package me.philcali.db.dynamo;
 
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.Table;
 
 import me.philcali.db.api.QueryParams;
 import me.philcali.db.api.QueryResult;
+import me.philcali.db.api.QueryResultIterator;
 
 public interface IRetrievalStrategy extends BiFunction<QueryParams, Table, QueryResult<Item>> {
     @Override
     QueryResult<Item> apply(QueryParams params, Table table);
+
+    default Stream<Item> stream(final QueryParams params, final Table table) {
+        return QueryResultIterator.stream(pageParams -> apply(pageParams, table), params);
+    }
+
+    default Stream<Item> stream(final QueryParams params, final Table table, final Executor executor, final int prefetch) {
+        return QueryResultIterator.stream(pageParams -> apply(pageParams, table), params, executor, prefetch);
+    }
 }
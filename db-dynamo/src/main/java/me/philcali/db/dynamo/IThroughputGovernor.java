@@ -0,0 +1,33 @@
+package me.philcali.db.dynamo;
+
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Paces the calls a strategy or adapter makes against a table, hearing about
+ * the capacity each one consumed and about every throttle.
+ */
+public interface IThroughputGovernor {
+    IThroughputGovernor NONE = new IThroughputGovernor() {
+        @Override
+        public <T> T execute(final Supplier<T> call, final ToDoubleFunction<T> consumedUnits) {
+            return call.get();
+        }
+
+        @Override
+        public void throttled() {
+        }
+    };
+
+    /**
+     * Runs the call once the budget allows it, retrying it when DynamoDB
+     * throttles the request.
+     */
+    <T> T execute(Supplier<T> call, ToDoubleFunction<T> consumedUnits);
+
+    /**
+     * A call went through, but part of it was throttled, like the unprocessed
+     * items of a batch.
+     */
+    void throttled();
+}
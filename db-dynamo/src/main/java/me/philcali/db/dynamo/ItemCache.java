@@ -0,0 +1,97 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+
+/**
+ * A near cache of items by primary key, weighed by their estimated DynamoDB
+ * size. Keys are normalized, so a numeric key read as a long and written as a
+ * BigDecimal lands on the same entry.
+ */
+public class ItemCache {
+
+    public static class Builder {
+        private List<String> keyNames = new ArrayList<>();
+        private final NearCache.Builder<Map<String, Object>, Item> cache = NearCache.<Map<String, Object>, Item>builder()
+                .withWeigher(ItemSizes::estimate);
+
+        public ItemCache build() {
+            if (keyNames.isEmpty()) {
+                throw new IllegalArgumentException("An item cache needs the table key names");
+            }
+            return new ItemCache(this);
+        }
+
+        public Builder withEviction(final NearCache.Eviction eviction) {
+            cache.withEviction(eviction);
+            return this;
+        }
+
+        public Builder withKeyNames(final String ... keyNames) {
+            this.keyNames = Arrays.asList(keyNames);
+            return this;
+        }
+
+        public Builder withMaxBytes(final long maxBytes) {
+            cache.withMaxBytes(maxBytes);
+            return this;
+        }
+
+        public Builder withMaxEntries(final long maxEntries) {
+            cache.withMaxEntries(maxEntries);
+            return this;
+        }
+
+        public Builder withStripes(final int stripes) {
+            cache.withStripes(stripes);
+            return this;
+        }
+
+        public Builder withTtl(final long ttl, final TimeUnit unit) {
+            cache.withTtl(ttl, unit);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final List<String> keyNames;
+    private final NearCache<Map<String, Object>, Item> cache;
+
+    private ItemCache(final Builder builder) {
+        this.keyNames = builder.keyNames;
+        this.cache = builder.cache.build();
+    }
+
+    public Item get(final PrimaryKey key, final Function<PrimaryKey, Item> loader) {
+        return cache.get(TranslationUtils.normalizeKey(key), normalized -> loader.apply(key));
+    }
+
+    public void invalidate(final PrimaryKey key) {
+        cache.invalidate(TranslationUtils.normalizeKey(key));
+    }
+
+    public void invalidate(final Item item) {
+        if (Objects.nonNull(item)) {
+            cache.invalidate(TranslationUtils.normalizeKey(item, keyNames));
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+}
@@ -0,0 +1,258 @@
+package me.philcali.db.dynamo;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+
+/**
+ * The attributes an update changes from the last known version of an item:
+ * the ones to SET because they differ, and the ones to REMOVE because the
+ * item explicitly holds them as null. Attributes the item leaves out are left
+ * alone, so without a last known version every attribute is SET, like a
+ * partial update. The attributes left out for being unchanged are a
+ * condition of the update, so it cannot lose a change made since, and the
+ * update means the same either way.
+ */
+public final class ItemDiff {
+    private final Item before;
+    private final Item after;
+    private final List<String> keyNames;
+    private final Map<String, Object> sets;
+    private final Set<String> removes;
+    private final Map<String, Object> unchanged;
+
+    private ItemDiff(final Item before, final Item after, final List<String> keyNames) {
+        this.before = before;
+        this.after = after;
+        this.keyNames = keyNames;
+        this.sets = new LinkedHashMap<>();
+        this.removes = new LinkedHashSet<>();
+        this.unchanged = new LinkedHashMap<>();
+        after.attributes().forEach(entry -> {
+            if (keyNames.contains(entry.getKey())) {
+                return;
+            }
+            if (Objects.isNull(entry.getValue())) {
+                removes.add(entry.getKey());
+            } else if (Objects.isNull(before) || !equal(before.get(entry.getKey()), entry.getValue())) {
+                sets.put(entry.getKey(), entry.getValue());
+            } else {
+                unchanged.put(entry.getKey(), before.get(entry.getKey()));
+            }
+        });
+    }
+
+    /**
+     * @param before the last known version of the item, or null when there is none
+     * @param after the item to write, keys included, holding the attributes to remove as null
+     */
+    public static ItemDiff between(final Item before, final Item after, final List<String> keyNames) {
+        return new ItemDiff(before, Objects.requireNonNull(after), keyNames);
+    }
+
+    public Item getBefore() {
+        return before;
+    }
+
+    public Item getAfter() {
+        return after;
+    }
+
+    public Map<String, Object> getSets() {
+        return Collections.unmodifiableMap(sets);
+    }
+
+    public Set<String> getRemoves() {
+        return Collections.unmodifiableSet(removes);
+    }
+
+    /**
+     * The attributes left out of the update for holding their last known
+     * value, which the update requires they still hold.
+     */
+    public Map<String, Object> getUnchanged() {
+        return Collections.unmodifiableMap(unchanged);
+    }
+
+    public boolean isEmpty() {
+        return sets.isEmpty() && removes.isEmpty();
+    }
+
+    public PrimaryKey getPrimaryKey() {
+        final PrimaryKey key = new PrimaryKey();
+        keyNames.forEach(name -> key.addComponent(name, after.get(name)));
+        return key;
+    }
+
+    /**
+     * Makes the changes to a copy of the item, the way the update expression
+     * would make them to the stored one.
+     */
+    public Item applyTo(final Item item) {
+        final Item updated = Item.fromMap(item.asMap());
+        sets.forEach(updated::with);
+        removes.forEach(updated::removeAttribute);
+        return updated;
+    }
+
+    /**
+     * Runs the update on the table. When it is the update of this diff and
+     * fails because an unchanged attribute was changed since, it runs again
+     * with every attribute SET, which only fails for a missing item.
+     */
+    public UpdateItemOutcome update(final Table table, final UpdateItemSpec spec) {
+        try {
+            return table.updateItem(spec);
+        } catch (ConditionalCheckFailedException e) {
+            if (unchanged.isEmpty() || !isUpdateOf(spec)) {
+                throw e;
+            }
+            return table.updateItem(between(null, after, keyNames).toUpdateItemSpec());
+        }
+    }
+
+    /**
+     * Whether the spec is the update of this diff, not one a caller changed
+     * or conditioned.
+     */
+    boolean isUpdateOf(final UpdateItemSpec spec) {
+        final UpdateItemSpec expected = toUpdateItemSpec();
+        return Objects.equals(spec.getUpdateExpression(), expected.getUpdateExpression())
+                && Objects.equals(spec.getConditionExpression(), expected.getConditionExpression())
+                && Objects.equals(spec.getNameMap(), expected.getNameMap())
+                && Objects.equals(spec.getValueMap(), expected.getValueMap())
+                && isNullOrEmpty(spec.getExpected())
+                && isNullOrEmpty(spec.getAttributeUpdate());
+    }
+
+    /**
+     * Writes the changes as one update expression on the item's key, which
+     * must exist and still hold the unchanged attributes, returning the whole
+     * item as it is after the update. Without changes it is only the
+     * condition, which still fails for a missing or changed item.
+     */
+    public UpdateItemSpec toUpdateItemSpec() {
+        final NameMap names = new NameMap();
+        final ValueMap values = new ValueMap();
+        final List<String> setActions = new ArrayList<>(sets.size());
+        final List<String> removeActions = new ArrayList<>(removes.size());
+        sets.forEach((name, value) -> {
+            final int index = names.size();
+            names.with("#a" + index, name);
+            values.with(":v" + index, value);
+            setActions.add("#a" + index + " = :v" + index);
+        });
+        removes.forEach(name -> {
+            final int index = names.size();
+            names.with("#a" + index, name);
+            removeActions.add("#a" + index);
+        });
+        final StringBuilder expression = new StringBuilder();
+        if (!setActions.isEmpty()) {
+            expression.append("SET ").append(String.join(", ", setActions));
+        }
+        if (!removeActions.isEmpty()) {
+            expression.append(expression.length() > 0 ? " " : "")
+                    .append("REMOVE ").append(String.join(", ", removeActions));
+        }
+        final List<String> conditions = new ArrayList<>(keyNames.size());
+        for (int key = 0; key < keyNames.size(); key++) {
+            names.with("#k" + key, keyNames.get(key));
+            conditions.add("attribute_exists(#k" + key + ")");
+        }
+        unchanged.forEach((name, value) -> {
+            final int index = conditions.size() - keyNames.size();
+            names.with("#c" + index, name);
+            values.with(":c" + index, value);
+            conditions.add("#c" + index + " = :c" + index);
+        });
+        final UpdateItemSpec spec = new UpdateItemSpec()
+                .withPrimaryKey(getPrimaryKey())
+                .withNameMap(names)
+                .withReturnValues(ReturnValue.ALL_NEW);
+        if (expression.length() > 0) {
+            spec.withUpdateExpression(expression.toString());
+        }
+        if (!conditions.isEmpty()) {
+            spec.withConditionExpression(String.join(" AND ", conditions));
+        }
+        // An empty value map is rejected, which is all a diff of removes has
+        if (!values.isEmpty()) {
+            spec.withValueMap(values);
+        }
+        return spec;
+    }
+
+    /**
+     * Attribute values are equal by their DynamoDB value: numbers regardless
+     * of scale, binaries by content and sets regardless of order.
+     */
+    static boolean equal(final Object left, final Object right) {
+        if (Objects.isNull(left) || Objects.isNull(right)) {
+            return Objects.isNull(left) && Objects.isNull(right);
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString())) == 0;
+        }
+        if (isBinary(left) && isBinary(right)) {
+            return TranslationUtils.normalizeValue(left).equals(TranslationUtils.normalizeValue(right));
+        }
+        if (left instanceof Set && right instanceof Set) {
+            return normalized((Set<?>) left).equals(normalized((Set<?>) right));
+        }
+        if (left instanceof List && right instanceof List) {
+            final List<?> leftValues = (List<?>) left;
+            final List<?> rightValues = (List<?>) right;
+            if (leftValues.size() != rightValues.size()) {
+                return false;
+            }
+            for (int index = 0; index < leftValues.size(); index++) {
+                if (!equal(leftValues.get(index), rightValues.get(index))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (left instanceof Map && right instanceof Map) {
+            final Map<?, ?> leftValues = (Map<?, ?>) left;
+            final Map<?, ?> rightValues = (Map<?, ?>) right;
+            if (!leftValues.keySet().equals(rightValues.keySet())) {
+                return false;
+            }
+            return leftValues.entrySet().stream()
+                    .allMatch(entry -> equal(entry.getValue(), rightValues.get(entry.getKey())));
+        }
+        return left.equals(right);
+    }
+
+    private static boolean isNullOrEmpty(final Collection<?> values) {
+        return Objects.isNull(values) || values.isEmpty();
+    }
+
+    private static boolean isBinary(final Object value) {
+        return value instanceof byte[] || value instanceof ByteBuffer;
+    }
+
+    private static Set<Object> normalized(final Collection<?> values) {
+        return values.stream().map(TranslationUtils::normalizeValue).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,129 @@
+package me.philcali.db.dynamo;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Coerces the values of an Item into the types of an entity's properties,
+ * for the item mappers a repository generates. An Item holds numbers as
+ * BigDecimal, and a set or list attribute may have been written as either,
+ * so these accept whatever DynamoDB hands back for the property.
+ */
+public final class ItemMappers {
+    public static String string(final Object value) {
+        return Objects.isNull(value) ? null : value.toString();
+    }
+
+    public static BigDecimal number(final Object value) {
+        if (Objects.isNull(value) || value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    public static BigInteger bigInteger(final Object value) {
+        return Objects.isNull(value) ? null : number(value).toBigInteger();
+    }
+
+    public static Boolean bool(final Object value) {
+        if (Objects.isNull(value) || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return Boolean.valueOf(value.toString());
+    }
+
+    /**
+     * Binary properties are stored as base64 strings, as Jackson writes them,
+     * though a binary attribute reads as well.
+     */
+    public static byte[] binary(final Object value) {
+        if (Objects.isNull(value) || value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        if (value instanceof ByteBuffer) {
+            final ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        return Base64.getDecoder().decode(value.toString());
+    }
+
+    public static String base64(final byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    public static <E extends Enum<E>> E enumeration(final Object value, final Class<E> type) {
+        return Objects.isNull(value) ? null : Enum.valueOf(type, value.toString());
+    }
+
+    public static <T> List<T> list(final Object value, final Function<Object, T> element) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        final Collection<?> values = (Collection<?>) value;
+        final List<T> result = new ArrayList<>(values.size());
+        values.forEach(thing -> result.add(Objects.isNull(thing) ? null : element.apply(thing)));
+        return result;
+    }
+
+    public static <T> Set<T> set(final Object value, final Function<Object, T> element) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        final Collection<?> values = (Collection<?>) value;
+        final Set<T> result = new LinkedHashSet<>(values.size() * 4 / 3 + 1);
+        values.forEach(thing -> result.add(Objects.isNull(thing) ? null : element.apply(thing)));
+        return result;
+    }
+
+    public static <T> Map<String, T> map(final Object value, final Function<Object, T> element) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        final Map<?, ?> values = (Map<?, ?>) value;
+        final Map<String, T> result = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+        values.forEach((key, thing) -> result.put(key.toString(), Objects.isNull(thing) ? null : element.apply(thing)));
+        return result;
+    }
+
+    /**
+     * Writes every collection as a list, like the JSON mapping before it did;
+     * an empty set is not a valid attribute value.
+     */
+    public static List<Object> toAttributeList(final Collection<?> values, final Function<Object, Object> element) {
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Object> result = new ArrayList<>(values.size());
+        values.forEach(thing -> result.add(Objects.isNull(thing) ? null : element.apply(thing)));
+        return result;
+    }
+
+    public static Map<String, Object> toAttributeMap(final Map<String, ?> values, final Function<Object, Object> element) {
+        final Map<String, Object> result = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+        values.forEach((key, thing) -> result.put(key, Objects.isNull(thing) ? null : element.apply(thing)));
+        return result;
+    }
+
+    private ItemMappers() {
+    }
+}
@@ -0,0 +1,88 @@
+package me.philcali.db.dynamo;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+
+/**
+ * Approximates the DynamoDB storage size of items, following the sizing rules
+ * in the DynamoDB developer guide: names and strings count their UTF-8 bytes,
+ * numbers roughly one byte per two significant digits plus one, and documents
+ * a few bytes of overhead per element.
+ */
+public final class ItemSizes {
+    private static final int DOCUMENT_OVERHEAD = 3;
+    private static final int ELEMENT_OVERHEAD = 1;
+
+    public static long estimate(final Item item) {
+        return estimate(item.asMap());
+    }
+
+    public static long estimate(final PrimaryKey key) {
+        long size = 0;
+        for (final KeyAttribute component : key.getComponents()) {
+            size += utf8Length(component.getName()) + estimateValue(component.getValue());
+        }
+        return size;
+    }
+
+    public static long estimate(final Map<String, ?> attributes) {
+        long size = 0;
+        for (final Map.Entry<String, ?> entry : attributes.entrySet()) {
+            size += utf8Length(entry.getKey()) + estimateValue(entry.getValue());
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static long estimateValue(final Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof String) {
+            return utf8Length((String) value);
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).precision() / 2 + 2;
+        } else if (value instanceof Number) {
+            return value.toString().length() / 2 + 2;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        } else if (value instanceof Map) {
+            return DOCUMENT_OVERHEAD + estimate((Map<String, ?>) value) + ((Map<?, ?>) value).size() * ELEMENT_OVERHEAD;
+        } else if (value instanceof Collection) {
+            long size = DOCUMENT_OVERHEAD;
+            for (final Object element : (Collection<?>) value) {
+                size += estimateValue(element) + ELEMENT_OVERHEAD;
+            }
+            return size;
+        }
+        return utf8Length(value.toString());
+    }
+
+    private static long utf8Length(final String value) {
+        long length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            final char c = value.charAt(index);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                index++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private ItemSizes() {
+    }
+}
@@ -0,0 +1,104 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+
+/**
+ * The last known version of items by primary key, as a repository read or
+ * wrote them, so an update only writes what changed since. The least recently
+ * tracked items are forgotten first, and an item that is not tracked is
+ * updated like a partial update.
+ */
+public class ItemTracker {
+
+    public static class Builder {
+        private List<String> keyNames = new ArrayList<>();
+        private final NearCache.Builder<Map<String, Object>, Item> versions = NearCache.<Map<String, Object>, Item>builder()
+                .withEviction(NearCache.Eviction.LRU)
+                .withWeigher(ItemSizes::estimate);
+
+        public ItemTracker build() {
+            if (keyNames.isEmpty()) {
+                throw new IllegalArgumentException("An item tracker needs the table key names");
+            }
+            return new ItemTracker(this);
+        }
+
+        public Builder withKeyNames(final String ... keyNames) {
+            this.keyNames = Arrays.asList(keyNames);
+            return this;
+        }
+
+        public Builder withMaxBytes(final long maxBytes) {
+            versions.withMaxBytes(maxBytes);
+            return this;
+        }
+
+        public Builder withMaxEntries(final long maxEntries) {
+            versions.withMaxEntries(maxEntries);
+            return this;
+        }
+
+        public Builder withStripes(final int stripes) {
+            versions.withStripes(stripes);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final List<String> keyNames;
+    private final NearCache<Map<String, Object>, Item> versions;
+
+    private ItemTracker(final Builder builder) {
+        this.keyNames = builder.keyNames;
+        this.versions = builder.versions.build();
+    }
+
+    /**
+     * Remembers the item as the last known version of its key. The item is
+     * kept as is, so it must not be changed afterwards.
+     */
+    public Item track(final Item item) {
+        if (Objects.nonNull(item)) {
+            versions.put(TranslationUtils.normalizeKey(item, keyNames), item);
+        }
+        return item;
+    }
+
+    /**
+     * @return the last known version of the item's key, or null
+     */
+    public Item get(final Item item) {
+        return versions.get(TranslationUtils.normalizeKey(item, keyNames));
+    }
+
+    /**
+     * Compares the item with the last known version of its key.
+     */
+    public ItemDiff diff(final Item item) {
+        return ItemDiff.between(get(item), item, keyNames);
+    }
+
+    public void forget(final PrimaryKey key) {
+        versions.invalidate(TranslationUtils.normalizeKey(key));
+    }
+
+    public void forget(final Item item) {
+        if (Objects.nonNull(item)) {
+            versions.invalidate(TranslationUtils.normalizeKey(item, keyNames));
+        }
+    }
+
+    public void forgetAll() {
+        versions.invalidateAll();
+    }
+}
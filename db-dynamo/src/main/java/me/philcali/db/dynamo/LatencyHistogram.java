@@ -0,0 +1,90 @@
+package me.philcali.db.dynamo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free log-linear histogram of nanosecond latencies: every power of two
+ * is split into eight buckets, so a percentile is within 12.5% of the truth.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (62 - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax(final TimeUnit unit) {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getMean(final TimeUnit unit) {
+        final long samples = count.sum();
+        return samples == 0 ? 0 : total.sum() / (double) samples / unit.toNanos(1);
+    }
+
+    /**
+     * @param percentile between 0 and 1, ie: 0.99
+     * @return the upper bound of the bucket holding that percentile
+     */
+    public long getPercentile(final double percentile, final TimeUnit unit) {
+        final long[] snapshot = new long[BUCKETS];
+        long samples = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = buckets.get(bucket);
+            samples += snapshot[bucket];
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile * samples));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= target) {
+                return unit.convert(Math.min(upperBound(bucket), max.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return 0;
+    }
+
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram [count=" + getCount()
+                + ", p50=" + getPercentile(0.5, TimeUnit.MICROSECONDS)
+                + "us, p99=" + getPercentile(0.99, TimeUnit.MICROSECONDS)
+                + "us, max=" + getMax(TimeUnit.MICROSECONDS) + "us]";
+    }
+}
@@ -0,0 +1,79 @@
+package me.philcali.db.dynamo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far a TableLoader got, updated as it goes.
+ */
+public class LoadStatistics {
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong itemsRead = new AtomicLong();
+    private final AtomicLong itemsWritten = new AtomicLong();
+    private final BatchStatistics batches = new BatchStatistics();
+    private final long startTime = System.nanoTime();
+
+    void addFile() {
+        files.incrementAndGet();
+    }
+
+    void addBytes(final long count) {
+        bytes.addAndGet(count);
+    }
+
+    void addItemsRead(final int count) {
+        itemsRead.addAndGet(count);
+    }
+
+    void addItemsWritten(final int count) {
+        itemsWritten.addAndGet(count);
+    }
+
+    void addBatches(final BatchStatistics statistics) {
+        batches.addAll(statistics);
+    }
+
+    /**
+     * @return the files read to the end
+     */
+    public int getFiles() {
+        return files.get();
+    }
+
+    /**
+     * @return bytes read from the files, before decompression
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getItemsRead() {
+        return itemsRead.get();
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten.get();
+    }
+
+    /**
+     * @return the BatchWriteItem requests, retries and capacity of every write
+     */
+    public BatchStatistics getBatches() {
+        return batches;
+    }
+
+    public double getItemsPerSecond() {
+        final long elapsed = System.nanoTime() - startTime;
+        return elapsed > 0 ? getItemsWritten() * 1_000_000_000.0 / elapsed : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadStatistics [files=" + getFiles()
+                + ", bytes=" + getBytes()
+                + ", itemsRead=" + getItemsRead()
+                + ", itemsWritten=" + getItemsWritten()
+                + ", batches=" + getBatches() + "]";
+    }
+}
@@ -0,0 +1,92 @@
+package me.philcali.db.dynamo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Writes export files under a directory. Every file is written next to its
+ * final name, synced, and moved into place when it is closed.
+ */
+public class LocalExportSink implements IExportSink {
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final Path directory;
+
+    public LocalExportSink(final Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public ExportFile create(final String name) throws IOException {
+        final Path target = directory.resolve(name);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        final Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+        final FileChannel channel = FileChannel.open(partial,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        final OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel));
+        return new ExportFile() {
+            private boolean closed;
+
+            @Override
+            public void write(final int value) throws IOException {
+                output.write(value);
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                output.write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                output.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                output.flush();
+                channel.force(true);
+                channel.close();
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            @Override
+            public void abort() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                channel.close();
+                Files.deleteIfExists(partial);
+            }
+        };
+    }
+
+    @Override
+    public Optional<InputStream> open(final String name) throws IOException {
+        final Path file = directory.resolve(name);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(Files.newInputStream(file));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,346 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * An in process cache bounded by entries and / or weight, split into
+ * independently locked stripes. Entries may expire after a TTL. Eviction is
+ * either plain LRU or W-TinyLFU: new entries land in a small LRU window, and
+ * leaving it they only displace the main region's LRU victim when they were
+ * used more often lately, so one off reads don't flush the popular entries.
+ */
+public class NearCache<K, V> {
+    public static final int DEFAULT_STRIPES = 16;
+    private static final int WINDOW_PERCENT = 1;
+
+    public enum Eviction {
+        LRU,
+        TINY_LFU;
+    }
+
+    public static class Builder<K, V> {
+        private long maxEntries;
+        private long maxBytes;
+        private ToLongFunction<? super V> weigher;
+        private long ttlMillis;
+        private Eviction eviction = Eviction.TINY_LFU;
+        private int stripes = DEFAULT_STRIPES;
+        private LongSupplier clock;
+
+        public NearCache<K, V> build() {
+            if (maxEntries <= 0 && maxBytes <= 0) {
+                throw new IllegalArgumentException("A near cache needs a max entries or max bytes bound");
+            }
+            if (maxBytes > 0) {
+                Objects.requireNonNull(weigher, "A weigher is required to bound by bytes");
+            }
+            return new NearCache<>(this);
+        }
+
+        public Builder<K, V> withClock(final LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder<K, V> withEviction(final Eviction eviction) {
+            this.eviction = eviction;
+            return this;
+        }
+
+        public Builder<K, V> withMaxBytes(final long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public Builder<K, V> withMaxEntries(final long maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder<K, V> withStripes(final int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        public Builder<K, V> withTtl(final long ttl, final TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        public Builder<K, V> withWeigher(final ToLongFunction<? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(final V value, final long weight, final long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Entry<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        private final long maxEntries;
+        private final long maxBytes;
+        private final long windowEntries;
+        private long bytes;
+        private long invalidations;
+
+        private Segment(final long maxEntries, final long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            final long expectedEntries = maxEntries > 0 ? maxEntries : 1024;
+            this.windowEntries = eviction == Eviction.TINY_LFU ? Math.max(1, expectedEntries * WINDOW_PERCENT / 100) : 0;
+            this.sketch = eviction == Eviction.TINY_LFU ? new FrequencySketch(expectedEntries) : null;
+        }
+
+        private V get(final K key) {
+            if (Objects.nonNull(sketch)) {
+                sketch.increment(key);
+            }
+            Entry<V> entry = window.get(key);
+            if (Objects.isNull(entry)) {
+                entry = main.get(key);
+            }
+            if (Objects.nonNull(entry) && entry.expiresAt <= clock.getAsLong()) {
+                remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (Objects.isNull(entry)) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+
+        private void put(final K key, final V value) {
+            remove(key);
+            final long weight = Objects.isNull(weigher) ? 1 : weigher.applyAsLong(value);
+            if (maxBytes > 0 && weight > maxBytes) {
+                return;
+            }
+            final long expiresAt = ttlMillis > 0 ? clock.getAsLong() + ttlMillis : Long.MAX_VALUE;
+            bytes += weight;
+            if (Objects.isNull(sketch)) {
+                main.put(key, new Entry<>(value, weight, expiresAt));
+            } else {
+                window.put(key, new Entry<>(value, weight, expiresAt));
+                while (window.size() > windowEntries) {
+                    admit(eldest(window));
+                }
+            }
+            while (isOverLimit()) {
+                evict(main.isEmpty() ? window : main, eldest(main.isEmpty() ? window : main));
+            }
+        }
+
+        private void admit(final K candidate) {
+            final Entry<V> entry = window.remove(candidate);
+            main.put(candidate, entry);
+            while (isOverLimit() && main.size() > 1) {
+                final K victim = eldest(main);
+                if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                    evict(main, victim);
+                } else {
+                    evict(main, candidate);
+                    return;
+                }
+            }
+        }
+
+        private void evict(final Map<K, Entry<V>> region, final K key) {
+            bytes -= region.remove(key).weight;
+            evictions.increment();
+        }
+
+        private void remove(final K key) {
+            Entry<V> entry = window.remove(key);
+            if (Objects.isNull(entry)) {
+                entry = main.remove(key);
+            }
+            if (Objects.nonNull(entry)) {
+                bytes -= entry.weight;
+            }
+        }
+
+        private boolean isOverLimit() {
+            return (maxEntries > 0 && window.size() + main.size() > maxEntries)
+                    || (maxBytes > 0 && bytes > maxBytes);
+        }
+
+        private K eldest(final Map<K, Entry<V>> region) {
+            final Iterator<K> keys = region.keySet().iterator();
+            return keys.next();
+        }
+    }
+
+    private final long ttlMillis;
+    private final Eviction eviction;
+    private final ToLongFunction<? super V> weigher;
+    private final LongSupplier clock;
+    private final List<Segment> segments;
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private NearCache(final Builder<K, V> builder) {
+        this.ttlMillis = builder.ttlMillis;
+        this.eviction = Optional.ofNullable(builder.eviction).orElse(Eviction.TINY_LFU);
+        this.weigher = builder.weigher;
+        this.clock = Optional.ofNullable(builder.clock).orElse(System::currentTimeMillis);
+        final int stripes = Integer.highestOneBit(Math.max(1, builder.stripes));
+        this.segments = new ArrayList<>(stripes);
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            segments.add(new Segment(
+                    builder.maxEntries > 0 ? Math.max(1, builder.maxEntries / stripes) : 0,
+                    builder.maxBytes > 0 ? Math.max(1, builder.maxBytes / stripes) : 0));
+        }
+    }
+
+    public V get(final K key) {
+        final Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Reads through to the loader on a miss. Concurrent misses on a key wait on
+     * a single load. Null values are not cached, and a value loaded while its
+     * key was invalidated is returned but not cached.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        final Segment segment = segmentFor(key);
+        final long invalidations;
+        segment.lock.lock();
+        try {
+            final V value = segment.get(key);
+            if (Objects.nonNull(value)) {
+                return value;
+            }
+            invalidations = segment.invalidations;
+        } finally {
+            segment.lock.unlock();
+        }
+        final CompletableFuture<V> load = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = loading.putIfAbsent(key, load);
+        if (Objects.nonNull(inFlight)) {
+            collapsed.increment();
+            return ConcurrentUtils.join(inFlight);
+        }
+        try {
+            final V loaded = loader.apply(key);
+            loads.increment();
+            if (Objects.nonNull(loaded)) {
+                segment.lock.lock();
+                try {
+                    if (segment.invalidations == invalidations) {
+                        segment.put(key, loaded);
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    public void put(final K key, final V value) {
+        final Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.put(key, value);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void invalidate(final K key) {
+        final Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.invalidations++;
+            segment.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        for (final Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.invalidations++;
+                segment.window.clear();
+                segment.main.clear();
+                segment.bytes = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        long entries = 0;
+        long bytes = 0;
+        for (final Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                entries += segment.window.size() + segment.main.size();
+                bytes += segment.bytes;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return new CacheStatistics(hits.sum(), misses.sum(), loads.sum(), collapsed.sum(), evictions.sum(), expirations.sum(),
+                entries, bytes);
+    }
+
+    private Segment segmentFor(final Object key) {
+        final int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (segments.size() - 1));
+    }
+}
@@ -0,0 +1,260 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * How hard a strategy tries to fill a page. DynamoDB applies the page size
+ * before a filter, so a filtered page can come back nearly empty with a token.
+ * With filling, the strategy keeps reading until it has the max size, the
+ * results run out, or the read unit or time budget is spent.
+ *
+ * Follow up requests are sized by how many items passed the filter so far. If
+ * one returns more than fits, the page is cut at max size and the token is
+ * built from the last returned item's key, so the next page resumes exactly
+ * after it. That needs the key attributes in the returned items; when they
+ * are projected away, requests only ask for as many items as are missing.
+ */
+public final class PageFillPolicy {
+    public static final PageFillPolicy SINGLE_REQUEST = new PageFillPolicy(new Builder().withMaxRequests(1));
+    private static final int MAX_GROWTH = 8;
+
+    /**
+     * One request's worth of a page.
+     */
+    static final class Read {
+        private final List<Item> items;
+        private final Map<String, AttributeValue> lastEvaluatedKey;
+        private final int scannedCount;
+        private final double consumedReadUnits;
+
+        Read(
+                final List<Item> items,
+                final Map<String, AttributeValue> lastEvaluatedKey,
+                final Integer scannedCount,
+                final Double consumedReadUnits) {
+            this.items = items;
+            this.lastEvaluatedKey = lastEvaluatedKey;
+            this.scannedCount = Optional.ofNullable(scannedCount).orElse(items.size());
+            this.consumedReadUnits = Optional.ofNullable(consumedReadUnits).orElse(0.0);
+        }
+    }
+
+    @FunctionalInterface
+    interface Reader {
+        Read read(int limit, PrimaryKey exclusiveStartKey);
+    }
+
+    @FunctionalInterface
+    interface AsyncReader {
+        CompletableFuture<Read> read(int limit, PrimaryKey exclusiveStartKey);
+    }
+
+    public static class Builder {
+        private double maxReadUnits = Double.MAX_VALUE;
+        private long maxDurationNanos = Long.MAX_VALUE;
+        private int maxRequests = Integer.MAX_VALUE;
+
+        public PageFillPolicy build() {
+            return new PageFillPolicy(this);
+        }
+
+        public Builder withMaxDuration(final long duration, final TimeUnit unit) {
+            this.maxDurationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder withMaxReadUnits(final double maxReadUnits) {
+            this.maxReadUnits = maxReadUnits;
+            return this;
+        }
+
+        public Builder withMaxRequests(final int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final double maxReadUnits;
+    private final long maxDurationNanos;
+    private final int maxRequests;
+
+    private PageFillPolicy(final Builder builder) {
+        this.maxReadUnits = builder.maxReadUnits;
+        this.maxDurationNanos = builder.maxDurationNanos;
+        this.maxRequests = Math.max(1, builder.maxRequests);
+    }
+
+    QueryResult<Item> fill(final QueryParams params, final Reader reader) {
+        final Fill fill = new Fill(params);
+        do {
+            fill.accept(reader.read(fill.nextLimit(), fill.startKey));
+        } while (fill.hasMore());
+        return fill.result();
+    }
+
+    CompletableFuture<QueryResult<Item>> fillAsync(final QueryParams params, final AsyncReader reader) {
+        final CompletableFuture<QueryResult<Item>> result = new CompletableFuture<>();
+        final AtomicReference<CompletableFuture<Read>> inFlight = new AtomicReference<>();
+        result.whenComplete((page, error) -> {
+            if (result.isCancelled()) {
+                Optional.ofNullable(inFlight.get()).ifPresent(read -> read.cancel(true));
+            }
+        });
+        fillAsync(new Fill(params), reader, result, inFlight);
+        return result;
+    }
+
+    private void fillAsync(
+            final Fill fill,
+            final AsyncReader reader,
+            final CompletableFuture<QueryResult<Item>> result,
+            final AtomicReference<CompletableFuture<Read>> inFlight) {
+        final CompletableFuture<Read> read;
+        try {
+            read = reader.read(fill.nextLimit(), fill.startKey);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        inFlight.set(read);
+        if (result.isDone()) {
+            read.cancel(true);
+            return;
+        }
+        read.whenComplete((page, error) -> {
+            if (Objects.nonNull(error)) {
+                result.completeExceptionally(ConcurrentUtils.unwrap(error));
+            } else if (!result.isDone()) {
+                fill.accept(page);
+                if (fill.hasMore()) {
+                    fillAsync(fill, reader, result, inFlight);
+                } else {
+                    result.complete(fill.result());
+                }
+            }
+        });
+    }
+
+    /**
+     * The page so far, and what it cost.
+     */
+    private final class Fill {
+        private final QueryParams params;
+        private final long start;
+        private final List<Item> items;
+        private PrimaryKey startKey;
+        private Map<String, AttributeValue> lastKey;
+        private Set<String> keyNames;
+        private long scanned;
+        private double consumed;
+        private int requests;
+
+        private Fill(final QueryParams params) {
+            this.params = params;
+            this.start = System.nanoTime();
+            this.items = new ArrayList<>();
+            this.startKey = TranslationUtils.buildLastKey(params).orElse(null);
+        }
+
+        private int nextLimit() {
+            return PageFillPolicy.nextLimit(params.getMaxSize() - items.size(), items, scanned, keyNames);
+        }
+
+        private void accept(final Read read) {
+            final int room = params.getMaxSize() - items.size();
+            scanned += read.scannedCount;
+            consumed += read.consumedReadUnits;
+            requests++;
+            lastKey = Optional.ofNullable(read.lastEvaluatedKey).filter(key -> !key.isEmpty()).orElse(null);
+            if (Objects.nonNull(lastKey)) {
+                keyNames = lastKey.keySet();
+            }
+            if (read.items.size() > room) {
+                items.addAll(read.items.subList(0, room));
+                lastKey = keyOf(items.get(items.size() - 1), keyNames);
+            } else {
+                items.addAll(read.items);
+            }
+            startKey = Objects.isNull(lastKey) ? null : TranslationUtils.buildPrimaryKey(new PageKeyDynamo(lastKey));
+        }
+
+        private boolean hasMore() {
+            return Objects.nonNull(lastKey)
+                    && items.size() < params.getMaxSize()
+                    && requests < maxRequests
+                    && consumed < maxReadUnits
+                    && System.nanoTime() - start < maxDurationNanos;
+        }
+
+        private QueryResult<Item> result() {
+            return new QueryResult<>(Objects.isNull(lastKey) ? null : new PageKeyDynamo(lastKey), items, Objects.nonNull(lastKey));
+        }
+    }
+
+    /**
+     * Asks for the missing items divided by the fraction that has passed the
+     * filter so far, but only when an overshoot can be cut at an item's key.
+     */
+    private static int nextLimit(final int room, final List<Item> items, final long scanned, final Set<String> keyNames) {
+        if (items.isEmpty() || Objects.isNull(keyNames) || !keyNames.stream().allMatch(items.get(0)::isPresent)) {
+            return room;
+        }
+        final double selectivity = items.size() / (double) scanned;
+        return (int) Math.min((long) room * MAX_GROWTH, (long) Math.ceil(room / selectivity));
+    }
+
+    private static Map<String, AttributeValue> keyOf(final Item item, final Set<String> keyNames) {
+        final Map<String, AttributeValue> key = new HashMap<>();
+        keyNames.forEach(name -> key.put(name, ItemUtils.toAttributeValue(item.get(name))));
+        return key;
+    }
+
+    public double getMaxReadUnits() {
+        return maxReadUnits;
+    }
+
+    public long getMaxDuration(final TimeUnit unit) {
+        return unit.convert(maxDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof PageFillPolicy)) {
+            return false;
+        }
+        final PageFillPolicy policy = (PageFillPolicy) obj;
+        return maxReadUnits == policy.maxReadUnits
+                && maxDurationNanos == policy.maxDurationNanos
+                && maxRequests == policy.maxRequests;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxReadUnits, maxDurationNanos, maxRequests);
+    }
+}
@@ -1,28 +1,39 @@
 package me.philcali.db.dynamo;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
 import me.philcali.db.api.IPageKey;
 
+/**
+ * The last evaluated key of a page. Its flattened key keeps the attribute
+ * types: strings, numbers as BigDecimal and binary as byte[], so the key is
+ * the same once round tripped through a PageTokenCodec.
+ */
 public class PageKeyDynamo implements IPageKey {
     private final Map<String, AttributeValue> lastKey;
+    private Map<String, Object> key;
 
     public PageKeyDynamo(final Map<String, AttributeValue> lastKey) {
         this.lastKey = lastKey;
     }
 
-    @Override
-    public Map<String, Object> getKey() {
-        return lastKey.entrySet().stream().collect(Collectors.toMap(
-                entry -> entry.getKey(),
-                entry -> getPrimaryKeyValue(entry.getValue())));
+    public Map<String, AttributeValue> getLastKey() {
+        return lastKey;
     }
 
-    private Object getPrimaryKeyValue(final AttributeValue value) {
-        return Optional.ofNullable(value.getS()).orElseGet(value::getN);
+    @Override
+    public Map<String, Object> getKey() {
+        if (Objects.isNull(key)) {
+            final Map<String, Object> simpleKey = new LinkedHashMap<>();
+            lastKey.forEach((name, value) -> simpleKey.put(name, ItemUtils.toSimpleValue(value)));
+            key = Collections.unmodifiableMap(simpleKey);
+        }
+        return key;
     }
 }
@@ -0,0 +1,179 @@
+package me.philcali.db.dynamo;
+
+import static me.philcali.db.dynamo.ConcurrentUtils.join;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ScanOutcome;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+import me.philcali.db.api.CompositePageKey;
+import me.philcali.db.api.IPageKey;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * Scans a table with DynamoDB's Segment / TotalSegments, one task per segment
+ * on the supplied executor. The page token holds a cursor for every segment
+ * that still has items, so a token fed back through the QueryParams resumes
+ * every unfinished segment where it left off.
+ */
+public class ParallelScanRetrievalStrategy implements IRetrievalStrategy {
+    public static final String TOTAL_SEGMENTS = "totalSegments";
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 2L * 1024 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    public static class Builder {
+        private Executor executor;
+        private int totalSegments;
+        private int maxSegments = DEFAULT_MAX_SEGMENTS;
+        private long segmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+        private IRetrievalMetrics metrics;
+        private IThroughputGovernor governor;
+
+        public ParallelScanRetrievalStrategy build() {
+            return new ParallelScanRetrievalStrategy(this);
+        }
+
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withMaxSegments(final int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        public Builder withSegmentSizeBytes(final long segmentSizeBytes) {
+            this.segmentSizeBytes = segmentSizeBytes;
+            return this;
+        }
+
+        public Builder withTotalSegments(final int totalSegments) {
+            this.totalSegments = totalSegments;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Executor executor;
+    private final int totalSegments;
+    private final int maxSegments;
+    private final long segmentSizeBytes;
+    private final IRetrievalMetrics metrics;
+    private final IThroughputGovernor governor;
+
+    private ParallelScanRetrievalStrategy(final Builder builder) {
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.totalSegments = builder.totalSegments;
+        this.maxSegments = Math.max(1, builder.maxSegments);
+        this.segmentSizeBytes = Math.max(1, builder.segmentSizeBytes);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+        this.governor = Optional.ofNullable(builder.governor).orElse(IThroughputGovernor.NONE);
+    }
+
+    @Override
+    public QueryResult<Item> apply(final QueryParams params, final Table table) {
+        final Optional<CompositePageKey> token = CompositePageKey.fromToken(params.getToken());
+        final int segments = token.flatMap(key -> key.getAttribute(TOTAL_SEGMENTS))
+                .map(value -> Integer.parseInt(value.toString()))
+                .orElseGet(() -> getTotalSegments(table));
+        final Map<Integer, Optional<IPageKey>> active = new LinkedHashMap<>();
+        if (token.isPresent()) {
+            token.get().getCursors().forEach((id, cursor) -> {
+                active.put(Integer.parseInt(id), Optional.of(cursor));
+            });
+        } else {
+            IntStream.range(0, segments).forEach(segment -> active.put(segment, Optional.empty()));
+        }
+        final int pageSize = Math.max(1, (int) Math.ceil(params.getMaxSize() / (double) Math.max(1, active.size())));
+        final Map<Integer, CompletableFuture<ScanOutcome>> scans = new LinkedHashMap<>();
+        active.forEach((segment, cursor) -> {
+            final ScanSpec spec = ScanRetrievalStrategy.applyFilters(new ScanSpec(), params)
+                    .withMaxPageSize(pageSize)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                    .withSegment(segment)
+                    .withTotalSegments(segments);
+            cursor.map(TranslationUtils::buildPrimaryKey).ifPresent(spec::withExclusiveStartKey);
+            scans.put(segment, CompletableFuture.supplyAsync(() -> governor.execute(() -> {
+                final long start = System.nanoTime();
+                final ScanOutcome outcome = table.scan(spec).firstPage().getLowLevelResult();
+                ScanRetrievalStrategy.record(metrics, table, RetrievalEvent.PARALLEL_SCAN, start, outcome);
+                return outcome;
+            }, ScanRetrievalStrategy::capacityUnits), executor));
+        });
+        final List<Item> items = new ArrayList<>();
+        final CompositePageKey nextToken = new CompositePageKey()
+                .addAttribute(TOTAL_SEGMENTS, segments);
+        scans.forEach((segment, scan) -> {
+            final ScanOutcome outcome = join(scan);
+            items.addAll(outcome.getItems());
+            Optional.ofNullable(outcome.getScanResult().getLastEvaluatedKey())
+                    .filter(lastKey -> !lastKey.isEmpty())
+                    .ifPresent(lastKey -> nextToken.addCursor(Integer.toString(segment), new PageKeyDynamo(lastKey)));
+        });
+        return new QueryResult<>(nextToken.isEmpty() ? null : nextToken, items, !nextToken.isEmpty());
+    }
+
+    private int getTotalSegments(final Table table) {
+        if (totalSegments > 0) {
+            return totalSegments;
+        }
+        return totalSegments(table, segmentSizeBytes, maxSegments);
+    }
+
+    /**
+     * @return a segment per segment size of the table, up to the max segments
+     */
+    static int totalSegments(final Table table, final long segmentSizeBytes, final int maxSegments) {
+        final TableDescription description = Optional.ofNullable(table.getDescription())
+                .orElseGet(table::describe);
+        final long tableSize = Optional.ofNullable(description.getTableSizeBytes()).orElse(0L);
+        final long segments = (tableSize + segmentSizeBytes - 1) / segmentSizeBytes;
+        return (int) Math.min(maxSegments, Math.max(1, segments));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof ParallelScanRetrievalStrategy)) {
+            return false;
+        }
+        final ParallelScanRetrievalStrategy scan = (ParallelScanRetrievalStrategy) obj;
+        return Objects.equals(executor, scan.executor)
+                && totalSegments == scan.totalSegments
+                && maxSegments == scan.maxSegments
+                && segmentSizeBytes == scan.segmentSizeBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(executor, totalSegments, maxSegments, segmentSizeBytes);
+    }
+}
@@ -0,0 +1,127 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.IConditionExpression;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryParams.Collation;
+
+/**
+ * Everything that decides the page a QueryParams reads from a table, with
+ * conditions and projections sorted and values normalized, so equal queries
+ * built in a different order or with a different number type share a key.
+ */
+final class QueryCacheKey {
+
+    public static QueryCacheKey of(final String tableName, final QueryParams params) {
+        final Map<String, List<Object>> conditions = new TreeMap<>();
+        params.getConditions().values().forEach(condition -> conditions.put(condition.getAttribute(), normalize(condition)));
+        final List<Object> expression = params.getExpression().map(QueryCacheKey::normalize).orElse(null);
+        final Map<String, Object> token = new TreeMap<>();
+        if (Objects.nonNull(params.getToken())) {
+            params.getToken().getKey().forEach((name, value) -> token.put(name, normalizeValue(value)));
+        }
+        return new QueryCacheKey(tableName, conditions, expression, params.getCollation(), params.getMaxSize(), token,
+                new TreeSet<>(params.getProjections()));
+    }
+
+    private static List<Object> normalize(final IConditionExpression expression) {
+        final List<Object> normalized = new ArrayList<>();
+        normalized.add(expression.getLogicalEvaluation());
+        for (final ICondition leaf : expression.getConditions()) {
+            normalized.add(leaf.getAttribute());
+            normalized.add(normalize(leaf));
+        }
+        for (final IConditionExpression nested : expression.getExpressions()) {
+            normalized.add(normalize(nested));
+        }
+        return normalized;
+    }
+
+    private static List<Object> normalize(final ICondition condition) {
+        final List<Object> normalized = new ArrayList<>();
+        normalized.add(condition.getComparator());
+        if (Objects.nonNull(condition.getValues())) {
+            for (final Object value : condition.getValues()) {
+                normalized.add(normalizeValue(value));
+            }
+        }
+        return normalized;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object normalizeValue(final Object value) {
+        if (value instanceof Map) {
+            final Map<String, Object> normalized = new TreeMap<>();
+            ((Map<String, Object>) value).forEach((name, nested) -> normalized.put(name, normalizeValue(nested)));
+            return normalized;
+        }
+        return TranslationUtils.normalizeValue(value);
+    }
+
+    private final String tableName;
+    private final Map<String, List<Object>> conditions;
+    private final List<Object> expression;
+    private final Collation collation;
+    private final int maxSize;
+    private final Map<String, Object> token;
+    private final Set<String> projections;
+    private final int hashCode;
+
+    private QueryCacheKey(
+            final String tableName,
+            final Map<String, List<Object>> conditions,
+            final List<Object> expression,
+            final Collation collation,
+            final int maxSize,
+            final Map<String, Object> token,
+            final Set<String> projections) {
+        this.tableName = tableName;
+        this.conditions = conditions;
+        this.expression = expression;
+        this.collation = collation;
+        this.maxSize = maxSize;
+        this.token = token;
+        this.projections = projections;
+        this.hashCode = Objects.hash(tableName, conditions, expression, collation, maxSize, token, projections);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof QueryCacheKey)) {
+            return false;
+        }
+        final QueryCacheKey key = (QueryCacheKey) obj;
+        return hashCode == key.hashCode
+                && maxSize == key.maxSize
+                && collation == key.collation
+                && Objects.equals(tableName, key.tableName)
+                && Objects.equals(conditions, key.conditions)
+                && Objects.equals(expression, key.expression)
+                && Objects.equals(token, key.token)
+                && Objects.equals(projections, key.projections);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCacheKey [tableName=" + tableName
+                + ", conditions=" + conditions
+                + ", expression=" + expression
+                + ", collation=" + collation
+                + ", maxSize=" + maxSize
+                + ", token=" + token
+                + ", projections=" + projections + "]";
+    }
+}
@@ -0,0 +1,352 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.ICondition.Comparator;
+import me.philcali.db.api.QueryParams;
+
+/**
+ * A compiled query: the index to hit and the expression strings and names for
+ * one query shape. Only the values are bound per call. A union is the plans
+ * of the branches of an OR instead, run side by side.
+ */
+public final class QueryPlan {
+    static final class Binding {
+        private final String placeholder;
+        private final String attribute;
+        private final int leaf;
+        private final int position;
+
+        Binding(final String placeholder, final String attribute, final int position) {
+            this(placeholder, attribute, -1, position);
+        }
+
+        /**
+         * Binds a value of a leaf of the expression tree, by its position in the leaves.
+         */
+        Binding(final String placeholder, final int leaf, final int position) {
+            this(placeholder, null, leaf, position);
+        }
+
+        private Binding(final String placeholder, final String attribute, final int leaf, final int position) {
+            this.placeholder = placeholder;
+            this.attribute = attribute;
+            this.leaf = leaf;
+            this.position = position;
+        }
+    }
+
+    static final class Builder {
+        private String indexField;
+        private String indexName;
+        private String hashKey;
+        private String rangeKey;
+        private String sortKey;
+        private String fanOutAttribute;
+        private String fanOutPlaceholder;
+        private final Set<String> keyNames = new LinkedHashSet<>();
+        private final StringBuilder keyExpression = new StringBuilder();
+        private final StringBuilder filterExpression = new StringBuilder();
+        private String projectionExpression;
+        private final Map<String, String> names = new LinkedHashMap<>();
+        private final List<Binding> bindings = new ArrayList<>();
+        private final List<QueryPlan> branches = new ArrayList<>();
+        private int index;
+        private double estimatedItems;
+        private double estimatedReadUnits;
+
+        QueryPlan build() {
+            return new QueryPlan(this);
+        }
+
+        Builder withIndex(final String indexField, final String indexName) {
+            this.indexField = indexField;
+            this.indexName = indexName;
+            return this;
+        }
+
+        Builder withHashKey(final String hashKey) {
+            this.hashKey = hashKey;
+            return this;
+        }
+
+        Builder withRangeKey(final String rangeKey) {
+            this.rangeKey = rangeKey;
+            return this;
+        }
+
+        /**
+         * Sort key of the table or index queried, with or without a condition on it.
+         */
+        Builder withSortKey(final String sortKey) {
+            this.sortKey = sortKey;
+            return this;
+        }
+
+        Builder withKeyNames(final Collection<String> keyNames) {
+            keyNames.stream().filter(Objects::nonNull).forEach(this.keyNames::add);
+            return this;
+        }
+
+        Builder withEstimate(final double estimatedItems, final double estimatedReadUnits) {
+            this.estimatedItems = estimatedItems;
+            this.estimatedReadUnits = estimatedReadUnits;
+            return this;
+        }
+
+        Builder withProjections(final Collection<String> attributes) {
+            if (!attributes.isEmpty()) {
+                this.projectionExpression = TranslationUtils.translateProjections(attributes, names);
+            }
+            return this;
+        }
+
+        Builder withKeyCondition(final QueryShape shape, final int position) {
+            return append(keyExpression, shape, position);
+        }
+
+        /**
+         * Keys the query on one value of an IN condition at a time; each value
+         * is bound by its own query.
+         */
+        Builder withFanOut(final QueryShape shape, final int position) {
+            if (keyExpression.length() > 0) {
+                keyExpression.append(" AND ");
+            }
+            fanOutAttribute = shape.getAttribute(position);
+            TranslationUtils.compileFilter(keyExpression, ++index, names, fanOutAttribute, Comparator.EQUALS, 1);
+            fanOutPlaceholder = TranslationUtils.valuePlaceholder(index, 0);
+            return this;
+        }
+
+        Builder withFilter(final QueryShape shape, final int position) {
+            return append(filterExpression, shape, position);
+        }
+
+        /**
+         * Filters on the expression tree of the shape, if it has one.
+         */
+        Builder withExpression(final QueryShape shape) {
+            shape.getExpression().ifPresent(expression -> {
+                if (filterExpression.length() > 0) {
+                    filterExpression.append(" AND ");
+                }
+                final int first = index + 1;
+                index = TranslationUtils.compileExpression(filterExpression, index, names, expression, (leaf, leafIndex) -> {
+                    for (int value = 0; value < TranslationUtils.arity(leaf); value++) {
+                        bindings.add(new Binding(TranslationUtils.valuePlaceholder(leafIndex, value), leafIndex - first, value));
+                    }
+                });
+            });
+            return this;
+        }
+
+        /**
+         * Runs the plans of the branches instead, estimated at their sum.
+         */
+        Builder withUnion(final Collection<QueryPlan> branches) {
+            this.branches.addAll(branches);
+            this.estimatedItems = branches.stream().mapToDouble(QueryPlan::getEstimatedItems).sum();
+            this.estimatedReadUnits = branches.stream().mapToDouble(QueryPlan::getEstimatedReadUnits).sum();
+            return this;
+        }
+
+        private Builder append(final StringBuilder expression, final QueryShape shape, final int position) {
+            if (expression.length() > 0) {
+                expression.append(" AND ");
+            }
+            final String attribute = shape.getAttribute(position);
+            final int arity = shape.getArity(position);
+            TranslationUtils.compileFilter(expression, ++index, names, attribute, shape.getComparator(position), arity);
+            for (int value = 0; value < arity; value++) {
+                bindings.add(new Binding(TranslationUtils.valuePlaceholder(index, value), attribute, value));
+            }
+            return this;
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    private final String indexField;
+    private final String indexName;
+    private final String hashKey;
+    private final String rangeKey;
+    private final String sortKey;
+    private final String fanOutAttribute;
+    private final String fanOutPlaceholder;
+    private final Set<String> keyNames;
+    private final String keyConditionExpression;
+    private final String filterExpression;
+    private final String projectionExpression;
+    private final Map<String, String> nameMap;
+    private final Binding[] bindings;
+    private final List<QueryPlan> branches;
+    private final double estimatedItems;
+    private final double estimatedReadUnits;
+
+    private QueryPlan(final Builder builder) {
+        this.indexField = builder.indexField;
+        this.indexName = builder.indexName;
+        this.hashKey = builder.hashKey;
+        this.rangeKey = builder.rangeKey;
+        this.sortKey = builder.sortKey;
+        this.fanOutAttribute = builder.fanOutAttribute;
+        this.fanOutPlaceholder = builder.fanOutPlaceholder;
+        this.keyNames = Collections.unmodifiableSet(new LinkedHashSet<>(builder.keyNames));
+        this.keyConditionExpression = builder.keyExpression.length() > 0 ? builder.keyExpression.toString() : null;
+        this.filterExpression = builder.filterExpression.length() > 0 ? builder.filterExpression.toString() : null;
+        this.projectionExpression = builder.projectionExpression;
+        this.nameMap = Collections.unmodifiableMap(new LinkedHashMap<>(builder.names));
+        this.bindings = builder.bindings.toArray(new Binding[builder.bindings.size()]);
+        this.branches = Collections.unmodifiableList(new ArrayList<>(builder.branches));
+        this.estimatedItems = builder.estimatedItems;
+        this.estimatedReadUnits = builder.estimatedReadUnits;
+    }
+
+    public ValueMap bind(final QueryParams params) {
+        return bind(params, isFanOut() ? getFanOutValues(params).get(0) : null);
+    }
+
+    /**
+     * Binds the params for the query on one of the fan out values.
+     */
+    ValueMap bind(final QueryParams params, final Object fanOutValue) {
+        final ValueMap values = new ValueMap();
+        final List<ICondition> leaves = params.getExpression()
+                .map(ConditionTrees::leaves)
+                .orElse(Collections.emptyList());
+        for (final Binding binding : bindings) {
+            final ICondition condition = Objects.isNull(binding.attribute)
+                    ? leaves.get(binding.leaf)
+                    : params.getConditions().get(binding.attribute);
+            values.with(binding.placeholder, condition.getValues()[binding.position]);
+        }
+        if (isFanOut()) {
+            values.with(fanOutPlaceholder, fanOutValue);
+        }
+        return values;
+    }
+
+    /**
+     * @return the distinct values of the IN condition, one query each
+     */
+    List<Object> getFanOutValues(final QueryParams params) {
+        final Map<Object, Object> values = new LinkedHashMap<>();
+        for (final Object value : params.getConditions().get(fanOutAttribute).getValues()) {
+            values.putIfAbsent(TranslationUtils.normalizeValue(value), value);
+        }
+        return new ArrayList<>(values.values());
+    }
+
+    public boolean isFanOut() {
+        return Objects.nonNull(fanOutAttribute);
+    }
+
+    public boolean isQuery() {
+        return Objects.nonNull(keyConditionExpression);
+    }
+
+    public boolean isUnion() {
+        return !branches.isEmpty();
+    }
+
+    /**
+     * @return the plans of the union's branches, in the order of the OR
+     */
+    public List<QueryPlan> getBranches() {
+        return branches;
+    }
+
+    Optional<String> getIndexField() {
+        return Optional.ofNullable(indexField);
+    }
+
+    public Optional<String> getIndexName() {
+        return Optional.ofNullable(indexName);
+    }
+
+    public Optional<String> getHashKey() {
+        return Optional.ofNullable(hashKey);
+    }
+
+    public Optional<String> getRangeKey() {
+        return Optional.ofNullable(rangeKey);
+    }
+
+    Optional<String> getSortKey() {
+        return Optional.ofNullable(sortKey);
+    }
+
+    /**
+     * @return the attributes making up the key of an item in the table or index queried
+     */
+    Set<String> getKeyNames() {
+        return keyNames;
+    }
+
+    public String getKeyConditionExpression() {
+        return keyConditionExpression;
+    }
+
+    public Optional<String> getFilterExpression() {
+        return Optional.ofNullable(filterExpression);
+    }
+
+    public Optional<String> getProjectionExpression() {
+        return Optional.ofNullable(projectionExpression);
+    }
+
+    public Map<String, String> getNameMap() {
+        return nameMap;
+    }
+
+    public double getEstimatedItems() {
+        return estimatedItems;
+    }
+
+    /**
+     * @return eventually consistent read units to read every matching item
+     */
+    public double getEstimatedReadUnits() {
+        return estimatedReadUnits;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnion()) {
+            return branches.stream()
+                    .map(QueryPlan::toString)
+                    .collect(Collectors.joining(" | ", "Union(", ")"))
+                    + " items=" + Math.round(estimatedItems)
+                    + " rcu=" + estimatedReadUnits;
+        }
+        final StringBuilder plan = new StringBuilder(isQuery() ? "Query " : "Scan ")
+                .append(getIndexName().orElse("table"));
+        if (isQuery()) {
+            plan.append(" key(").append(keyConditionExpression).append(')');
+            if (isFanOut()) {
+                plan.append(" fanOut(").append(fanOutAttribute).append(')');
+            }
+        }
+        getFilterExpression().ifPresent(filter -> plan.append(" filter(").append(filter).append(')'));
+        getProjectionExpression().ifPresent(projection -> plan.append(" project(").append(projection).append(')'));
+        return plan.append(" items=").append(Math.round(estimatedItems))
+                .append(" rcu=").append(estimatedReadUnits)
+                .toString();
+    }
+}
@@ -1,16 +1,24 @@
 package me.philcali.db.dynamo;
 
-import static me.philcali.db.dynamo.TranslationUtils.buildLastKey;
-import static me.philcali.db.dynamo.TranslationUtils.translateFilter;
+import static me.philcali.db.dynamo.ConcurrentUtils.join;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.StringJoiner;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiConsumer;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.amazonaws.services.dynamodbv2.document.Index;
@@ -19,30 +27,57 @@ import com.amazonaws.services.dynamodbv2.document.ItemCollection;
 import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
 import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
-import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
-import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 
 import me.philcali.db.api.ICondition;
 import me.philcali.db.api.ICondition.Comparator;
-import me.philcali.db.api.IPageKey;
 import me.philcali.db.api.QueryParams;
 import me.philcali.db.api.QueryParams.Collation;
 import me.philcali.db.api.QueryResult;
 
 public class QueryRetrievalStrategy implements IRetrievalStrategy {
+    public static final int DEFAULT_MAX_CACHED_PLANS = 256;
+    public static final int DEFAULT_MAX_FAN_OUT = 100;
+    private static final double READ_UNIT_BYTES = 4096;
+    private static final double EVENTUAL_READ_UNIT = 0.5;
+    private static final Set<Comparator> KEY_COMPARATORS = Collections.unmodifiableSet(EnumSet.of(
+            Comparator.EQUALS,
+            Comparator.LESS_THAN,
+            Comparator.LESS_THAN_EQUALS,
+            Comparator.GREATER_THAN,
+            Comparator.GREATER_THAN_EQUALS,
+            Comparator.BETWEEN,
+            Comparator.STARTS_WITH));
+
     public static class Builder {
         private String hashKey;
         private String rangeKey;
         private Map<String, Index> indexMap = new HashMap<>();
         private Map<String, String> rangeMap = new HashMap<>();
         private IRetrievalStrategy fallback;
+        private int maxCachedPlans = DEFAULT_MAX_CACHED_PLANS;
+        private TableStatistics statistics;
+        private IRetrievalMetrics metrics;
+        private PageFillPolicy fillPolicy;
+        private IThroughputGovernor governor;
+        private Executor executor;
+        private int maxFanOut = DEFAULT_MAX_FAN_OUT;
 
         public QueryRetrievalStrategy build() {
             return new QueryRetrievalStrategy(this);
         }
 
+        /**
+         * Runs the queries an IN condition fans out to, and the branches of a union.
+         */
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         public Builder withFallback(final IRetrievalStrategy strategy) {
             this.fallback = strategy;
             return this;
@@ -67,11 +102,80 @@ public class QueryRetrievalStrategy implements IRetrievalStrategy {
             return withIndexMap(hashKey, index).withRangeMap(index.getIndexName(), rangeKey);
         }
 
+        /**
+         * Fills in the keys, indexes and statistics by describing the table.
+         */
+        public Builder withTable(final Table table) {
+            final TableDescription description = Optional.ofNullable(table.getDescription())
+                    .orElseGet(table::describe);
+            withStatistics(TableStatistics.fromDescription(description));
+            return withSchema(table, TableSchema.fromDescription(description));
+        }
+
+        /**
+         * Fills in the keys and indexes from a schema known ahead of time,
+         * without describing the table.
+         */
+        public Builder withSchema(final Table table, final TableSchema schema) {
+            withHashKey(schema.getHashKey());
+            schema.getRangeKey().ifPresent(this::withRangeKey);
+            schema.getIndexHashKeys().forEach((indexName, indexHashKey) -> {
+                withIndexMap(indexHashKey, table.getIndex(indexName));
+            });
+            schema.getIndexRangeKeys().forEach(this::withRangeMap);
+            return this;
+        }
+
+        /**
+         * Keep reading filtered pages until they fill, within the policy's budget.
+         * The fallback scan only shares this policy when no fallback is given.
+         */
+        public Builder withFillPolicy(final PageFillPolicy fillPolicy) {
+            this.fillPolicy = fillPolicy;
+            return this;
+        }
+
+        /**
+         * Paces every query; the fallback scan only shares it when no fallback is given.
+         */
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Most values an IN on a hash key, or branches an OR, may have to be
+         * planned as a query each.
+         */
+        public Builder withMaxFanOut(final int maxFanOut) {
+            this.maxFanOut = maxFanOut;
+            return this;
+        }
+
+        /**
+         * Plans kept by the shape of their params, evicting the least used
+         * ones; none are kept at 0.
+         */
+        public Builder withMaxCachedPlans(final int maxCachedPlans) {
+            this.maxCachedPlans = maxCachedPlans;
+            return this;
+        }
+
         public Builder withRangeKey(final String rangeKey) {
             this.rangeKey = rangeKey;
             return this;
         }
 
+        public Builder withStatistics(final TableStatistics statistics) {
+            this.statistics = statistics;
+            return this;
+        }
+
         public Builder withRangeMap(final Map<String, String> rangeMap) {
             this.rangeMap = rangeMap;
             return this;
@@ -88,35 +192,15 @@ public class QueryRetrievalStrategy implements IRetrievalStrategy {
     }
 
     public static QueryRetrievalStrategy fromTable(final Table table) {
-        final Builder builder = builder();
-        final TableDescription description = Optional.ofNullable(table.getDescription())
-                .orElseGet(table::describe);
-        description.getKeySchema().forEach(key -> {
-            switch (key.getKeyType()) {
-            case "HASH":
-                builder.withHashKey(key.getAttributeName());
-                break;
-            default:
-                builder.withRangeKey(key.getAttributeName());
-            }
-        });
-        final BiConsumer<String, List<KeySchemaElement>> buildIndex = (indexName, keys) -> {
-            final Map<String, String> temp = keys.stream()
-                    .collect(Collectors.toMap(
-                            key -> key.getKeyType(),
-                            key -> key.getAttributeName()));
-            builder.withIndexMap(temp.get("HASH"), table.getIndex(indexName));
-            Optional.ofNullable(temp.get("RANGE")).ifPresent(range -> {
-                builder.withRangeMap(indexName, range);
-            });
-        };
-        Optional.ofNullable(description.getGlobalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
-            buildIndex.accept(index.getIndexName(), index.getKeySchema());
-        }));
-        Optional.ofNullable(description.getLocalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
-            buildIndex.accept(index.getIndexName(), index.getKeySchema());
-        }));
-        return builder.build();
+        return fromTable(table, IRetrievalMetrics.NONE);
+    }
+
+    public static QueryRetrievalStrategy fromTable(final Table table, final IRetrievalMetrics metrics) {
+        return builder().withTable(table).withMetrics(metrics).build();
+    }
+
+    public static QueryRetrievalStrategy fromSchema(final Table table, final TableSchema schema) {
+        return builder().withSchema(table, schema).build();
     }
 
     private final String hashKey;
@@ -124,63 +208,317 @@ public class QueryRetrievalStrategy implements IRetrievalStrategy {
     private final IRetrievalStrategy fallback;
     private final Map<String, Index> indexMap;
     private final Map<String, String> rangeMap;
+    private final NearCache<QueryShape, QueryPlan> plans;
+    private final TableStatistics statistics;
+    private final IRetrievalMetrics metrics;
+    private final PageFillPolicy fillPolicy;
+    private final IThroughputGovernor governor;
+    private final Executor executor;
+    private final int maxFanOut;
 
     private QueryRetrievalStrategy(final Builder builder) {
         this.hashKey = builder.hashKey;
         this.rangeKey = builder.rangeKey;
         this.indexMap = builder.indexMap;
         this.rangeMap = builder.rangeMap;
-        this.fallback = Optional.ofNullable(builder.fallback).orElseGet(ScanRetrievalStrategy::new);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+        this.fillPolicy = Optional.ofNullable(builder.fillPolicy).orElse(PageFillPolicy.SINGLE_REQUEST);
+        this.governor = Optional.ofNullable(builder.governor).orElse(IThroughputGovernor.NONE);
+        this.fallback = Optional.ofNullable(builder.fallback)
+                .orElseGet(() -> new ScanRetrievalStrategy(metrics, fillPolicy, governor));
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.maxFanOut = Math.max(0, builder.maxFanOut);
+        // Shapes used most lately keep their plans, so a burst of one off shapes doesn't flush them
+        this.plans = builder.maxCachedPlans > 0
+                ? NearCache.<QueryShape, QueryPlan>builder().withMaxEntries(builder.maxCachedPlans).build()
+                : null;
+        this.statistics = Optional.ofNullable(builder.statistics).orElseGet(() -> TableStatistics.builder().build());
     }
 
     @Override
     public QueryResult<Item> apply(final QueryParams params, final Table table) {
-        final Optional<ICondition> indexHashKey = findExactMatchIndexField(params, indexMap);
-        if (params.getConditions().containsKey(hashKey) || indexHashKey.isPresent()) {
-            final NameMap names = new NameMap();
-            final ValueMap values = new ValueMap();
-            final StringJoiner keyJoiner = new StringJoiner(" AND ");
-            final StringJoiner filterJoiner = new StringJoiner(" AND ");
-            final AtomicInteger index = new AtomicInteger();
-            final QuerySpec spec = new QuerySpec()
-                    .withMaxPageSize(params.getMaxSize());
-            final Optional<String> rangeField = indexHashKey
-                    .map(indexHash -> Optional.ofNullable(rangeMap.get(indexMap.get(indexHash.getAttribute()).getIndexName())))
-                    .orElseGet(() -> Optional.ofNullable(rangeKey));
-            final Optional<ICondition> range = rangeField
-                    .flatMap(r -> Optional.ofNullable(params.getConditions().get(r)));
-            final ICondition key = indexHashKey.orElseGet(() -> params.getConditions().get(hashKey));
-            keyJoiner.add(translateFilter(new StringBuilder(), index.incrementAndGet(), values, names, key));
-            range.ifPresent(rangeFilter -> {
-                keyJoiner.add(translateFilter(new StringBuilder(), index.incrementAndGet(), values, names, rangeFilter));
-            });
-            buildLastKey(params).ifPresent(spec::withExclusiveStartKey);
-            params.getConditions().values().stream()
-                    .filter(filter -> !filter.equals(key) && !range.filter(filter::equals).isPresent())
-                    .forEach(filter -> {
-                        filterJoiner.add(translateFilter(new StringBuilder(), index.incrementAndGet(), values, names, filter));
-                    });
-            spec.withScanIndexForward(params.getCollation() == Collation.ASCENDING);
-            spec.withKeyConditionExpression(keyJoiner.toString())
-                    .withValueMap(values)
-                    .withNameMap(names);
-            if (filterJoiner.length() > 0) {
-                spec.withFilterExpression(filterJoiner.toString());
+        return apply(params, table, false);
+    }
+
+    /*
+     * Only the caller's thread waits on the executor: a branch already running
+     * on it reads its own branches and fan out in turn, since waiting on tasks
+     * queued behind it would deadlock a bounded pool.
+     */
+    private QueryResult<Item> apply(final QueryParams params, final Table table, final boolean nested) {
+        final QueryParams normalized = ConditionTrees.normalize(params);
+        final QueryPlan plan = plan(normalized);
+        if (plan.isUnion()) {
+            final UnionQuery union = new UnionQuery(normalized);
+            while (!union.getActive().isEmpty()) {
+                union.merge(read(union.getActive(), id -> apply(union.params(id), table, true), nested));
+            }
+            return union.result();
+        }
+        if (!plan.isQuery()) {
+            return fallback.apply(normalized, table);
+        }
+        if (plan.isFanOut()) {
+            final FanOutQuery fanOut = new FanOutQuery(plan, normalized);
+            return fanOut.merge(read(fanOut.getActive(),
+                    id -> query(plan, fanOut.params(id), fanOut.bind(id), table), nested));
+        }
+        return query(plan, normalized, plan.bind(normalized), table);
+    }
+
+    private Map<Integer, QueryResult<Item>> read(
+            final Set<Integer> ids,
+            final Function<Integer, QueryResult<Item>> reader,
+            final boolean nested) {
+        final Map<Integer, QueryResult<Item>> pages = new LinkedHashMap<>();
+        if (nested || ids.size() < 2) {
+            ids.forEach(id -> pages.put(id, reader.apply(id)));
+            return pages;
+        }
+        final Map<Integer, CompletableFuture<QueryResult<Item>>> reads = new LinkedHashMap<>();
+        ids.forEach(id -> reads.put(id, CompletableFuture.supplyAsync(() -> reader.apply(id), executor)));
+        reads.forEach((id, read) -> pages.put(id, join(read)));
+        return pages;
+    }
+
+    private QueryResult<Item> query(
+            final QueryPlan plan,
+            final QueryParams params,
+            final ValueMap values,
+            final Table table) {
+        final QuerySpec spec = new QuerySpec()
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withScanIndexForward(params.getCollation() == Collation.ASCENDING)
+                .withKeyConditionExpression(plan.getKeyConditionExpression())
+                .withNameMap(plan.getNameMap())
+                .withValueMap(values);
+        plan.getFilterExpression().ifPresent(spec::withFilterExpression);
+        plan.getProjectionExpression().ifPresent(spec::withProjectionExpression);
+        return fillPolicy.fill(params, (limit, startKey) -> {
+            spec.withMaxPageSize(limit);
+            if (Objects.nonNull(startKey)) {
+                spec.withExclusiveStartKey(startKey);
+            }
+            final QueryOutcome outcome = governor.execute(() -> {
+                final long start = System.nanoTime();
+                final ItemCollection<QueryOutcome> outcomes = plan.getIndexField()
+                        .map(indexMap::get)
+                        .map(i -> i.query(spec))
+                        .orElseGet(() -> table.query(spec));
+                final QueryOutcome result = outcomes.firstPage().getLowLevelResult();
+                metrics.record(RetrievalEvent.builder()
+                        .withTableName(table.getTableName())
+                        .withIndexName(plan.getIndexName().orElse(null))
+                        .withStrategy(RetrievalEvent.QUERY)
+                        .withLatencyNanos(System.nanoTime() - start)
+                        .withConsumedCapacity(result.getQueryResult().getConsumedCapacity())
+                        .withScannedCount(result.getQueryResult().getScannedCount())
+                        .withReturnedCount(result.getQueryResult().getCount())
+                        .build());
+                return result;
+            }, result -> ThroughputGovernor.capacityUnits(result.getQueryResult().getConsumedCapacity()));
+            final ConsumedCapacity capacity = outcome.getQueryResult().getConsumedCapacity();
+            return new PageFillPolicy.Read(
+                    outcome.getItems(),
+                    outcome.getQueryResult().getLastEvaluatedKey(),
+                    outcome.getQueryResult().getScannedCount(),
+                    Objects.isNull(capacity) ? null : capacity.getCapacityUnits());
+        });
+    }
+
+    /**
+     * @return the plan apply would run for these params, with its estimated cost
+     */
+    public QueryPlan explain(final QueryParams params) {
+        return plan(ConditionTrees.normalize(params));
+    }
+
+    /**
+     * Plans params already normalized by ConditionTrees.
+     */
+    QueryPlan plan(final QueryParams params) {
+        final QueryShape shape = QueryShape.of(params);
+        if (Objects.isNull(plans)) {
+            return compile(shape, params);
+        }
+        final QueryPlan cached = plans.get(shape);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        // Not computed by the cache: a union plans its branches, which would re-enter the cache
+        final QueryPlan plan = compile(shape, params);
+        plans.put(shape, plan);
+        return plan;
+    }
+
+    private QueryPlan compile(final QueryShape shape, final QueryParams params) {
+        QueryPlan best = null;
+        final int tablePosition = Objects.isNull(hashKey) ? -1 : shape.indexOf(hashKey);
+        if (tablePosition != -1 && isKeyLookup(shape, tablePosition)) {
+            best = compileQuery(shape, tablePosition, null, rangeKey);
+        }
+        for (int position = 0; position < shape.size(); position++) {
+            final Index index = indexMap.get(shape.getAttribute(position));
+            if (Objects.nonNull(index) && isKeyLookup(shape, position) && isCovering(index.getIndexName(), shape)) {
+                final String indexName = index.getIndexName();
+                best = cheapest(best, compileQuery(shape, position, indexName, rangeMap.get(indexName)));
+            }
+        }
+        best = cheapest(best, compileScan(shape));
+        final QueryPlan union = compileUnion(params);
+        return Objects.isNull(union) ? best : cheapest(best, union);
+    }
+
+    /*
+     * An OR whose every branch keys a query is a query per branch, up to the max fan out.
+     */
+    private QueryPlan compileUnion(final QueryParams params) {
+        final List<QueryParams> branches = ConditionTrees.branches(params);
+        if (branches.isEmpty() || branches.size() > maxFanOut) {
+            return null;
+        }
+        final List<QueryPlan> plans = new ArrayList<>(branches.size());
+        for (final QueryParams branch : branches) {
+            final QueryPlan plan = plan(branch);
+            if (!plan.isQuery() && !plan.isUnion()) {
+                return null;
             }
-            final ItemCollection<QueryOutcome> outcomes = indexHashKey
-                    .map(filter -> indexMap.get(filter.getAttribute()))
-                    .map(i -> i.query(spec))
-                    .orElseGet(() -> table.query(spec));
-            final List<Item> items = outcomes.firstPage().getLowLevelResult().getItems();
-            final Optional<IPageKey> lastKey = Optional.ofNullable(outcomes.firstPage()
-                    .getLowLevelResult()
-                    .getQueryResult()
-                    .getLastEvaluatedKey())
-                    .map(PageKeyDynamo::new);
-            return new QueryResult<>(lastKey.orElse(null), items, items.size() == params.getMaxSize());
+            plans.add(plan);
+        }
+        return QueryPlan.builder().withUnion(plans).build();
+    }
+
+    /*
+     * An IN on a hash key is a query per value, up to the max fan out.
+     */
+    private boolean isKeyLookup(final QueryShape shape, final int position) {
+        return shape.getComparator(position) == Comparator.EQUALS
+                || (shape.getComparator(position) == Comparator.IN
+                        && shape.getArity(position) > 0
+                        && shape.getArity(position) <= maxFanOut);
+    }
+
+    private QueryPlan compileQuery(
+            final QueryShape shape,
+            final int keyPosition,
+            final String indexName,
+            final String rangeField) {
+        final boolean fanOut = shape.getComparator(keyPosition) == Comparator.IN;
+        final List<String> keyNames = Arrays.asList(hashKey, rangeKey, shape.getAttribute(keyPosition), rangeField);
+        final QueryPlan.Builder plan = QueryPlan.builder()
+                .withHashKey(shape.getAttribute(keyPosition))
+                .withSortKey(rangeField)
+                .withKeyNames(keyNames);
+        if (fanOut) {
+            plan.withFanOut(shape, keyPosition);
+        } else {
+            plan.withKeyCondition(shape, keyPosition);
+        }
+        final boolean index = Objects.nonNull(indexName);
+        if (index) {
+            plan.withIndex(shape.getAttribute(keyPosition), indexName);
+        }
+        final int queries = fanOut ? shape.getArity(keyPosition) : 1;
+        double items = (index ? statistics.getItemCount(indexName) : statistics.getItemCount())
+                / (double) statistics.getCardinality(shape.getAttribute(keyPosition));
+        int rangePosition = Objects.isNull(rangeField) ? -1 : shape.indexOf(rangeField);
+        if (rangePosition != -1 && KEY_COMPARATORS.contains(shape.getComparator(rangePosition))) {
+            plan.withRangeKey(rangeField).withKeyCondition(shape, rangePosition);
+            items *= rangeSelectivity(shape.getComparator(rangePosition), rangeField);
+        } else {
+            rangePosition = -1;
+        }
+        for (int position = 0; position < shape.size(); position++) {
+            if (position != keyPosition && position != rangePosition) {
+                plan.withFilter(shape, position);
+            }
+        }
+        plan.withExpression(shape);
+        if (fanOut && !shape.getProjections().isEmpty()) {
+            // Merging and resuming the queries needs their keys
+            final Set<String> projections = new LinkedHashSet<>(shape.getProjections());
+            keyNames.stream().filter(Objects::nonNull).forEach(projections::add);
+            plan.withProjections(projections);
         } else {
-            return fallback.apply(params, table);
+            plan.withProjections(shape.getProjections());
         }
+        final long itemSize = index ? statistics.getAverageItemSize(indexName) : statistics.getAverageItemSize();
+        return plan.withEstimate(items * queries, readUnits(items * itemSize) * queries).build();
+    }
+
+    private QueryPlan compileScan(final QueryShape shape) {
+        final double items = statistics.getItemCount();
+        final QueryPlan.Builder plan = QueryPlan.builder();
+        for (int position = 0; position < shape.size(); position++) {
+            plan.withFilter(shape, position);
+        }
+        return plan.withExpression(shape)
+                .withEstimate(items, readUnits(items * statistics.getAverageItemSize()))
+                .build();
+    }
+
+    /*
+     * An index query only returns what the index projects, and nothing reads
+     * the rest back from the table, so an index has to hold every attribute
+     * the params filter on or ask for: all of them without projections.
+     */
+    private boolean isCovering(final String indexName, final QueryShape shape) {
+        return statistics.getIndex(indexName)
+                .map(stats -> stats.isProjected(requiredAttributes(shape)))
+                .orElse(true);
+    }
+
+    private static Set<String> requiredAttributes(final QueryShape shape) {
+        if (shape.getProjections().isEmpty()) {
+            return null;
+        }
+        final Set<String> attributes = new HashSet<>();
+        shape.getProjections().forEach(projection -> attributes.add(topLevelName(projection)));
+        for (int position = 0; position < shape.size(); position++) {
+            attributes.add(topLevelName(shape.getAttribute(position)));
+        }
+        shape.getExpression().ifPresent(expression -> {
+            for (final ICondition leaf : ConditionTrees.leaves(expression)) {
+                attributes.add(topLevelName(leaf.getAttribute()));
+            }
+        });
+        return attributes;
+    }
+
+    private static String topLevelName(final String attribute) {
+        for (int index = 0; index < attribute.length(); index++) {
+            if (attribute.charAt(index) == '.' || attribute.charAt(index) == '[') {
+                return attribute.substring(0, index);
+            }
+        }
+        return attribute;
+    }
+
+    private double rangeSelectivity(final Comparator comparator, final String rangeField) {
+        switch (comparator) {
+        case EQUALS:
+            return 1.0 / statistics.getCardinality(rangeField);
+        case BETWEEN:
+            return 0.25;
+        case STARTS_WITH:
+            return 0.1;
+        default:
+            return 0.33;
+        }
+    }
+
+    private static double readUnits(final double bytes) {
+        return Math.max(1, Math.ceil(bytes / READ_UNIT_BYTES)) * EVENTUAL_READ_UNIT;
+    }
+
+    private static QueryPlan cheapest(final QueryPlan current, final QueryPlan candidate) {
+        if (Objects.isNull(current)
+                || candidate.getEstimatedReadUnits() < current.getEstimatedReadUnits()
+                || (candidate.getEstimatedReadUnits() == current.getEstimatedReadUnits()
+                        && candidate.getEstimatedItems() < current.getEstimatedItems())) {
+            return candidate;
+        }
+        return current;
     }
 
     private Optional<Map<String, String>> convertIndexMapToString(final Map<String, Index> indexes) {
@@ -199,15 +537,8 @@ public class QueryRetrievalStrategy implements IRetrievalStrategy {
                 && Objects.equals(hashKey, query.hashKey)
                 && Objects.equals(convertIndexMapToString(indexMap), convertIndexMapToString(query.indexMap))
                 && Objects.equals(rangeKey, query.rangeKey)
-                && Objects.equals(rangeMap, query.rangeMap);
-    }
-
-    private Optional<ICondition> findExactMatchIndexField(final QueryParams params, final Map<String, Index> indexMap) {
-        return params.getConditions().entrySet().stream()
-                .filter(entry -> indexMap.containsKey(entry.getKey())
-                        && entry.getValue().getComparator() == Comparator.EQUALS)
-                .findFirst()
-                .map(entry -> entry.getValue());
+                && Objects.equals(rangeMap, query.rangeMap)
+                && Objects.equals(fillPolicy, query.fillPolicy);
     }
 
     @Override
@@ -0,0 +1,142 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import me.philcali.db.api.ICondition;
+import me.philcali.db.api.ICondition.Comparator;
+import me.philcali.db.api.IConditionExpression;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryParams.Collation;
+
+/**
+ * The parts of a query that decide its expressions: which attributes are
+ * filtered, how, on how many values, how the expression tree nests them,
+ * which are projected and in which order. Two params with the same shape
+ * compile to the same plan and only differ in their bound values.
+ */
+final class QueryShape {
+    private static final java.util.Comparator<ICondition> BY_ATTRIBUTE =
+            java.util.Comparator.comparing(ICondition::getAttribute);
+
+    public static QueryShape of(final QueryParams params) {
+        final ICondition[] conditions = params.getConditions().values().toArray(new ICondition[0]);
+        Arrays.sort(conditions, BY_ATTRIBUTE);
+        final String[] attributes = new String[conditions.length];
+        final Comparator[] comparators = new Comparator[conditions.length];
+        final int[] arities = new int[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            attributes[i] = conditions[i].getAttribute();
+            comparators[i] = conditions[i].getComparator();
+            arities[i] = Objects.isNull(conditions[i].getValues()) ? 0 : conditions[i].getValues().length;
+        }
+        final String[] projections = params.getProjections().toArray(new String[params.getProjections().size()]);
+        final IConditionExpression expression = params.getExpression().orElse(null);
+        return new QueryShape(attributes, comparators, arities, projections, params.getCollation(),
+                expression, Objects.isNull(expression) ? null : signature(expression));
+    }
+
+    private static List<Object> signature(final IConditionExpression expression) {
+        final List<Object> signature = new ArrayList<>();
+        signature.add(expression.getLogicalEvaluation());
+        for (final ICondition leaf : expression.getConditions()) {
+            signature.add(Arrays.asList(leaf.getAttribute(), leaf.getComparator(), TranslationUtils.arity(leaf)));
+        }
+        for (final IConditionExpression nested : expression.getExpressions()) {
+            signature.add(signature(nested));
+        }
+        return signature;
+    }
+
+    private final String[] attributes;
+    private final Comparator[] comparators;
+    private final int[] arities;
+    private final String[] projections;
+    private final Collation collation;
+    private final IConditionExpression expression;
+    private final List<Object> signature;
+    private final int hashCode;
+
+    private QueryShape(
+            final String[] attributes,
+            final Comparator[] comparators,
+            final int[] arities,
+            final String[] projections,
+            final Collation collation,
+            final IConditionExpression expression,
+            final List<Object> signature) {
+        this.attributes = attributes;
+        this.comparators = comparators;
+        this.arities = arities;
+        this.projections = projections;
+        this.collation = collation;
+        this.expression = expression;
+        this.signature = signature;
+        this.hashCode = Objects.hash(Arrays.hashCode(attributes), Arrays.hashCode(comparators),
+                Arrays.hashCode(arities), Arrays.hashCode(projections), collation, signature);
+    }
+
+    public int size() {
+        return attributes.length;
+    }
+
+    public String getAttribute(final int position) {
+        return attributes[position];
+    }
+
+    public Comparator getComparator(final int position) {
+        return comparators[position];
+    }
+
+    public int getArity(final int position) {
+        return arities[position];
+    }
+
+    public List<String> getProjections() {
+        return Collections.unmodifiableList(Arrays.asList(projections));
+    }
+
+    public Collation getCollation() {
+        return collation;
+    }
+
+    /**
+     * @return the expression tree of the first params of this shape; only its structure is shared
+     */
+    public Optional<IConditionExpression> getExpression() {
+        return Optional.ofNullable(expression);
+    }
+
+    public int indexOf(final String attribute) {
+        for (int position = 0; position < attributes.length; position++) {
+            if (attributes[position].equals(attribute)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof QueryShape)) {
+            return false;
+        }
+        final QueryShape shape = (QueryShape) obj;
+        return hashCode == shape.hashCode
+                && collation == shape.collation
+                && Arrays.equals(attributes, shape.attributes)
+                && Arrays.equals(comparators, shape.comparators)
+                && Arrays.equals(arities, shape.arities)
+                && Arrays.equals(projections, shape.projections)
+                && Objects.equals(signature, shape.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
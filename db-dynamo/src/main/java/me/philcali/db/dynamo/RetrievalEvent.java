@@ -0,0 +1,134 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+
+/**
+ * A single request made to DynamoDB: where it went, how long it took, what it
+ * consumed and how many items it read versus returned.
+ */
+public class RetrievalEvent {
+    public static final String QUERY = "query";
+    public static final String SCAN = "scan";
+    public static final String PARALLEL_SCAN = "parallelScan";
+    public static final String BATCH_GET = "batchGet";
+    public static final String EXPORT = "export";
+
+    public static class Builder {
+        private String tableName;
+        private String indexName;
+        private String strategy;
+        private long latencyNanos;
+        private double consumedReadUnits;
+        private int scannedCount;
+        private int returnedCount;
+
+        public RetrievalEvent build() {
+            Objects.requireNonNull(strategy);
+            return new RetrievalEvent(this);
+        }
+
+        public Builder withConsumedCapacity(final ConsumedCapacity capacity) {
+            Optional.ofNullable(capacity)
+                    .map(ConsumedCapacity::getCapacityUnits)
+                    .ifPresent(units -> this.consumedReadUnits += units);
+            return this;
+        }
+
+        public Builder withConsumedCapacity(final Collection<ConsumedCapacity> capacities) {
+            Optional.ofNullable(capacities).ifPresent(cs -> cs.forEach(this::withConsumedCapacity));
+            return this;
+        }
+
+        public Builder withConsumedReadUnits(final double consumedReadUnits) {
+            this.consumedReadUnits = consumedReadUnits;
+            return this;
+        }
+
+        public Builder withIndexName(final String indexName) {
+            this.indexName = indexName;
+            return this;
+        }
+
+        public Builder withLatencyNanos(final long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+            return this;
+        }
+
+        /**
+         * @param returnedCount items returned, where null (not reported) counts as none
+         */
+        public Builder withReturnedCount(final Integer returnedCount) {
+            this.returnedCount = Optional.ofNullable(returnedCount).orElse(0);
+            return this;
+        }
+
+        /**
+         * @param scannedCount items read before filtering, where null (not reported) counts as none
+         */
+        public Builder withScannedCount(final Integer scannedCount) {
+            this.scannedCount = Optional.ofNullable(scannedCount).orElse(0);
+            return this;
+        }
+
+        public Builder withStrategy(final String strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final RetrievalTags tags;
+    private final long latencyNanos;
+    private final double consumedReadUnits;
+    private final int scannedCount;
+    private final int returnedCount;
+
+    private RetrievalEvent(final Builder builder) {
+        this.tags = new RetrievalTags(builder.tableName, builder.indexName, builder.strategy);
+        this.latencyNanos = builder.latencyNanos;
+        this.consumedReadUnits = builder.consumedReadUnits;
+        this.scannedCount = builder.scannedCount;
+        this.returnedCount = builder.returnedCount;
+    }
+
+    public RetrievalTags getTags() {
+        return tags;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public double getConsumedReadUnits() {
+        return consumedReadUnits;
+    }
+
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    public int getReturnedCount() {
+        return returnedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "RetrievalEvent [tags=" + tags
+                + ", latencyNanos=" + latencyNanos
+                + ", consumedReadUnits=" + consumedReadUnits
+                + ", scannedCount=" + scannedCount
+                + ", returnedCount=" + returnedCount + "]";
+    }
+}
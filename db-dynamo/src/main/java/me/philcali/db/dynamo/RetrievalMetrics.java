@@ -0,0 +1,35 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The in process IRetrievalMetrics: totals and latency histograms per table,
+ * index and strategy, built from lock free adders and readable at any time.
+ */
+public class RetrievalMetrics implements IRetrievalMetrics {
+    private final Map<RetrievalTags, RetrievalStatistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(final RetrievalEvent event) {
+        RetrievalStatistics tagged = statistics.get(event.getTags());
+        if (Objects.isNull(tagged)) {
+            tagged = statistics.computeIfAbsent(event.getTags(), tags -> new RetrievalStatistics());
+        }
+        tagged.add(event);
+    }
+
+    public Map<RetrievalTags, RetrievalStatistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    public RetrievalStatistics getStatistics(final RetrievalTags tags) {
+        return statistics.getOrDefault(tags, new RetrievalStatistics());
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+}
@@ -0,0 +1,64 @@
+package me.philcali.db.dynamo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for one set of RetrievalTags.
+ */
+public class RetrievalStatistics {
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final DoubleAdder consumedReadUnits = new DoubleAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void add(final RetrievalEvent event) {
+        pages.increment();
+        scanned.add(event.getScannedCount());
+        returned.add(event.getReturnedCount());
+        consumedReadUnits.add(event.getConsumedReadUnits());
+        latency.record(event.getLatencyNanos());
+    }
+
+    /**
+     * @return requests made, ie: one per page of a query or scan
+     */
+    public long getPages() {
+        return pages.sum();
+    }
+
+    public long getScannedCount() {
+        return scanned.sum();
+    }
+
+    public long getReturnedCount() {
+        return returned.sum();
+    }
+
+    /**
+     * @return the fraction of read items that were thrown away by a filter
+     */
+    public double getFilterWaste() {
+        final long scannedCount = getScannedCount();
+        return scannedCount == 0 ? 0 : Math.max(0, scannedCount - getReturnedCount()) / (double) scannedCount;
+    }
+
+    public double getConsumedReadUnits() {
+        return consumedReadUnits.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "RetrievalStatistics [pages=" + getPages()
+                + ", scanned=" + getScannedCount()
+                + ", returned=" + getReturnedCount()
+                + ", consumedReadUnits=" + getConsumedReadUnits()
+                + ", p99=" + latency.getPercentile(0.99, TimeUnit.MICROSECONDS) + "us]";
+    }
+}
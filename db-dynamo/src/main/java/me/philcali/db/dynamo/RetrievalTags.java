@@ -0,0 +1,53 @@
+package me.philcali.db.dynamo;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * What a retrieval metric is broken down by: the table, the index (if any)
+ * and the strategy that made the request.
+ */
+public final class RetrievalTags {
+    private final String tableName;
+    private final String indexName;
+    private final String strategy;
+
+    public RetrievalTags(final String tableName, final String indexName, final String strategy) {
+        this.tableName = tableName;
+        this.indexName = indexName;
+        this.strategy = strategy;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Optional<String> getIndexName() {
+        return Optional.ofNullable(indexName);
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (Objects.isNull(obj) || !(obj instanceof RetrievalTags)) {
+            return false;
+        }
+        final RetrievalTags tags = (RetrievalTags) obj;
+        return Objects.equals(tableName, tags.tableName)
+                && Objects.equals(indexName, tags.indexName)
+                && Objects.equals(strategy, tags.strategy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tableName, indexName, strategy);
+    }
+
+    @Override
+    public String toString() {
+        return "table=" + tableName + ",index=" + getIndexName().orElse("") + ",strategy=" + strategy;
+    }
+}
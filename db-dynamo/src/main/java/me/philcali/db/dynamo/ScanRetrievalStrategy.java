@@ -1,14 +1,10 @@
 package me.philcali.db.dynamo;
 
-import static me.philcali.db.dynamo.TranslationUtils.buildLastKey;
-import static me.philcali.db.dynamo.TranslationUtils.translateFilter;
+import static me.philcali.db.dynamo.TranslationUtils.translateFilters;
+import static me.philcali.db.dynamo.TranslationUtils.translateProjections;
 
-import java.util.Iterator;
-import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.StringJoiner;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.ItemCollection;
@@ -17,40 +13,102 @@ import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
 import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 
-import me.philcali.db.api.ICondition;
-import me.philcali.db.api.IPageKey;
 import me.philcali.db.api.QueryParams;
 import me.philcali.db.api.QueryResult;
 
 public final class ScanRetrievalStrategy implements IRetrievalStrategy {
+    private final IRetrievalMetrics metrics;
+    private final PageFillPolicy fillPolicy;
+    private final IThroughputGovernor governor;
+
+    public ScanRetrievalStrategy(
+            final IRetrievalMetrics metrics,
+            final PageFillPolicy fillPolicy,
+            final IThroughputGovernor governor) {
+        this.metrics = Objects.requireNonNull(metrics);
+        this.fillPolicy = Objects.requireNonNull(fillPolicy);
+        this.governor = Objects.requireNonNull(governor);
+    }
+
+    public ScanRetrievalStrategy(final IRetrievalMetrics metrics, final PageFillPolicy fillPolicy) {
+        this(metrics, fillPolicy, IThroughputGovernor.NONE);
+    }
+
+    public ScanRetrievalStrategy(final IRetrievalMetrics metrics) {
+        this(metrics, PageFillPolicy.SINGLE_REQUEST);
+    }
+
+    public ScanRetrievalStrategy() {
+        this(IRetrievalMetrics.NONE);
+    }
+
     @Override
     public QueryResult<Item> apply(final QueryParams params, final Table table) {
         final ScanSpec spec = new ScanSpec()
-                .withMaxPageSize(params.getMaxSize());
-        buildLastKey(params).ifPresent(spec::withExclusiveStartKey);
-        final StringJoiner joiner = new StringJoiner(" AND ");
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        applyFilters(spec, params);
+        return fillPolicy.fill(params, (limit, startKey) -> {
+            spec.withMaxPageSize(limit);
+            if (Objects.nonNull(startKey)) {
+                spec.withExclusiveStartKey(startKey);
+            }
+            final ScanOutcome outcome = governor.execute(() -> {
+                final long start = System.nanoTime();
+                final ItemCollection<ScanOutcome> outcomes = table.scan(spec);
+                final ScanOutcome result = outcomes.firstPage().getLowLevelResult();
+                record(metrics, table, RetrievalEvent.SCAN, start, result);
+                return result;
+            }, ScanRetrievalStrategy::capacityUnits);
+            return new PageFillPolicy.Read(
+                    outcome.getItems(),
+                    outcome.getScanResult().getLastEvaluatedKey(),
+                    outcome.getScanResult().getScannedCount(),
+                    Optional.ofNullable(outcome.getScanResult().getConsumedCapacity())
+                            .map(ConsumedCapacity::getCapacityUnits)
+                            .orElse(null));
+        });
+    }
+
+    static void record(
+            final IRetrievalMetrics metrics,
+            final Table table,
+            final String strategy,
+            final long start,
+            final ScanOutcome outcome) {
+        metrics.record(RetrievalEvent.builder()
+                .withTableName(table.getTableName())
+                .withStrategy(strategy)
+                .withLatencyNanos(System.nanoTime() - start)
+                .withConsumedCapacity(outcome.getScanResult().getConsumedCapacity())
+                .withScannedCount(outcome.getScanResult().getScannedCount())
+                .withReturnedCount(outcome.getScanResult().getCount())
+                .build());
+    }
+
+    static double capacityUnits(final ScanOutcome outcome) {
+        return ThroughputGovernor.capacityUnits(outcome.getScanResult().getConsumedCapacity());
+    }
+
+    static ScanSpec applyFilters(final ScanSpec spec, final QueryParams params) {
         final ValueMap values = new ValueMap();
         final NameMap names = new NameMap();
-        final Iterator<ICondition> filters = params.getConditions().values().iterator();
-        final AtomicInteger index = new AtomicInteger();
-        while (filters.hasNext()) {
-            final ICondition filter = filters.next();
-            joiner.add(translateFilter(new StringBuilder(), index.incrementAndGet(), values, names, filter));
+        final String expression = translateFilters(params, values, names);
+        if (!expression.isEmpty()) {
+            spec.withFilterExpression(expression);
+        }
+        if (!params.getProjections().isEmpty()) {
+            spec.withProjectionExpression(translateProjections(params.getProjections(), names));
+        }
+        if (!names.isEmpty()) {
+            spec.withNameMap(names);
         }
-        if (!values.isEmpty() && !names.isEmpty()) {
-            spec.withFilterExpression(joiner.toString())
-                    .withNameMap(names)
-                    .withValueMap(values);
+        if (!values.isEmpty()) {
+            spec.withValueMap(values);
         }
-        final ItemCollection<ScanOutcome> outcomes = table.scan(spec);
-        final List<Item> items = outcomes.firstPage().getLowLevelResult().getItems();
-        final Optional<IPageKey> pageKey = Optional.ofNullable(outcomes.firstPage()
-                .getLowLevelResult()
-                .getScanResult()
-                .getLastEvaluatedKey())
-                .map(PageKeyDynamo::new);
-        return new QueryResult<>(pageKey.orElse(null), items, items.size() == params.getMaxSize());
+        return spec;
     }
 
     @Override
@@ -58,6 +116,6 @@ public final class ScanRetrievalStrategy implements IRetrievalStrategy {
         if (Objects.isNull(obj) || !(obj instanceof ScanRetrievalStrategy)) {
             return false;
         }
-        return obj instanceof ScanRetrievalStrategy;
+        return Objects.equals(fillPolicy, ((ScanRetrievalStrategy) obj).fillPolicy);
     }
 }
@@ -0,0 +1,394 @@
+package me.philcali.db.dynamo;
+
+import static me.philcali.db.dynamo.ConcurrentUtils.join;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ScanOutcome;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+
+import me.philcali.db.api.QueryParams;
+
+/**
+ * Exports a table with a segmented parallel scan, one task per segment on the
+ * executor. Every segment streams its items into its own numbered files,
+ * starting a new one at the first page boundary past the max file size or
+ * item count. A segment reads at most one page ahead of what it has written,
+ * so a slow sink slows the scan down instead of piling up items. The page
+ * reads run on the read executor, inline by default, never on the segments'
+ * executor, as a segment waits on its next page.
+ *
+ * After every file is in place, the segment saves a checkpoint to the sink
+ * with the scan key to go on from. Exporting again with the same sink and
+ * prefix resumes every unfinished segment from its checkpoint, rewriting the
+ * file it was in the middle of. A manifest naming every file is written once
+ * all the segments are done.
+ */
+public final class TableExporter {
+    public static final String MANIFEST = "manifest";
+    public static final long DEFAULT_MAX_FILE_BYTES = 128L * 1024 * 1024;
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    public static class Builder {
+        private IExportSink sink;
+        private String prefix;
+        private ExportFormat format;
+        private boolean compressed;
+        private long maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+        private long maxFileItems;
+        private int totalSegments;
+        private int pageSize;
+        private QueryParams params;
+        private Executor executor;
+        private Executor readExecutor;
+        private IThroughputGovernor governor;
+        private IRetrievalMetrics metrics;
+
+        public TableExporter build() {
+            Objects.requireNonNull(sink);
+            return new TableExporter(this);
+        }
+
+        /**
+         * Gzips every file, adding .gz to its name.
+         */
+        public Builder withCompression(final boolean compressed) {
+            this.compressed = compressed;
+            return this;
+        }
+
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withFormat(final ExportFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Paces the scan; a background view of a shared ThroughputGovernor
+         * leaves room for the table's interactive readers.
+         */
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        /**
+         * Encoded bytes, before compression, after which a segment starts a new file.
+         */
+        public Builder withMaxFileBytes(final long maxFileBytes) {
+            this.maxFileBytes = maxFileBytes;
+            return this;
+        }
+
+        /**
+         * Items after which a segment starts a new file; no limit by default.
+         */
+        public Builder withMaxFileItems(final long maxFileItems) {
+            this.maxFileItems = maxFileItems;
+            return this;
+        }
+
+        public Builder withMetrics(final IRetrievalMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Items read per scan request; DynamoDB's 1MB pages by default.
+         */
+        public Builder withPageSize(final int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Conditions and projections of the items to export.
+         */
+        public Builder withParams(final QueryParams params) {
+            this.params = params;
+            return this;
+        }
+
+        /**
+         * Reads a segment's next page while it writes the last one. It must
+         * not be the executor of the segments, which wait on their reads.
+         */
+        public Builder withReadExecutor(final Executor readExecutor) {
+            this.readExecutor = readExecutor;
+            return this;
+        }
+
+        /**
+         * Prepended to the name of every file, checkpoint and the manifest.
+         */
+        public Builder withPrefix(final String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        public Builder withSink(final IExportSink sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        /**
+         * Segments to scan; sized on the table like a ParallelScanRetrievalStrategy by default.
+         */
+        public Builder withTotalSegments(final int totalSegments) {
+            this.totalSegments = totalSegments;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final IExportSink sink;
+    private final String prefix;
+    private final ExportFormat format;
+    private final boolean compressed;
+    private final long maxFileBytes;
+    private final long maxFileItems;
+    private final int totalSegments;
+    private final int pageSize;
+    private final QueryParams params;
+    private final Executor executor;
+    private final Executor readExecutor;
+    private final IThroughputGovernor governor;
+    private final IRetrievalMetrics metrics;
+
+    private TableExporter(final Builder builder) {
+        this.sink = builder.sink;
+        this.prefix = Optional.ofNullable(builder.prefix).orElse("");
+        this.format = Optional.ofNullable(builder.format).orElse(ExportFormat.NDJSON);
+        this.compressed = builder.compressed;
+        this.maxFileBytes = builder.maxFileBytes > 0 ? builder.maxFileBytes : Long.MAX_VALUE;
+        this.maxFileItems = builder.maxFileItems > 0 ? builder.maxFileItems : Long.MAX_VALUE;
+        this.totalSegments = builder.totalSegments;
+        this.pageSize = Math.max(0, builder.pageSize);
+        this.params = Optional.ofNullable(builder.params).orElseGet(() -> QueryParams.builder().build());
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.readExecutor = Optional.ofNullable(builder.readExecutor).orElse(Runnable::run);
+        this.governor = Optional.ofNullable(builder.governor).orElse(IThroughputGovernor.NONE);
+        this.metrics = Optional.ofNullable(builder.metrics).orElse(IRetrievalMetrics.NONE);
+    }
+
+    public ExportResult export(final Table table) {
+        final int segments = loadCheckpoint(0).orElseGet(() -> {
+            // Pins the segments before any are scanned, so a resumed export splits the table the same way
+            final ExportCheckpoint first = new ExportCheckpoint(0, totalSegments > 0
+                    ? totalSegments
+                    : ParallelScanRetrievalStrategy.totalSegments(table,
+                            ParallelScanRetrievalStrategy.DEFAULT_SEGMENT_SIZE_BYTES,
+                            ParallelScanRetrievalStrategy.DEFAULT_MAX_SEGMENTS), 0, 0, null, false);
+            try {
+                first.save(sink, checkpointName(0));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return first;
+        }).getTotalSegments();
+        final List<CompletableFuture<ExportCheckpoint>> tasks = new ArrayList<>(segments);
+        for (int segment = 0; segment < segments; segment++) {
+            final int id = segment;
+            tasks.add(CompletableFuture.supplyAsync(() -> exportSegment(table, id, segments), executor));
+        }
+        final List<ExportCheckpoint> checkpoints = new ArrayList<>(segments);
+        RuntimeException failure = null;
+        for (final CompletableFuture<ExportCheckpoint> task : tasks) {
+            try {
+                checkpoints.add(join(task));
+            } catch (RuntimeException e) {
+                // Let every other segment get as far as it can before failing
+                failure = Optional.ofNullable(failure).orElse(e);
+            }
+        }
+        if (Objects.nonNull(failure)) {
+            throw failure;
+        }
+        final List<String> files = new ArrayList<>();
+        long items = 0;
+        for (final ExportCheckpoint checkpoint : checkpoints) {
+            for (int part = 0; part < checkpoint.getParts(); part++) {
+                files.add(fileName(checkpoint.getSegment(), part));
+            }
+            items += checkpoint.getItems();
+        }
+        writeManifest(files);
+        return new ExportResult(segments, items, files);
+    }
+
+    private ExportCheckpoint exportSegment(final Table table, final int segment, final int segments) {
+        ExportCheckpoint checkpoint = loadCheckpoint(segment)
+                .orElseGet(() -> new ExportCheckpoint(segment, segments, 0, 0, null, false));
+        if (checkpoint.isDone()) {
+            return checkpoint;
+        }
+        CompletableFuture<ScanOutcome> next = scan(table, segment, segments, checkpoint.getLastKey());
+        IExportSink.ExportFile file = null;
+        ExportFormat.ItemWriter writer = null;
+        CountingOutputStream counter = null;
+        long fileItems = 0;
+        long items = checkpoint.getItems();
+        int parts = checkpoint.getParts();
+        try {
+            for (;;) {
+                final ScanOutcome page = join(next);
+                final Map<String, AttributeValue> lastKey = page.getScanResult().getLastEvaluatedKey();
+                final boolean done = Objects.isNull(lastKey) || lastKey.isEmpty();
+                next = done ? null : scan(table, segment, segments, lastKey);
+                for (final Item item : page.getItems()) {
+                    if (Objects.isNull(writer)) {
+                        file = sink.create(fileName(segment, parts));
+                        counter = new CountingOutputStream(compressed ? new GZIPOutputStream(file) : file);
+                        writer = format.writer(counter);
+                        fileItems = 0;
+                    }
+                    writer.write(item);
+                    fileItems++;
+                    items++;
+                }
+                if (Objects.nonNull(writer)
+                        && (done || counter.getCount() >= maxFileBytes || fileItems >= maxFileItems)) {
+                    writer.close();
+                    writer = null;
+                    file = null;
+                    parts++;
+                    checkpoint = new ExportCheckpoint(segment, segments, parts, items, done ? null : lastKey, done);
+                    checkpoint.save(sink, checkpointName(segment));
+                } else if (done) {
+                    checkpoint = new ExportCheckpoint(segment, segments, parts, items, null, true);
+                    checkpoint.save(sink, checkpointName(segment));
+                }
+                if (done) {
+                    return checkpoint;
+                }
+            }
+        } catch (IOException e) {
+            abort(file, next);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            abort(file, next);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<ScanOutcome> scan(
+            final Table table,
+            final int segment,
+            final int segments,
+            final Map<String, AttributeValue> startKey) {
+        final ScanSpec spec = ScanRetrievalStrategy.applyFilters(new ScanSpec(), params)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withSegment(segment)
+                .withTotalSegments(segments);
+        if (pageSize > 0) {
+            spec.withMaxPageSize(pageSize);
+        }
+        if (Objects.nonNull(startKey)) {
+            spec.withExclusiveStartKey(TranslationUtils.buildPrimaryKey(new PageKeyDynamo(startKey)));
+        }
+        return CompletableFuture.supplyAsync(() -> governor.execute(() -> {
+            final long start = System.nanoTime();
+            final ScanOutcome outcome = table.scan(spec).firstPage().getLowLevelResult();
+            ScanRetrievalStrategy.record(metrics, table, RetrievalEvent.EXPORT, start, outcome);
+            return outcome;
+        }, ScanRetrievalStrategy::capacityUnits), readExecutor);
+    }
+
+    private Optional<ExportCheckpoint> loadCheckpoint(final int segment) {
+        try {
+            return ExportCheckpoint.load(sink, checkpointName(segment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeManifest(final List<String> files) {
+        try {
+            final IExportSink.ExportFile file = sink.create(prefix + MANIFEST);
+            try {
+                final Writer writer = new OutputStreamWriter(file, StandardCharsets.UTF_8);
+                for (final String name : files) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+                writer.close();
+            } catch (IOException | RuntimeException e) {
+                file.abort();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void abort(final IExportSink.ExportFile file, final CompletableFuture<ScanOutcome> next) {
+        Optional.ofNullable(next).ifPresent(scan -> scan.cancel(true));
+        if (Objects.nonNull(file)) {
+            try {
+                file.abort();
+            } catch (IOException e) {
+                // The failure that got us here matters more
+            }
+        }
+    }
+
+    String fileName(final int segment, final int part) {
+        return String.format("%ssegment-%05d-part-%05d%s%s", prefix, segment, part, format.getExtension(),
+                compressed ? COMPRESSED_SUFFIX : "");
+    }
+
+    private String checkpointName(final int segment) {
+        return String.format("%ssegment-%05d%s", prefix, segment, CHECKPOINT_SUFFIX);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(final OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(final int value) throws IOException {
+            out.write(value);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
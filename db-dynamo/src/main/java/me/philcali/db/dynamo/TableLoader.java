@@ -0,0 +1,360 @@
+package me.philcali.db.dynamo;
+
+import static me.philcali.db.dynamo.ConcurrentUtils.acquire;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+/**
+ * Loads files of items into a table, like the ones a TableExporter writes.
+ * The files are read one after another, cut into chunks of items, and every
+ * chunk is decoded and written on the executor with BatchWriteItem requests,
+ * retrying unprocessed items. NDJSON lines are parsed on the executor too;
+ * the binary format is cheap enough to decode as it is read.
+ *
+ * At most max concurrency chunks are in flight, each writing one request at
+ * a time, so the reader waits on the writers instead of reading a whole file
+ * into memory. A file is picked as BINARY or NDJSON by its extension, and a
+ * .gz file is gunzipped.
+ */
+public final class TableLoader {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    public static class Builder {
+        private DynamoDB db;
+        private String tableName;
+        private IExportSink source;
+        private ExportFormat format;
+        private Executor executor;
+        private ExponentialBackoff backoff;
+        private IThroughputGovernor governor;
+        private Consumer<LoadStatistics> listener;
+        private List<String> keyNames = new ArrayList<>();
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxRetries = BatchWriteAdapter.DEFAULT_MAX_RETRIES;
+
+        public TableLoader build() {
+            Objects.requireNonNull(db);
+            Objects.requireNonNull(tableName);
+            Objects.requireNonNull(source);
+            if (keyNames.isEmpty()) {
+                throw new IllegalArgumentException("A table loader needs the table key names");
+            }
+            return new TableLoader(this);
+        }
+
+        public Builder withBackoff(final ExponentialBackoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        /**
+         * Items decoded and written together by one task.
+         */
+        public Builder withChunkSize(final int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public Builder withDynamoDB(final DynamoDB db) {
+            this.db = db;
+            return this;
+        }
+
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * How to read a file whose extension is neither format's; NDJSON by default.
+         */
+        public Builder withFormat(final ExportFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Paces the writes; the one the table's writers use keeps the load
+         * from starving them.
+         */
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        /**
+         * The table's key attributes, required to keep the last of several
+         * items with the same key in a chunk, which a single BatchWriteItem
+         * request rejects.
+         */
+        public Builder withKeyNames(final String ... keyNames) {
+            this.keyNames = Arrays.asList(keyNames);
+            return this;
+        }
+
+        /**
+         * Hears about the progress after every chunk is written, from the thread that wrote it.
+         */
+        public Builder withListener(final Consumer<LoadStatistics> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Chunks, and so BatchWriteItem requests, in flight at once.
+         */
+        public Builder withMaxConcurrency(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Where the files are read from: a LocalExportSink for a directory on disk.
+         */
+        public Builder withSource(final IExportSink source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final IExportSink source;
+    private final ExportFormat format;
+    private final Executor executor;
+    private final Consumer<LoadStatistics> listener;
+    private final BatchWriteAdapter writer;
+    private final int chunkSize;
+    private final int maxConcurrency;
+
+    private TableLoader(final Builder builder) {
+        this.source = builder.source;
+        this.format = Optional.ofNullable(builder.format).orElse(ExportFormat.NDJSON);
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.listener = Optional.ofNullable(builder.listener).orElse(statistics -> { });
+        this.chunkSize = Math.max(1, builder.chunkSize);
+        this.maxConcurrency = Math.max(1, builder.maxConcurrency);
+        // Every chunk writes its requests in turn on its own task, so the chunks are the concurrency
+        this.writer = BatchWriteAdapter.builder()
+                .withDynamoDB(builder.db)
+                .withTableName(builder.tableName)
+                .withExecutor(Runnable::run)
+                .withBackoff(builder.backoff)
+                .withGovernor(builder.governor)
+                .withKeyNames(builder.keyNames.toArray(new String[builder.keyNames.size()]))
+                .withMaxConcurrency(1)
+                .withMaxRetries(builder.maxRetries)
+                .build();
+    }
+
+    /**
+     * Loads every file listed in the manifest of an export.
+     */
+    public LoadStatistics loadExport(final String prefix) {
+        final String manifest = Optional.ofNullable(prefix).orElse("") + TableExporter.MANIFEST;
+        final List<String> files;
+        try (InputStream input = source.open(manifest)
+                .orElseThrow(() -> new IllegalArgumentException("No export manifest at " + manifest));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            files = reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return load(files);
+    }
+
+    public LoadStatistics load(final Collection<String> files) {
+        final LoadStatistics statistics = new LoadStatistics();
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            for (final String file : files) {
+                if (Objects.nonNull(failure.get())) {
+                    break;
+                }
+                read(file, statistics, chunk -> {
+                    acquire(permits);
+                    CompletableFuture.runAsync(() -> write(chunk, statistics), executor)
+                            .whenComplete((nothing, error) -> {
+                                final Throwable cause = ConcurrentUtils.unwrap(error);
+                                if (Objects.nonNull(cause)) {
+                                    failure.compareAndSet(null, cause instanceof RuntimeException
+                                            ? (RuntimeException) cause : new CompletionException(cause));
+                                }
+                                permits.release();
+                            });
+                    return Objects.isNull(failure.get());
+                });
+            }
+        } finally {
+            // Lets the chunks in flight finish before reporting how far the load got
+            acquireAll(permits, maxConcurrency);
+        }
+        if (Objects.nonNull(failure.get())) {
+            throw failure.get();
+        }
+        return statistics;
+    }
+
+    private void write(final Supplier<List<Item>> chunk, final LoadStatistics statistics) {
+        final List<Item> items = chunk.get();
+        statistics.addItemsRead(items.size());
+        statistics.addBatches(writer.put(items));
+        statistics.addItemsWritten(items.size());
+        listener.accept(statistics);
+    }
+
+    /*
+     * Hands the file over in chunks until the consumer says to stop.
+     */
+    private void read(
+            final String file,
+            final LoadStatistics statistics,
+            final ChunkConsumer consumer) {
+        final boolean compressed = file.endsWith(COMPRESSED_SUFFIX);
+        final String name = compressed ? file.substring(0, file.length() - COMPRESSED_SUFFIX.length()) : file;
+        final ExportFormat fileFormat = Arrays.stream(ExportFormat.values())
+                .filter(value -> name.endsWith(value.getExtension()))
+                .findFirst()
+                .orElse(format);
+        try (CountingInputStream counter = new CountingInputStream(source.open(file)
+                .orElseThrow(() -> new IllegalArgumentException("No file to load at " + file)), statistics);
+                InputStream input = compressed ? new GZIPInputStream(counter) : counter) {
+            if (fileFormat == ExportFormat.NDJSON) {
+                readLines(input, consumer);
+            } else {
+                readItems(fileFormat, input, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        statistics.addFile();
+    }
+
+    private void readLines(final InputStream input, final ChunkConsumer consumer) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<>(chunkSize);
+        for (String line = reader.readLine(); Objects.nonNull(line); line = reader.readLine()) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == chunkSize) {
+                if (!consumer.accept(parse(lines))) {
+                    return;
+                }
+                lines = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!lines.isEmpty()) {
+            consumer.accept(parse(lines));
+        }
+    }
+
+    private void readItems(
+            final ExportFormat fileFormat,
+            final InputStream input,
+            final ChunkConsumer consumer) throws IOException {
+        final ExportFormat.ItemReader reader = fileFormat.reader(input);
+        List<Item> items = new ArrayList<>(chunkSize);
+        for (Item item = reader.read(); Objects.nonNull(item); item = reader.read()) {
+            items.add(item);
+            if (items.size() == chunkSize) {
+                final List<Item> chunk = items;
+                if (!consumer.accept(() -> chunk)) {
+                    return;
+                }
+                items = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!items.isEmpty()) {
+            final List<Item> chunk = items;
+            consumer.accept(() -> chunk);
+        }
+    }
+
+    private static Supplier<List<Item>> parse(final List<String> lines) {
+        return () -> lines.stream().map(Item::fromJSON).collect(Collectors.toList());
+    }
+
+    private static void acquireAll(final Semaphore permits, final int count) {
+        for (int permit = 0; permit < count; permit++) {
+            acquire(permits);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        /**
+         * @return false to stop reading
+         */
+        boolean accept(Supplier<List<Item>> chunk);
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LoadStatistics statistics;
+
+        private CountingInputStream(final InputStream input, final LoadStatistics statistics) {
+            super(input);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = in.read();
+            if (value >= 0) {
+                statistics.addBytes(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            final int count = in.read(bytes, offset, length);
+            if (count > 0) {
+                statistics.addBytes(count);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+/**
+ * The key attributes of a table and its secondary indexes, known ahead of
+ * time so a QueryRetrievalStrategy can be built without describing the table.
+ * A schema can be checked against the live table after the fact, which only
+ * warns when the two disagree.
+ */
+public final class TableSchema {
+    private static final Logger LOGGER = Logger.getLogger(TableSchema.class.getName());
+
+    public static class Builder {
+        private String hashKey;
+        private String rangeKey;
+        private Map<String, String> indexHashKeys = new LinkedHashMap<>();
+        private Map<String, String> indexRangeKeys = new LinkedHashMap<>();
+
+        public TableSchema build() {
+            Objects.requireNonNull(hashKey);
+            return new TableSchema(this);
+        }
+
+        public Builder withHashKey(final String hashKey) {
+            this.hashKey = hashKey;
+            return this;
+        }
+
+        public Builder withIndex(final String indexName, final String hashKey) {
+            this.indexHashKeys.put(indexName, Objects.requireNonNull(hashKey));
+            return this;
+        }
+
+        public Builder withIndex(final String indexName, final String hashKey, final String rangeKey) {
+            withIndex(indexName, hashKey);
+            Optional.ofNullable(rangeKey)
+                    .filter(key -> !key.isEmpty())
+                    .ifPresent(key -> indexRangeKeys.put(indexName, key));
+            return this;
+        }
+
+        public Builder withRangeKey(final String rangeKey) {
+            this.rangeKey = Optional.ofNullable(rangeKey).filter(key -> !key.isEmpty()).orElse(null);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The schema of a described table, global and local indexes alike.
+     */
+    public static TableSchema fromDescription(final TableDescription description) {
+        final Builder builder = builder();
+        description.getKeySchema().forEach(key -> {
+            if ("HASH".equals(key.getKeyType())) {
+                builder.withHashKey(key.getAttributeName());
+            } else {
+                builder.withRangeKey(key.getAttributeName());
+            }
+        });
+        Optional.ofNullable(description.getGlobalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
+            withIndex(builder, index.getIndexName(), index.getKeySchema());
+        }));
+        Optional.ofNullable(description.getLocalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
+            withIndex(builder, index.getIndexName(), index.getKeySchema());
+        }));
+        return builder.build();
+    }
+
+    private static void withIndex(final Builder builder, final String indexName, final List<KeySchemaElement> keys) {
+        String hashKey = null;
+        String rangeKey = null;
+        for (final KeySchemaElement key : keys) {
+            if ("HASH".equals(key.getKeyType())) {
+                hashKey = key.getAttributeName();
+            } else {
+                rangeKey = key.getAttributeName();
+            }
+        }
+        builder.withIndex(indexName, hashKey, rangeKey);
+    }
+
+    private final String hashKey;
+    private final String rangeKey;
+    private final Map<String, String> indexHashKeys;
+    private final Map<String, String> indexRangeKeys;
+
+    private TableSchema(final Builder builder) {
+        this.hashKey = builder.hashKey;
+        this.rangeKey = builder.rangeKey;
+        this.indexHashKeys = Collections.unmodifiableMap(builder.indexHashKeys);
+        this.indexRangeKeys = Collections.unmodifiableMap(builder.indexRangeKeys);
+    }
+
+    public String getHashKey() {
+        return hashKey;
+    }
+
+    public Optional<String> getRangeKey() {
+        return Optional.ofNullable(rangeKey);
+    }
+
+    /**
+     * @return the hash key of every index, by index name
+     */
+    public Map<String, String> getIndexHashKeys() {
+        return indexHashKeys;
+    }
+
+    /**
+     * @return the range key of the indexes that have one, by index name
+     */
+    public Map<String, String> getIndexRangeKeys() {
+        return indexRangeKeys;
+    }
+
+    /**
+     * Describes where this schema and the live one disagree, in the words of
+     * a warning; nothing when they agree.
+     */
+    public List<String> differences(final TableDescription description) {
+        final TableSchema live = fromDescription(description);
+        final List<String> differences = new ArrayList<>();
+        final String table = description.getTableName();
+        if (!Objects.equals(hashKey, live.hashKey)) {
+            differences.add(String.format("Table %s has hash key %s, not %s", table, live.hashKey, hashKey));
+        }
+        if (!Objects.equals(rangeKey, live.rangeKey)) {
+            differences.add(String.format("Table %s has range key %s, not %s", table, live.rangeKey, rangeKey));
+        }
+        final TreeSet<String> indexNames = new TreeSet<>(indexHashKeys.keySet());
+        indexNames.addAll(live.indexHashKeys.keySet());
+        indexNames.forEach(indexName -> {
+            if (!live.indexHashKeys.containsKey(indexName)) {
+                differences.add(String.format("Table %s has no index %s", table, indexName));
+            } else if (!indexHashKeys.containsKey(indexName)) {
+                differences.add(String.format("Table %s has index %s, which is not declared", table, indexName));
+            } else if (!Objects.equals(indexHashKeys.get(indexName), live.indexHashKeys.get(indexName))
+                    || !Objects.equals(indexRangeKeys.get(indexName), live.indexRangeKeys.get(indexName))) {
+                differences.add(String.format("Table %s has index %s on %s/%s, not %s/%s", table, indexName,
+                        live.indexHashKeys.get(indexName), live.indexRangeKeys.get(indexName),
+                        indexHashKeys.get(indexName), indexRangeKeys.get(indexName)));
+            }
+        });
+        return differences;
+    }
+
+    /**
+     * Describes the table on the executor and logs a warning for every
+     * difference, or for the describe failing; neither fails the future.
+     */
+    public CompletableFuture<List<String>> verify(final Table table, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> differences(table.describe()), executor)
+                .handle((differences, error) -> {
+                    if (Objects.nonNull(error)) {
+                        LOGGER.log(Level.WARNING, "Could not verify the schema of table " + table.getTableName(),
+                                ConcurrentUtils.unwrap(error));
+                        return Collections.<String>emptyList();
+                    }
+                    differences.forEach(LOGGER::warning);
+                    return differences;
+                });
+    }
+}
@@ -0,0 +1,231 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+/**
+ * Sizes, key cardinalities and index projections used to cost query plans.
+ * Counts come from DescribeTable; cardinalities are estimated from a sample
+ * scan, or supplied by hand when the data is well known.
+ */
+public class TableStatistics {
+    public static final long DEFAULT_ITEM_COUNT = 10000;
+    public static final long DEFAULT_ITEM_SIZE_BYTES = 1024;
+    public static final long DEFAULT_CARDINALITY = 100;
+
+    public static class IndexStatistics {
+        private final long itemCount;
+        private final long sizeBytes;
+        private final Set<String> projectedAttributes;
+
+        public IndexStatistics(final long itemCount, final long sizeBytes, final Set<String> projectedAttributes) {
+            this.itemCount = itemCount;
+            this.sizeBytes = sizeBytes;
+            this.projectedAttributes = projectedAttributes;
+        }
+
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        /**
+         * @return the attributes copied into the index, or null when all are
+         */
+        public Set<String> getProjectedAttributes() {
+            return projectedAttributes;
+        }
+
+        public boolean isProjected(final Collection<String> attributes) {
+            return Objects.isNull(projectedAttributes)
+                    || (Objects.nonNull(attributes) && projectedAttributes.containsAll(attributes));
+        }
+    }
+
+    public static class Builder {
+        private long itemCount;
+        private long sizeBytes;
+        private Map<String, Long> cardinalities = new HashMap<>();
+        private Map<String, IndexStatistics> indexes = new HashMap<>();
+
+        public TableStatistics build() {
+            return new TableStatistics(this);
+        }
+
+        public Builder withCardinality(final String attribute, final long cardinality) {
+            this.cardinalities.put(attribute, cardinality);
+            return this;
+        }
+
+        public Builder withIndex(final String indexName, final IndexStatistics index) {
+            this.indexes.put(indexName, index);
+            return this;
+        }
+
+        public Builder withItemCount(final long itemCount) {
+            this.itemCount = itemCount;
+            return this;
+        }
+
+        public Builder withSizeBytes(final long sizeBytes) {
+            this.sizeBytes = sizeBytes;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TableStatistics fromDescription(final TableDescription description) {
+        final Builder builder = builder()
+                .withItemCount(Optional.ofNullable(description.getItemCount()).orElse(0L))
+                .withSizeBytes(Optional.ofNullable(description.getTableSizeBytes()).orElse(0L));
+        final Set<String> tableKeys = keyNames(description.getKeySchema());
+        Optional.ofNullable(description.getGlobalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
+            builder.withIndex(index.getIndexName(), new IndexStatistics(
+                    Optional.ofNullable(index.getItemCount()).orElse(0L),
+                    Optional.ofNullable(index.getIndexSizeBytes()).orElse(0L),
+                    projected(tableKeys, index.getKeySchema(), index.getProjection())));
+        }));
+        Optional.ofNullable(description.getLocalSecondaryIndexes()).ifPresent(is -> is.forEach(index -> {
+            builder.withIndex(index.getIndexName(), new IndexStatistics(
+                    Optional.ofNullable(index.getItemCount()).orElse(0L),
+                    Optional.ofNullable(index.getIndexSizeBytes()).orElse(0L),
+                    projected(tableKeys, index.getKeySchema(), index.getProjection())));
+        }));
+        return builder.build();
+    }
+
+    /**
+     * Describes the table and estimates the cardinality of every key attribute,
+     * table and index alike, from a scan of up to sampleSize items.
+     */
+    public static TableStatistics sample(final Table table, final int sampleSize) {
+        final TableDescription description = table.describe();
+        final TableStatistics described = fromDescription(description);
+        final Set<String> keys = keyNames(description.getKeySchema());
+        Optional.ofNullable(description.getGlobalSecondaryIndexes())
+                .ifPresent(is -> is.forEach(index -> keys.addAll(keyNames(index.getKeySchema()))));
+        Optional.ofNullable(description.getLocalSecondaryIndexes())
+                .ifPresent(is -> is.forEach(index -> keys.addAll(keyNames(index.getKeySchema()))));
+        final Map<String, Map<Object, Integer>> frequencies = new HashMap<>();
+        int sampled = 0;
+        for (final Item item : table.scan(new ScanSpec().withMaxResultSize(sampleSize))) {
+            sampled++;
+            for (final String key : keys) {
+                if (item.isPresent(key)) {
+                    frequencies.computeIfAbsent(key, k -> new HashMap<>())
+                            .merge(TranslationUtils.normalizeValue(item.get(key)), 1, Integer::sum);
+                }
+            }
+        }
+        final Builder builder = builder()
+                .withItemCount(described.itemCount)
+                .withSizeBytes(described.sizeBytes);
+        builder.indexes.putAll(described.indexes);
+        final long population = Math.max(sampled, described.itemCount);
+        final int sampleCount = sampled;
+        frequencies.forEach((key, counts) -> {
+            builder.withCardinality(key, estimateDistinct(counts.values(), sampleCount, population));
+        });
+        return builder.build();
+    }
+
+    // Guaranteed-error estimator: values seen once in the sample stand in for
+    // sqrt(N / n) distinct values each, repeated values are counted once.
+    static long estimateDistinct(final Collection<Integer> frequencies, final int sampled, final long population) {
+        if (sampled == 0) {
+            return 0;
+        }
+        long singletons = 0;
+        long repeated = 0;
+        for (final int frequency : frequencies) {
+            if (frequency == 1) {
+                singletons++;
+            } else {
+                repeated++;
+            }
+        }
+        final double scale = Math.sqrt(population / (double) sampled);
+        return Math.max(1, Math.min(population, Math.round(scale * singletons) + repeated));
+    }
+
+    private static Set<String> keyNames(final Collection<KeySchemaElement> keys) {
+        final Set<String> names = new HashSet<>();
+        Optional.ofNullable(keys).ifPresent(ks -> ks.forEach(key -> names.add(key.getAttributeName())));
+        return names;
+    }
+
+    private static Set<String> projected(
+            final Set<String> tableKeys,
+            final Collection<KeySchemaElement> indexKeys,
+            final Projection projection) {
+        if (Objects.isNull(projection) || ProjectionType.ALL.toString().equals(projection.getProjectionType())) {
+            return null;
+        }
+        final Set<String> attributes = new HashSet<>(tableKeys);
+        attributes.addAll(keyNames(indexKeys));
+        Optional.ofNullable(projection.getNonKeyAttributes()).ifPresent(attributes::addAll);
+        return Collections.unmodifiableSet(attributes);
+    }
+
+    private final long itemCount;
+    private final long sizeBytes;
+    private final Map<String, Long> cardinalities;
+    private final Map<String, IndexStatistics> indexes;
+
+    private TableStatistics(final Builder builder) {
+        this.itemCount = builder.itemCount;
+        this.sizeBytes = builder.sizeBytes;
+        this.cardinalities = Collections.unmodifiableMap(new HashMap<>(builder.cardinalities));
+        this.indexes = Collections.unmodifiableMap(new HashMap<>(builder.indexes));
+    }
+
+    public long getItemCount() {
+        return itemCount > 0 ? itemCount : DEFAULT_ITEM_COUNT;
+    }
+
+    public long getAverageItemSize() {
+        return itemCount > 0 && sizeBytes > 0 ? Math.max(1, sizeBytes / itemCount) : DEFAULT_ITEM_SIZE_BYTES;
+    }
+
+    public long getCardinality(final String attribute) {
+        return Math.max(1, Optional.ofNullable(cardinalities.get(attribute)).orElse(DEFAULT_CARDINALITY));
+    }
+
+    public Optional<IndexStatistics> getIndex(final String indexName) {
+        return Optional.ofNullable(indexes.get(indexName));
+    }
+
+    public long getItemCount(final String indexName) {
+        return getIndex(indexName)
+                .map(IndexStatistics::getItemCount)
+                .filter(count -> count > 0)
+                .orElseGet(this::getItemCount);
+    }
+
+    public long getAverageItemSize(final String indexName) {
+        return getIndex(indexName)
+                .filter(index -> index.getItemCount() > 0 && index.getSizeBytes() > 0)
+                .map(index -> Math.max(1, index.getSizeBytes() / index.getItemCount()))
+                .orElseGet(this::getAverageItemSize);
+    }
+}
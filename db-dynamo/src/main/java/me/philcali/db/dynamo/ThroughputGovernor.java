@@ -0,0 +1,288 @@
+package me.philcali.db.dynamo;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+
+/**
+ * Table level rate governor, shared by every caller of a table. Calls draw on
+ * a bucket of capacity units that refills at the current rate, and are settled
+ * against what they actually consumed. A throttle cuts the rate by the decrease
+ * factor, while every second spent waiting on the bucket without throttles adds
+ * the additive increase back (AIMD). Background callers leave a reserve of the
+ * bucket to interactive ones.
+ *
+ * A throttled call is retried up to max retries times. The client must not
+ * retry it too, or every governed attempt becomes several during a throttling
+ * storm: build it with PredefinedRetryPolicies.NO_RETRY_POLICY or a max error
+ * retry of 0, or set max retries to 0 so the governor only adapts its rate.
+ */
+public final class ThroughputGovernor implements IThroughputGovernor {
+    public static final double DEFAULT_INITIAL_RATE = 100;
+    public static final double DEFAULT_MIN_RATE = 1;
+    public static final double DEFAULT_MAX_RATE = 40_000;
+    public static final double DEFAULT_ADDITIVE_INCREASE = 10;
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+    public static final double DEFAULT_BACKGROUND_RESERVE = 0.25;
+    public static final int DEFAULT_MAX_RETRIES = 8;
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double SMOOTHING = 0.2;
+
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND;
+    }
+
+    public static class Builder {
+        private double initialRate = DEFAULT_INITIAL_RATE;
+        private double minRate = DEFAULT_MIN_RATE;
+        private double maxRate = DEFAULT_MAX_RATE;
+        private double additiveIncrease = DEFAULT_ADDITIVE_INCREASE;
+        private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+        private double backgroundReserve = DEFAULT_BACKGROUND_RESERVE;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private ExponentialBackoff backoff;
+        private LongSupplier clock;
+        private LongConsumer sleeper;
+
+        public ThroughputGovernor build() {
+            return new ThroughputGovernor(this);
+        }
+
+        public Builder withAdditiveIncrease(final double additiveIncrease) {
+            this.additiveIncrease = additiveIncrease;
+            return this;
+        }
+
+        public Builder withBackgroundReserve(final double backgroundReserve) {
+            this.backgroundReserve = backgroundReserve;
+            return this;
+        }
+
+        public Builder withBackoff(final ExponentialBackoff backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder withClock(final LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder withDecreaseFactor(final double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        public Builder withInitialRate(final double initialRate) {
+            this.initialRate = initialRate;
+            return this;
+        }
+
+        public Builder withMaxRate(final double maxRate) {
+            this.maxRate = maxRate;
+            return this;
+        }
+
+        /**
+         * Retries of a throttled call, on top of any the client makes; 0 only
+         * adapts the rate, leaving retries to the client.
+         */
+        public Builder withMaxRetries(final int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder withMinRate(final double minRate) {
+            this.minRate = minRate;
+            return this;
+        }
+
+        Builder withSleeper(final LongConsumer sleeper) {
+            this.sleeper = sleeper;
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final double minRate;
+    private final double maxRate;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+    private final double backgroundReserve;
+    private final int maxRetries;
+    private final ExponentialBackoff backoff;
+    private final LongSupplier clock;
+    private final LongConsumer sleeper;
+    private double rate;
+    private double tokens;
+    private double estimate;
+    private long refilledAt;
+    private long adjustedAt;
+    private long throttledAt;
+    private boolean constrained;
+    private long throttles;
+
+    private ThroughputGovernor(final Builder builder) {
+        this.minRate = Math.max(Double.MIN_NORMAL, builder.minRate);
+        this.maxRate = Math.max(minRate, builder.maxRate);
+        this.additiveIncrease = Math.max(0, builder.additiveIncrease);
+        this.decreaseFactor = Math.min(1, Math.max(0, builder.decreaseFactor));
+        this.backgroundReserve = Math.min(1, Math.max(0, builder.backgroundReserve));
+        this.maxRetries = Math.max(0, builder.maxRetries);
+        this.backoff = Optional.ofNullable(builder.backoff).orElseGet(ExponentialBackoff::new);
+        this.clock = Optional.ofNullable(builder.clock).orElse(System::nanoTime);
+        this.sleeper = Optional.ofNullable(builder.sleeper).orElse(ThroughputGovernor::sleep);
+        this.rate = Math.min(maxRate, Math.max(minRate, builder.initialRate));
+        this.tokens = rate;
+        this.estimate = 1;
+        this.refilledAt = clock.getAsLong();
+        this.adjustedAt = refilledAt;
+        this.throttledAt = refilledAt - ADJUST_INTERVAL_NANOS;
+    }
+
+    /**
+     * @return a view of this governor, sharing its budget, for callers of the given priority
+     */
+    public IThroughputGovernor withPriority(final Priority priority) {
+        Objects.requireNonNull(priority);
+        return new IThroughputGovernor() {
+            @Override
+            public <T> T execute(final Supplier<T> call, final ToDoubleFunction<T> consumedUnits) {
+                return ThroughputGovernor.this.execute(priority, call, consumedUnits);
+            }
+
+            @Override
+            public void throttled() {
+                ThroughputGovernor.this.throttled();
+            }
+        };
+    }
+
+    @Override
+    public <T> T execute(final Supplier<T> call, final ToDoubleFunction<T> consumedUnits) {
+        return execute(Priority.INTERACTIVE, call, consumedUnits);
+    }
+
+    public <T> T execute(final Priority priority, final Supplier<T> call, final ToDoubleFunction<T> consumedUnits) {
+        for (int attempt = 0;; attempt++) {
+            final double charge = acquire(priority);
+            final T result;
+            try {
+                result = call.get();
+            } catch (AmazonServiceException e) {
+                settle(charge, 0);
+                if (!isThrottle(e)) {
+                    throw e;
+                }
+                throttled();
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                sleeper.accept(TimeUnit.MILLISECONDS.toNanos(backoff.getDelayMillis(attempt)));
+                continue;
+            }
+            settle(charge, consumedUnits.applyAsDouble(result));
+            return result;
+        }
+    }
+
+    @Override
+    public synchronized void throttled() {
+        throttles++;
+        final long now = clock.getAsLong();
+        // Calls in flight when the first throttle lands will likely throttle too
+        if (now - throttledAt >= ADJUST_INTERVAL_NANOS) {
+            rate = Math.max(minRate, rate * decreaseFactor);
+            throttledAt = now;
+            adjustedAt = now;
+            constrained = false;
+            tokens = Math.min(tokens, 0);
+        }
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized long getThrottleCount() {
+        return throttles;
+    }
+
+    private double acquire(final Priority priority) {
+        for (;;) {
+            final long wait;
+            synchronized (this) {
+                refill();
+                final double floor = priority == Priority.BACKGROUND ? rate * backgroundReserve : 0;
+                if (tokens > 0 && tokens >= floor) {
+                    tokens -= estimate;
+                    return estimate;
+                }
+                constrained = true;
+                wait = (long) Math.ceil((floor - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+            }
+            sleeper.accept(Math.max(MIN_WAIT_NANOS, wait));
+        }
+    }
+
+    private synchronized void settle(final double charge, final double consumed) {
+        tokens += charge - consumed;
+        if (consumed > 0) {
+            estimate += SMOOTHING * (consumed - estimate);
+        }
+        final long now = clock.getAsLong();
+        if (constrained && now - adjustedAt >= ADJUST_INTERVAL_NANOS) {
+            rate = Math.min(maxRate, rate + additiveIncrease);
+            adjustedAt = now;
+            constrained = false;
+        }
+    }
+
+    private void refill() {
+        final long now = clock.getAsLong();
+        tokens = Math.min(rate, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+
+    static boolean isThrottle(final AmazonServiceException e) {
+        return e instanceof ProvisionedThroughputExceededException
+                || "ThrottlingException".equals(e.getErrorCode())
+                || "RequestLimitExceeded".equals(e.getErrorCode());
+    }
+
+    static double capacityUnits(final ConsumedCapacity capacity) {
+        return Optional.ofNullable(capacity)
+                .map(ConsumedCapacity::getCapacityUnits)
+                .orElse(0.0);
+    }
+
+    static double capacityUnits(final Collection<ConsumedCapacity> capacities) {
+        return Optional.ofNullable(capacities)
+                .map(cs -> cs.stream().mapToDouble(ThroughputGovernor::capacityUnits).sum())
+                .orElse(0.0);
+    }
+
+    private static void sleep(final long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while waiting for throughput", ie);
+        }
+    }
+}
@@ -1,76 +1,250 @@
 package me.philcali.db.dynamo;
 
-import java.util.Arrays;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
 
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
 import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
 
 import me.philcali.db.api.ICondition;
+import me.philcali.db.api.ICondition.Comparator;
+import me.philcali.db.api.IConditionExpression;
+import me.philcali.db.api.IConditionExpression.Logical;
+import me.philcali.db.api.IPageKey;
 import me.philcali.db.api.QueryParams;
 
 final class TranslationUtils {
+    private static final String PROJECTION_SUFFIX = "_p";
+
     public static Optional<PrimaryKey> buildLastKey(final QueryParams params) {
-        return Optional.ofNullable(params.getToken()).map(token -> {
-            final PrimaryKey primaryKey = new PrimaryKey();
+        return Optional.ofNullable(params.getToken()).map(TranslationUtils::buildPrimaryKey);
+    }
+
+    public static PrimaryKey buildPrimaryKey(final IPageKey token) {
+        final PrimaryKey primaryKey = new PrimaryKey();
+        if (token instanceof PageKeyDynamo) {
+            ((PageKeyDynamo) token).getLastKey().forEach((attribute, value) -> {
+                primaryKey.addComponent(attribute, ItemUtils.toSimpleValue(value));
+            });
+        } else {
             token.getKey().forEach((attribute, value) -> {
                 primaryKey.addComponent(attribute, value);
             });
-            return primaryKey;
-        });
+        }
+        return primaryKey;
     }
 
-    public static StringBuilder translateFilter(final StringBuilder expression, final int index,
-            final ValueMap values, final NameMap names, final ICondition apiFilter) {
-        final StringJoiner attributeNameParts = new StringJoiner(".");
-        Arrays.stream(apiFilter.getAttribute().split("\\.")).forEach(part -> {
-            final String namePart = "#" + part + index;
-            names.with(namePart, part);
-            attributeNameParts.add(namePart);
+    public static String translateFilters(final Iterable<ICondition> filters, final ValueMap values, final NameMap names) {
+        final StringBuilder expression = new StringBuilder();
+        int index = 0;
+        for (final ICondition filter : filters) {
+            if (index > 0) {
+                expression.append(" AND ");
+            }
+            translateFilter(expression, ++index, values, names, filter);
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Translates the conditions and the expression tree of the params into one filter.
+     */
+    public static String translateFilters(final QueryParams params, final ValueMap values, final NameMap names) {
+        final StringBuilder expression = new StringBuilder(translateFilters(params.getConditions().values(), values, names));
+        params.getExpression().ifPresent(tree -> {
+            if (expression.length() > 0) {
+                expression.append(" AND ");
+            }
+            compileExpression(expression, params.getConditions().size(), names, tree,
+                    (leaf, index) -> bindValues(values, index, leaf));
         });
-        final String attributeName = attributeNameParts.toString();
-        Optional.ofNullable(apiFilter.getValues()).ifPresent(vs -> {
-            for (int i = 0; i < vs.length; i++) {
-                values.with(":v" + index + "_" + i, vs[0]);
+        return expression.toString();
+    }
+
+    /**
+     * Compiles an expression tree, giving every leaf the next placeholder index
+     * in the order of ConditionTrees.leaves.
+     *
+     * @return the last index given to a leaf
+     */
+    public static int compileExpression(final StringBuilder expression, final int index,
+            final Map<String, String> names, final IConditionExpression tree, final ObjIntConsumer<ICondition> leaves) {
+        final String operator;
+        if (tree.getLogicalEvaluation() == Logical.NOT) {
+            expression.append("NOT ");
+            if (tree.getConditions().length == 0 && tree.getExpressions().length == 1) {
+                return compileExpression(expression, index, names, tree.getExpressions()[0], leaves);
+            }
+            operator = " AND ";
+        } else {
+            operator = " " + tree.getLogicalEvaluation() + " ";
+        }
+        expression.append('(');
+        int next = index;
+        boolean first = true;
+        for (final ICondition leaf : tree.getConditions()) {
+            if (!first) {
+                expression.append(operator);
             }
+            first = false;
+            compileFilter(expression, ++next, names, leaf.getAttribute(), leaf.getComparator(), arity(leaf));
+            leaves.accept(leaf, next);
+        }
+        for (final IConditionExpression nested : tree.getExpressions()) {
+            if (!first) {
+                expression.append(operator);
+            }
+            first = false;
+            next = compileExpression(expression, next, names, nested, leaves);
+        }
+        expression.append(')');
+        return next;
+    }
+
+    static int arity(final ICondition condition) {
+        return Objects.isNull(condition.getValues()) ? 0 : condition.getValues().length;
+    }
+
+    public static Map<String, Object> normalizeKey(final PrimaryKey key) {
+        final Map<String, Object> normalized = new TreeMap<>();
+        key.getComponents().forEach(component -> {
+            normalized.put(component.getName(), normalizeValue(component.getValue()));
         });
-        switch (apiFilter.getComparator()) {
+        return normalized;
+    }
+
+    public static Map<String, Object> normalizeKey(final Item item, final Collection<String> keyNames) {
+        final Map<String, Object> normalized = new TreeMap<>();
+        keyNames.forEach(name -> normalized.put(name, normalizeValue(item.get(name))));
+        return normalized;
+    }
+
+    public static Object normalizeValue(final Object value) {
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        } else if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        return value;
+    }
+
+    public static StringBuilder translateFilter(final StringBuilder expression, final int index,
+            final ValueMap values, final NameMap names, final ICondition apiFilter) {
+        final int arity = bindValues(values, index, apiFilter);
+        return compileFilter(expression, index, names, apiFilter.getAttribute(), apiFilter.getComparator(), arity);
+    }
+
+    private static int bindValues(final ValueMap values, final int index, final ICondition condition) {
+        final int arity = arity(condition);
+        for (int position = 0; position < arity; position++) {
+            values.with(valuePlaceholder(index, position), condition.getValues()[position]);
+        }
+        return arity;
+    }
+
+    public static StringBuilder compileFilter(final StringBuilder expression, final int index,
+            final Map<String, String> names, final String attribute, final Comparator comparator, final int arity) {
+        final String attributeName = compileAttributeName(index, names, attribute);
+        switch (comparator) {
         case EQUALS:
-            return expression.append(String.format("%s = :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " = ", index);
         case NOT_EQUALS:
-            return expression.append(String.format("%s <> :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " <> ", index);
         case LESS_THAN:
-            return expression.append(String.format("%s < :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " < ", index);
         case LESS_THAN_EQUALS:
-            return expression.append(String.format("%s <= :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " <= ", index);
         case GREATER_THAN:
-            return expression.append(String.format("%s > :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " > ", index);
         case GREATER_THAN_EQUALS:
-            return expression.append(String.format("%s >= :v%d_0", attributeName, index));
+            return compileBinary(expression, attributeName, " >= ", index);
         case BETWEEN:
-            return expression.append(String.format("%s BETWEEN :v%d_0 AND :v%d_1", attributeName, index, index));
+            return expression.append(attributeName)
+                    .append(" BETWEEN ").append(valuePlaceholder(index, 0))
+                    .append(" AND ").append(valuePlaceholder(index, 1));
         case CONTAINS:
-            return expression.append(String.format("contains(%s, :v%d_0)", attributeName, index));
+            return compileFunction(expression.append("contains("), attributeName, index);
         case NOT_CONTAINS:
-            return expression.append(String.format("NOT contains(%s, :v%d_0)", attributeName, index));
+            return compileFunction(expression.append("NOT contains("), attributeName, index);
         case EXISTS:
-            return expression.append(String.format("attribute_exists(%s)", attributeName));
+            return expression.append("attribute_exists(").append(attributeName).append(')');
         case NOT_EXISTS:
-            return expression.append(String.format("attribute_not_exists(%s)", attributeName));
+            return expression.append("attribute_not_exists(").append(attributeName).append(')');
         case IN:
-            final StringJoiner joiner = new StringJoiner(", ");
-            values.keySet().stream()
-                    .filter(key -> key.startsWith(":v" + index + "_"))
-                    .forEach(joiner::add);
-            return expression.append(String.format("%s IN (%s)", attributeName, joiner.toString()));
+            expression.append(attributeName).append(" IN (");
+            for (int position = 0; position < arity; position++) {
+                if (position > 0) {
+                    expression.append(", ");
+                }
+                expression.append(valuePlaceholder(index, position));
+            }
+            return expression.append(')');
         case STARTS_WITH:
-            return expression.append(String.format("begins_with(%s, :v%d_0)", attributeName, index));
+            return compileFunction(expression.append("begins_with("), attributeName, index);
         default:
-            throw new IllegalArgumentException("Filter condition does not support condition: "
-                    + apiFilter.getComparator());
+            throw new IllegalArgumentException("Filter condition does not support condition: " + comparator);
+        }
+    }
+
+    public static String valuePlaceholder(final int index, final int position) {
+        return ":v" + index + "_" + position;
+    }
+
+    public static String translateProjections(final Collection<String> attributes, final Map<String, String> names) {
+        final StringBuilder expression = new StringBuilder();
+        for (final String attribute : attributes) {
+            if (expression.length() > 0) {
+                expression.append(", ");
+            }
+            appendAttributeName(expression, PROJECTION_SUFFIX, names, attribute);
+        }
+        return expression.toString();
+    }
+
+    private static String compileAttributeName(final int index, final Map<String, String> names, final String attribute) {
+        return appendAttributeName(new StringBuilder(), Integer.toString(index), names, attribute).toString();
+    }
+
+    private static StringBuilder appendAttributeName(final StringBuilder attributeName, final String suffix,
+            final Map<String, String> names, final String attribute) {
+        int start = 0;
+        while (start <= attribute.length()) {
+            int end = attribute.indexOf('.', start);
+            if (end == -1) {
+                end = attribute.length();
+            }
+            if (start > 0) {
+                attributeName.append('.');
+            }
+            // List dereferences stay outside of the placeholder: #list1[0]
+            final int bracket = attribute.indexOf('[', start);
+            final int nameEnd = bracket == -1 || bracket > end ? end : bracket;
+            final String part = attribute.substring(start, nameEnd);
+            final String namePart = "#" + part + suffix;
+            names.put(namePart, part);
+            attributeName.append(namePart).append(attribute, nameEnd, end);
+            start = end + 1;
         }
+        return attributeName;
+    }
+
+    private static StringBuilder compileBinary(final StringBuilder expression, final String attributeName,
+            final String operator, final int index) {
+        return expression.append(attributeName).append(operator).append(valuePlaceholder(index, 0));
+    }
+
+    private static StringBuilder compileFunction(final StringBuilder expression, final String attributeName,
+            final int index) {
+        return expression.append(attributeName).append(", ").append(valuePlaceholder(index, 0)).append(')');
     }
 
     private TranslationUtils() {
@@ -0,0 +1,98 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+
+import me.philcali.db.api.CompositePageKey;
+import me.philcali.db.api.IPageKey;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+/**
+ * The branches of an OR read side by side and put together into one page.
+ * The branches are disjoint, every one excluding what the ones before it
+ * match, so the union needs no dedup across pages. Every read is limited to
+ * a share of what is left to fill, so the page keeps all it reads; branches
+ * with items left are read again until the page is full or a round reads
+ * nothing. A branch left unread keeps its cursor for the next page.
+ */
+final class UnionQuery {
+    static final String UNION = "union";
+
+    private final List<QueryParams> branches;
+    private final Map<Integer, Optional<IPageKey>> cursors;
+    private final Map<Integer, Integer> limits;
+    private final List<Item> items;
+    private final int maxSize;
+
+    UnionQuery(final QueryParams params) {
+        this.branches = ConditionTrees.branches(params);
+        this.cursors = new LinkedHashMap<>();
+        this.limits = new LinkedHashMap<>();
+        this.items = new ArrayList<>();
+        this.maxSize = params.getMaxSize();
+        final Optional<CompositePageKey> token = CompositePageKey.fromToken(params.getToken());
+        if (token.isPresent()) {
+            token.get().getCursors().forEach((id, cursor) -> {
+                cursors.put(Integer.parseInt(id), Optional.of(cursor).filter(key -> !key.getKey().isEmpty()));
+            });
+        } else {
+            for (int id = 0; id < branches.size(); id++) {
+                cursors.put(id, Optional.empty());
+            }
+        }
+        share();
+    }
+
+    Set<Integer> getActive() {
+        return limits.keySet();
+    }
+
+    QueryParams params(final int id) {
+        return branches.get(id).toBuilder()
+                .withToken(cursors.get(id).orElse(null))
+                .withMaxSize(limits.get(id))
+                .build();
+    }
+
+    void merge(final Map<Integer, QueryResult<Item>> pages) {
+        final int read = items.size();
+        final int pending = cursors.size();
+        pages.forEach((id, page) -> {
+            items.addAll(page.getItems());
+            if (page.isTruncated()) {
+                cursors.put(id, Optional.of(page.getToken()));
+            } else {
+                cursors.remove(id);
+            }
+        });
+        limits.clear();
+        if (items.size() > read || cursors.size() < pending) {
+            share();
+        }
+    }
+
+    QueryResult<Item> result() {
+        final CompositePageKey token = new CompositePageKey().addAttribute(UNION, branches.size());
+        cursors.forEach((id, cursor) -> token.addCursor(Integer.toString(id), cursor.orElseGet(PageKey::new)));
+        return new QueryResult<>(token.isEmpty() ? null : token, items, !token.isEmpty());
+    }
+
+    private void share() {
+        final int left = maxSize - items.size();
+        int index = 0;
+        for (final int id : cursors.keySet()) {
+            final int limit = left / cursors.size() + (index++ < left % cursors.size() ? 1 : 0);
+            if (limit > 0) {
+                limits.put(id, limit);
+            }
+        }
+    }
+}
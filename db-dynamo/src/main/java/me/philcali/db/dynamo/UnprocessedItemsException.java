@@ -0,0 +1,17 @@
+package me.philcali.db.dynamo;
+
+import com.amazonaws.SdkClientException;
+
+public class UnprocessedItemsException extends SdkClientException {
+    private static final long serialVersionUID = 4218043573923476401L;
+    private final int unprocessedCount;
+
+    public UnprocessedItemsException(final String message, final int unprocessedCount) {
+        super(message);
+        this.unprocessedCount = unprocessedCount;
+    }
+
+    public int getUnprocessedCount() {
+        return unprocessedCount;
+    }
+}
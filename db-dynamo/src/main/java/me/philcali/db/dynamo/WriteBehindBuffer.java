@@ -0,0 +1,525 @@
+package me.philcali.db.dynamo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.spec.DeleteItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+
+/**
+ * Holds puts and deletes of a table for a short window and writes them with
+ * BatchWriteItem, keeping only the last write of every key. The buffer is
+ * flushed every window, as soon as max batch size keys are pending, and when
+ * it is closed; a writer that gets max pending keys ahead flushes in turn.
+ *
+ * Flushes run one at a time, so a key is always written in the order it was
+ * buffered, and the writes pending or being flushed are what reads of their
+ * keys return. Writes that fail for a passing reason, like a throttle or
+ * unprocessed items, go back to the buffer, unless their key was written again
+ * since, to be retried with the next flush; a failed background flush is
+ * handed to the error handler, while an explicit flush throws. A write that
+ * DynamoDB rejects outright, like an oversized item, is found by retrying its
+ * request one write at a time, then dropped and handed to the error handler.
+ *
+ * Only plain writes can wait: a write with a condition is for DynamoDB to
+ * check when it is made, so callers send it directly, after flushing its key.
+ */
+public class WriteBehindBuffer implements AutoCloseable {
+    public static final long DEFAULT_WINDOW_MILLIS = 1000;
+    public static final int DEFAULT_MAX_PENDING = 1000;
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindBuffer.class.getName());
+
+    public static class Builder {
+        private DynamoDB db;
+        private String tableName;
+        private Executor executor;
+        private IThroughputGovernor governor;
+        private Consumer<RuntimeException> errorHandler;
+        private List<String> keyNames = new ArrayList<>();
+        private long windowMillis = DEFAULT_WINDOW_MILLIS;
+        private int maxBatchSize = BatchWriteAdapter.MAX_BATCH_SIZE;
+        private int maxPending = DEFAULT_MAX_PENDING;
+
+        public WriteBehindBuffer build() {
+            Objects.requireNonNull(db);
+            Objects.requireNonNull(tableName);
+            if (keyNames.isEmpty()) {
+                throw new IllegalArgumentException("A write behind buffer needs the table key names");
+            }
+            return new WriteBehindBuffer(this);
+        }
+
+        public Builder withDynamoDB(final DynamoDB db) {
+            this.db = db;
+            return this;
+        }
+
+        /**
+         * Hears about the failures of background flushes; they are logged by default.
+         */
+        public Builder withErrorHandler(final Consumer<RuntimeException> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * Runs the background flushes and their BatchWriteItem requests.
+         */
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withGovernor(final IThroughputGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        public Builder withKeyNames(final String ... keyNames) {
+            this.keyNames = Arrays.asList(keyNames);
+            return this;
+        }
+
+        /**
+         * Pending keys that start a flush before the window is up.
+         */
+        public Builder withMaxBatchSize(final int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Pending keys at which a writer flushes itself instead of buffering further.
+         */
+        public Builder withMaxPending(final int maxPending) {
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        public Builder withTableName(final String tableName) {
+            this.tableName = tableName;
+            return this;
+        }
+
+        public Builder withWindow(final long window, final TimeUnit unit) {
+            this.windowMillis = unit.toMillis(window);
+            return this;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Whether a put can be buffered, which a conditional put cannot.
+     */
+    public static boolean isBufferable(final PutItemSpec spec) {
+        return Objects.isNull(spec.getConditionExpression()) && isNullOrEmpty(spec.getExpected());
+    }
+
+    /**
+     * Whether a delete can be buffered, which a conditional delete cannot.
+     */
+    public static boolean isBufferable(final DeleteItemSpec spec) {
+        return Objects.isNull(spec.getConditionExpression()) && isNullOrEmpty(spec.getExpected());
+    }
+
+    /**
+     * Whether an update can be merged into a buffered put of its key: only
+     * the update of the diff itself, not one a caller changed or conditioned.
+     */
+    public static boolean isMergeable(final UpdateItemSpec spec, final ItemDiff diff) {
+        return diff.isUpdateOf(spec);
+    }
+
+    private static boolean isNullOrEmpty(final Collection<?> values) {
+        return Objects.isNull(values) || values.isEmpty();
+    }
+
+    /*
+     * A buffered write of a key: the item to put, or null to delete it.
+     */
+    private static final class Write {
+        private final PrimaryKey key;
+        private final Item item;
+
+        private Write(final PrimaryKey key, final Item item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+
+    private final List<String> keyNames;
+    private final BatchWriteAdapter writer;
+    private final Executor executor;
+    private final Consumer<RuntimeException> errorHandler;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledFuture<?> timer;
+    private Map<Map<String, Object>, Write> pending = new LinkedHashMap<>();
+    private Map<Map<String, Object>, Write> flushing = Collections.emptyMap();
+    private boolean closed;
+
+    private WriteBehindBuffer(final Builder builder) {
+        this.keyNames = builder.keyNames;
+        this.executor = Optional.ofNullable(builder.executor).orElseGet(ForkJoinPool::commonPool);
+        this.errorHandler = Optional.ofNullable(builder.errorHandler).orElse(error -> {
+            LOGGER.log(Level.WARNING, "Failed to flush the writes buffered for " + builder.tableName, error);
+        });
+        this.maxBatchSize = Math.max(1, builder.maxBatchSize);
+        this.maxPending = Math.max(maxBatchSize, builder.maxPending);
+        // A flush already runs on the executor, so its requests must not wait on it as well
+        this.writer = BatchWriteAdapter.builder()
+                .withDynamoDB(builder.db)
+                .withTableName(builder.tableName)
+                .withExecutor(Runnable::run)
+                .withMaxConcurrency(1)
+                .withGovernor(builder.governor)
+                .withKeyNames(keyNames.toArray(new String[keyNames.size()]))
+                .build();
+        final long window = Math.max(1, builder.windowMillis);
+        this.timer = ConcurrentUtils.every(window, TimeUnit.MILLISECONDS, () -> {
+            if (getPendingCount() > 0) {
+                scheduleFlush();
+            }
+        });
+    }
+
+    public void put(final Item item) {
+        buffer(TranslationUtils.normalizeKey(item, keyNames), new Write(keyOf(item), item));
+    }
+
+    public void delete(final PrimaryKey key) {
+        buffer(TranslationUtils.normalizeKey(key), new Write(key, null));
+    }
+
+    /**
+     * Replaces the buffered item of the key with the merger's version of it,
+     * as one more write of the key.
+     *
+     * @return the merged item, or null when no put of the key is buffered
+     */
+    public Item merge(final Item item, final UnaryOperator<Item> merger) {
+        final Map<String, Object> normalized = TranslationUtils.normalizeKey(item, keyNames);
+        final Item merged;
+        synchronized (lock) {
+            checkOpen();
+            final Write write = lookup(normalized);
+            if (Objects.isNull(write) || Objects.isNull(write.item)) {
+                return null;
+            }
+            merged = merger.apply(write.item);
+            add(normalized, new Write(write.key, merged));
+        }
+        afterBuffering();
+        return merged;
+    }
+
+    public boolean contains(final PrimaryKey key) {
+        synchronized (lock) {
+            return Objects.nonNull(lookup(TranslationUtils.normalizeKey(key)));
+        }
+    }
+
+    public boolean contains(final Item item) {
+        synchronized (lock) {
+            return Objects.nonNull(lookup(TranslationUtils.normalizeKey(item, keyNames)));
+        }
+    }
+
+    /**
+     * @return the buffered item of the key, null when its delete is buffered,
+     * or else whatever the loader reads
+     */
+    public Item get(final PrimaryKey key, final Function<PrimaryKey, Item> loader) {
+        final Write write;
+        synchronized (lock) {
+            write = lookup(TranslationUtils.normalizeKey(key));
+        }
+        return Objects.nonNull(write) ? write.item : loader.apply(key);
+    }
+
+    /**
+     * Reads the items of the keys, in key order, from the buffer where they
+     * are buffered, and with one call of the loader for the rest.
+     */
+    public List<Item> getAll(final Collection<PrimaryKey> keys, final Function<List<PrimaryKey>, List<Item>> loader) {
+        final Map<Map<String, Object>, Item> found = new HashMap<>();
+        final Map<Map<String, Object>, PrimaryKey> unbuffered = new LinkedHashMap<>();
+        final LinkedHashSet<Map<String, Object>> order = new LinkedHashSet<>();
+        synchronized (lock) {
+            keys.forEach(key -> {
+                final Map<String, Object> normalized = TranslationUtils.normalizeKey(key);
+                order.add(normalized);
+                final Write write = lookup(normalized);
+                if (Objects.isNull(write)) {
+                    unbuffered.put(normalized, key);
+                } else if (Objects.nonNull(write.item)) {
+                    found.put(normalized, write.item);
+                }
+            });
+        }
+        if (!unbuffered.isEmpty()) {
+            loader.apply(new ArrayList<>(unbuffered.values())).forEach(item -> {
+                found.putIfAbsent(TranslationUtils.normalizeKey(item, keyNames), item);
+            });
+        }
+        return order.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Writes everything buffered so far, waiting on a flush in progress first.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            scheduled.set(false);
+            final Map<Map<String, Object>, Write> batch;
+            synchronized (lock) {
+                batch = pending;
+                if (batch.isEmpty()) {
+                    return;
+                }
+                pending = new LinkedHashMap<>();
+                flushing = batch;
+            }
+            final List<Map.Entry<Map<String, Object>, Write>> writes = new ArrayList<>(batch.entrySet());
+            final Map<Map<String, Object>, Write> retries = new LinkedHashMap<>();
+            RuntimeException failure = null;
+            try {
+                for (int from = 0; from < writes.size(); from += BatchWriteAdapter.MAX_BATCH_SIZE) {
+                    final List<Map.Entry<Map<String, Object>, Write>> chunk = writes.subList(from,
+                            Math.min(writes.size(), from + BatchWriteAdapter.MAX_BATCH_SIZE));
+                    failure = Optional.ofNullable(failure).orElse(write(chunk, retries));
+                }
+            } finally {
+                requeue(retries);
+                synchronized (lock) {
+                    flushing = Collections.emptyMap();
+                }
+            }
+            if (Objects.nonNull(failure)) {
+                failures.incrementAndGet();
+                throw failure;
+            }
+            flushes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the timer and flushes what is left; writes after that are refused.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        timer.cancel(false);
+        flush();
+    }
+
+    /**
+     * @return the keys waiting for the next flush
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return every put, delete and merge buffered
+     */
+    public long getBufferedCount() {
+        return buffered.get();
+    }
+
+    /**
+     * @return the writes replaced by a later write of the same key before they were flushed
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * @return the flushes that failed, whose writes went back to the buffer
+     */
+    public long getFailedFlushCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return the writes DynamoDB rejected outright, dropped and handed to the error handler
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void buffer(final Map<String, Object> normalized, final Write write) {
+        synchronized (lock) {
+            checkOpen();
+            add(normalized, write);
+        }
+        afterBuffering();
+    }
+
+    /*
+     * Writes a chunk, collecting the writes to retry. A request rejected for
+     * good is retried one write at a time, to drop only the writes at fault.
+     *
+     * @return the failure to retry on, if any
+     */
+    private RuntimeException write(
+            final List<Map.Entry<Map<String, Object>, Write>> chunk,
+            final Map<Map<String, Object>, Write> retries) {
+        final List<Item> puts = new ArrayList<>();
+        final List<PrimaryKey> deletes = new ArrayList<>();
+        chunk.forEach(entry -> {
+            if (Objects.nonNull(entry.getValue().item)) {
+                puts.add(entry.getValue().item);
+            } else {
+                deletes.add(entry.getValue().key);
+            }
+        });
+        try {
+            writer.apply(puts, deletes);
+            return null;
+        } catch (RuntimeException e) {
+            if (isRetryable(e)) {
+                chunk.forEach(entry -> retries.put(entry.getKey(), entry.getValue()));
+                return e;
+            }
+            if (chunk.size() > 1) {
+                RuntimeException failure = null;
+                for (final Map.Entry<Map<String, Object>, Write> entry : chunk) {
+                    failure = Optional.ofNullable(failure).orElse(write(Collections.singletonList(entry), retries));
+                }
+                return failure;
+            }
+            dropped.incrementAndGet();
+            errorHandler.accept(e);
+            return null;
+        }
+    }
+
+    private static boolean isRetryable(final RuntimeException e) {
+        if (e instanceof UnprocessedItemsException) {
+            return true;
+        }
+        if (e instanceof AmazonServiceException) {
+            final AmazonServiceException service = (AmazonServiceException) e;
+            return ThroughputGovernor.isThrottle(service)
+                    || service.getErrorType() == AmazonServiceException.ErrorType.Service
+                    || RetryUtils.isRetryableServiceException(service);
+        }
+        // Anything short of a response, like a timeout, may well go through next time
+        return e instanceof SdkClientException && ((SdkClientException) e).isRetryable();
+    }
+
+    /*
+     * Puts the writes of a failed flush back in front of the pending ones,
+     * unless their key was written again since.
+     */
+    private void requeue(final Map<Map<String, Object>, Write> batch) {
+        synchronized (lock) {
+            final Map<Map<String, Object>, Write> requeued = new LinkedHashMap<>(batch);
+            requeued.keySet().removeAll(pending.keySet());
+            requeued.putAll(pending);
+            pending = requeued;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The write behind buffer is closed");
+        }
+    }
+
+    private void add(final Map<String, Object> normalized, final Write write) {
+        buffered.incrementAndGet();
+        if (Objects.nonNull(pending.put(normalized, write))) {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    private void afterBuffering() {
+        final int size = getPendingCount();
+        if (size >= maxPending) {
+            flush();
+        } else if (size >= maxBatchSize) {
+            scheduleFlush();
+        }
+    }
+
+    private Write lookup(final Map<String, Object> normalized) {
+        final Write write = pending.get(normalized);
+        return Objects.nonNull(write) ? write : flushing.get(normalized);
+    }
+
+    private PrimaryKey keyOf(final Item item) {
+        final PrimaryKey key = new PrimaryKey();
+        keyNames.forEach(name -> key.addComponent(name, item.get(name)));
+        return key;
+    }
+
+    private void scheduleFlush() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    errorHandler.accept(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            scheduled.set(false);
+            errorHandler.accept(e);
+        }
+    }
+}
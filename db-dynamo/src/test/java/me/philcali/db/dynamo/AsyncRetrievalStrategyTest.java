@@ -0,0 +1,224 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+public class AsyncRetrievalStrategyTest {
+    private AmazonDynamoDBAsync client;
+
+    @Before
+    public void setUp() {
+        client = mock(AmazonDynamoDBAsync.class);
+    }
+
+    private static Map<String, AttributeValue> person(final int id) {
+        return Collections.singletonMap("id", new AttributeValue().withN(Integer.toString(id)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testScanFillsPageWithoutBlocking() {
+        final List<ScanRequest> requests = new ArrayList<>();
+        when(client.scanAsync(any(ScanRequest.class), any(AsyncHandler.class))).then(invoke -> {
+            final ScanRequest request = invoke.getArgumentAt(0, ScanRequest.class);
+            requests.add(request);
+            final ScanResult result = requests.size() == 1
+                    ? new ScanResult().withItems(person(1)).withCount(1).withScannedCount(2).withLastEvaluatedKey(person(2))
+                    : new ScanResult().withItems(person(3)).withCount(1).withScannedCount(2).withLastEvaluatedKey(person(4));
+            invoke.getArgumentAt(1, AsyncHandler.class).onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        });
+        final IAsyncRetrievalStrategy scan = AsyncScanRetrievalStrategy.builder()
+                .withClient(client)
+                .withFillPolicy(PageFillPolicy.builder().build())
+                .build();
+        final QueryResult<Item> result = scan.apply(QueryParams.builder()
+                .withMaxSize(2)
+                .withConditions(Conditions.attribute("name").equalsTo("Philip"))
+                .build(), "People").join();
+        assertEquals(Arrays.asList(1, 3), result.getItems().stream()
+                .map(item -> item.getInt("id"))
+                .collect(Collectors.toList()));
+        assertTrue(result.isTruncated());
+        assertEquals(2, requests.size());
+        assertEquals("People", requests.get(0).getTableName());
+        assertEquals(person(2), requests.get(1).getExclusiveStartKey());
+        assertEquals("TOTAL", requests.get(0).getReturnConsumedCapacity());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testScanTranslatesExpressionTree() {
+        final List<ScanRequest> requests = new ArrayList<>();
+        when(client.scanAsync(any(ScanRequest.class), any(AsyncHandler.class))).then(invoke -> {
+            final ScanRequest request = invoke.getArgumentAt(0, ScanRequest.class);
+            requests.add(request);
+            final ScanResult result = new ScanResult().withItems(person(1)).withCount(1).withScannedCount(1);
+            invoke.getArgumentAt(1, AsyncHandler.class).onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        });
+        final IAsyncRetrievalStrategy scan = AsyncScanRetrievalStrategy.builder()
+                .withClient(client)
+                .build();
+        scan.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Philip"))
+                .withConditions(Conditions.or(
+                        Conditions.attribute("age").lt(30),
+                        Conditions.not(Conditions.and(
+                                Conditions.attribute("race").equalsTo("hobbit"),
+                                Conditions.attribute("age").in(50, 111)))))
+                .build(), "People").join();
+        assertEquals("#name1 = :v1_0 AND (#age2 < :v2_0 OR NOT (#race3 = :v3_0 AND #age4 IN (:v4_0, :v4_1)))",
+                requests.get(0).getFilterExpression());
+        assertEquals("111", requests.get(0).getExpressionAttributeValues().get(":v4_1").getN());
+        assertEquals("age", requests.get(0).getExpressionAttributeNames().get("#age4"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueryRunsPlannedIndex() {
+        final List<QueryRequest> requests = new ArrayList<>();
+        when(client.queryAsync(any(QueryRequest.class), any(AsyncHandler.class))).then(invoke -> {
+            final QueryRequest request = invoke.getArgumentAt(0, QueryRequest.class);
+            requests.add(request);
+            final com.amazonaws.services.dynamodbv2.model.QueryResult result =
+                    new com.amazonaws.services.dynamodbv2.model.QueryResult()
+                            .withItems(person(1))
+                            .withCount(1)
+                            .withScannedCount(1);
+            invoke.getArgumentAt(1, AsyncHandler.class).onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        });
+        final IAsyncRetrievalStrategy query = AsyncQueryRetrievalStrategy.builder()
+                .withClient(client)
+                .withPlanner(QueryRetrievalStrategy.builder().withHashKey("id").build())
+                .build();
+        final QueryResult<Item> result = query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("id").equalsTo(1))
+                .build(), "People").join();
+        assertEquals(1, result.getItems().size());
+        assertFalse(result.isTruncated());
+        assertEquals("People", requests.get(0).getTableName());
+        assertEquals(1, requests.get(0).getExpressionAttributeValues().size());
+        assertTrue(requests.get(0).getKeyConditionExpression().contains("="));
+    }
+
+    @Test
+    public void testLimiterQueuesAndCancelsWithoutStarting() {
+        final AsyncLimiter limiter = new AsyncLimiter(1);
+        final AtomicInteger started = new AtomicInteger();
+        final CompletableFuture<String> first = new CompletableFuture<>();
+        final CompletableFuture<String> running = limiter.submit(() -> {
+            started.incrementAndGet();
+            return first;
+        });
+        final CompletableFuture<String> waiting = limiter.submit(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("second");
+        });
+        final CompletableFuture<String> last = limiter.submit(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("third");
+        });
+        assertEquals(1, started.get());
+        assertEquals(2, limiter.getWaiting());
+        waiting.cancel(true);
+        first.complete("first");
+        assertEquals("first", running.join());
+        assertEquals("third", last.join());
+        assertEquals(2, started.get());
+        assertEquals(0, limiter.getRunning());
+
+        final CompletableFuture<String> hung = new CompletableFuture<>();
+        limiter.submit(() -> hung).cancel(true);
+        assertTrue(hung.isCancelled());
+    }
+
+    @Test
+    public void testLimiterDrainsALongQueueWithoutRecursing() {
+        final AsyncLimiter limiter = new AsyncLimiter(1);
+        final CompletableFuture<String> first = new CompletableFuture<>();
+        limiter.submit(() -> first);
+        final List<CompletableFuture<String>> queued = new ArrayList<>();
+        for (int call = 0; call < 100000; call++) {
+            final CompletableFuture<String> waiting = limiter.submit(() -> CompletableFuture.completedFuture("done"));
+            if (call % 2 == 0) {
+                waiting.cancel(true);
+            }
+            queued.add(waiting);
+        }
+        first.complete("first");
+        assertEquals("done", queued.get(queued.size() - 1).join());
+        assertEquals(0, limiter.getRunning());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testBatchGetRetriesUnprocessedKeysOnTimer() {
+        final AtomicInteger calls = new AtomicInteger();
+        when(client.batchGetItemAsync(any(BatchGetItemRequest.class), any(AsyncHandler.class))).then(invoke -> {
+            final BatchGetItemRequest request = invoke.getArgumentAt(0, BatchGetItemRequest.class);
+            final List<Map<String, AttributeValue>> keys = request.getRequestItems().get("People").getKeys();
+            final Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+            final BatchGetItemResult result = new BatchGetItemResult().withResponses(responses);
+            if (calls.getAndIncrement() == 0) {
+                responses.put("People", keys.subList(0, 1));
+                result.withUnprocessedKeys(Collections.singletonMap("People",
+                        new KeysAndAttributes().withKeys(keys.subList(1, keys.size()))));
+            } else {
+                responses.put("People", keys);
+            }
+            invoke.getArgumentAt(1, AsyncHandler.class).onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        });
+        final AsyncBatchGetAdapter batch = AsyncBatchGetAdapter.builder()
+                .withClient(client)
+                .withTableName("People")
+                .withBackoff(new ExponentialBackoff(1, 1))
+                .withPreserveOrder(true)
+                .build();
+        final BatchGetResult result = batch.execute(Arrays.asList(
+                new PrimaryKey("id", 3),
+                new PrimaryKey("id", 1),
+                new PrimaryKey("id", 2))).join();
+        assertEquals(Arrays.asList(3, 1, 2), result.getItems().stream()
+                .map(item -> item.getInt("id"))
+                .collect(Collectors.toList()));
+        assertEquals(1, result.getStatistics().getRetries());
+        assertEquals(2, calls.get());
+    }
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,8 +21,11 @@ import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
 import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchGetItemSpec;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 
 public class BatchGetAdapterTest {
     private BatchGetAdapter adapter;
@@ -50,8 +54,11 @@ public class BatchGetAdapterTest {
         }
         attempts.forEach(keys::addAll);
         final AtomicInteger counter = new AtomicInteger();
-        when(db.batchGetItem(any(TableKeysAndAttributes.class))).then(invoke -> {
-            final TableKeysAndAttributes attributes = invoke.getArgumentAt(0, TableKeysAndAttributes.class);
+        when(db.batchGetItem(any(BatchGetItemSpec.class))).then(invoke -> {
+            final TableKeysAndAttributes attributes = invoke.getArgumentAt(0, BatchGetItemSpec.class)
+                    .getTableKeysAndAttributes()
+                    .iterator()
+                    .next();
             final BatchGetItemResult result = new BatchGetItemResult();
             final BatchGetItemOutcome outcome = new BatchGetItemOutcome(result);
             assertEquals(attempts.get(counter.get()), attributes.getPrimaryKeys());
@@ -69,4 +76,64 @@ public class BatchGetAdapterTest {
         assertEquals(allItems, adapter.apply(keys));
     }
 
+    @Test
+    public void testRetryUnprocessedAndPreserveOrder() {
+        final BatchGetAdapter ordered = BatchGetAdapter.builder()
+                .withDynamoDB(db)
+                .withTableName("testTable")
+                .withBackoff(new ExponentialBackoff(1, 1))
+                .withPreserveOrder(true)
+                .build();
+        final List<BatchGetItemSpec> specs = new ArrayList<>();
+        when(db.batchGetItem(any(BatchGetItemSpec.class))).then(invoke -> {
+            final BatchGetItemSpec spec = invoke.getArgumentAt(0, BatchGetItemSpec.class);
+            specs.add(spec);
+            final BatchGetItemResult result = new BatchGetItemResult()
+                    .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.5));
+            if (spec.getUnprocessedKeys() == null) {
+                result.addResponsesEntry("testTable", Arrays.asList(key("c")));
+                result.addUnprocessedKeysEntry("testTable", new KeysAndAttributes().withKeys(key("a")));
+            } else {
+                result.addResponsesEntry("testTable", spec.getUnprocessedKeys().get("testTable").getKeys());
+            }
+            return new BatchGetItemOutcome(result);
+        });
+        final BatchGetResult result = ordered.execute(Arrays.asList(
+                new PrimaryKey("id", "a"),
+                new PrimaryKey("id", "c"),
+                new PrimaryKey("id", "a")));
+        assertEquals(2, specs.size());
+        assertEquals(2, specs.get(0).getTableKeysAndAttributes().iterator().next().getPrimaryKeys().size());
+        assertEquals(Arrays.asList("a", "c"), result.getItems().stream()
+                .map(item -> item.getString("id"))
+                .collect(Collectors.toList()));
+        assertEquals(1, result.getStatistics().getChunks());
+        assertEquals(1, result.getStatistics().getRetries());
+        assertEquals(3.0, result.getStatistics().getConsumedCapacity(), 0.001);
+    }
+
+    @Test
+    public void testProjections() {
+        final BatchGetAdapter projected = BatchGetAdapter.builder()
+                .withDynamoDB(db)
+                .withTableName("testTable")
+                .withProjections("name", "origin.place")
+                .build();
+        final List<BatchGetItemSpec> specs = new ArrayList<>();
+        when(db.batchGetItem(any(BatchGetItemSpec.class))).then(invoke -> {
+            specs.add(invoke.getArgumentAt(0, BatchGetItemSpec.class));
+            return new BatchGetItemOutcome(new BatchGetItemResult()
+                    .addResponsesEntry("testTable", Arrays.asList(key("a"))));
+        });
+        assertEquals(1, projected.apply(Arrays.asList(new PrimaryKey("id", "a"))).size());
+        final TableKeysAndAttributes tableKeys = specs.get(0).getTableKeysAndAttributes().iterator().next();
+        assertEquals("#id_p, #name_p, #origin_p.#place_p", tableKeys.getProjectionExpression());
+        assertEquals("place", tableKeys.getNameMap().get("#place_p"));
+    }
+
+    private static Map<String, AttributeValue> key(final String id) {
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put("id", new AttributeValue(id));
+        return key;
+    }
 }
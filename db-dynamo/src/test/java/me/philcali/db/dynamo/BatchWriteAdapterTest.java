@@ -0,0 +1,98 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchWriteItemSpec;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class BatchWriteAdapterTest {
+    private DynamoDB db;
+    private BatchWriteAdapter adapter;
+    private List<BatchWriteItemSpec> specs;
+
+    @Before
+    public void setUp() {
+        db = mock(DynamoDB.class);
+        specs = Collections.synchronizedList(new ArrayList<>());
+        adapter = BatchWriteAdapter.builder()
+                .withDynamoDB(db)
+                .withTableName("testTable")
+                .withKeyNames("id")
+                .withExecutor(Runnable::run)
+                .withBackoff(new ExponentialBackoff(1, 1))
+                .build();
+        when(db.batchWriteItem(any(BatchWriteItemSpec.class))).then(invoke -> {
+            final BatchWriteItemSpec spec = invoke.getArgumentAt(0, BatchWriteItemSpec.class);
+            specs.add(spec);
+            final BatchWriteItemResult result = new BatchWriteItemResult()
+                    .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.0));
+            if (specs.size() == 1) {
+                result.addUnprocessedItemsEntry("testTable", Arrays.asList(new WriteRequest()
+                        .withPutRequest(new PutRequest())));
+            }
+            return new BatchWriteItemOutcome(result);
+        });
+    }
+
+    @Test
+    public void testApply() {
+        final List<Item> puts = IntStream.range(0, 30)
+                .mapToObj(index -> new Item().withString("id", "item" + index))
+                .collect(Collectors.toList());
+        puts.add(new Item().withString("id", "item0").withInt("version", 2));
+        final BatchStatistics statistics = adapter.apply(puts, Arrays.asList(new PrimaryKey("id", "gone")));
+        assertEquals(3, specs.size());
+        final TableWriteItems first = specs.get(0).getTableWriteItems().iterator().next();
+        assertEquals(25, first.getItemsToPut().size());
+        assertEquals(2, first.getItemsToPut().iterator().next().getInt("version"));
+        assertEquals(1, specs.get(1).getUnprocessedItems().get("testTable").size());
+        final TableWriteItems last = specs.get(2).getTableWriteItems().iterator().next();
+        assertEquals(5, last.getItemsToPut().size());
+        assertEquals(1, last.getPrimaryKeysToDelete().size());
+        assertEquals(2, statistics.getChunks());
+        assertEquals(1, statistics.getRetries());
+        assertEquals(3.0, statistics.getConsumedCapacity(), 0.001);
+    }
+
+    @Test
+    public void testDeleteWinsOverPutOfTheSameKey() {
+        adapter.apply(Arrays.asList(new Item().withString("id", "kept"), new Item().withString("id", "gone")),
+                Arrays.asList(new PrimaryKey("id", "gone")));
+        final TableWriteItems writes = specs.get(0).getTableWriteItems().iterator().next();
+        assertEquals("kept", writes.getItemsToPut().iterator().next().getString("id"));
+        assertEquals(1, writes.getItemsToPut().size());
+        assertEquals(1, writes.getPrimaryKeysToDelete().size());
+    }
+
+    @Test
+    public void testRequiresKeyNames() {
+        try {
+            BatchWriteAdapter.builder().withDynamoDB(db).withTableName("testTable").build();
+            fail("Expected the adapter to need key names");
+        } catch (IllegalArgumentException e) {
+            assertEquals("A batch write adapter needs the table key names", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+public class CachingRetrievalStrategyTest {
+    private Table table;
+    private AtomicInteger calls;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        table = new DynamoDB(mock(AmazonDynamoDB.class)).getTable("People");
+        calls = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private QueryResult<Item> page(final QueryParams params) {
+        calls.incrementAndGet();
+        return new QueryResult<>(null, Arrays.asList(new Item().withString("name", "Philip")), false);
+    }
+
+    @Test
+    public void testNormalizedParamsShareAPage() {
+        final CachingRetrievalStrategy query = CachingRetrievalStrategy.builder()
+                .withStrategy((params, table) -> page(params))
+                .withMaxEntries(10)
+                .withTtl(1, TimeUnit.MINUTES)
+                .build();
+        final QueryResult<Item> first = query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Philip"), Conditions.attribute("age").gt(30))
+                .build(), table);
+        final QueryResult<Item> second = query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("age").gt(30L), Conditions.attribute("name").equalsTo("Philip"))
+                .build(), table);
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+        query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("age").gt(30L), Conditions.attribute("name").equalsTo("Philip"))
+                .withToken(new PageKey().addKey("name", "Philip"))
+                .build(), table);
+        query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("age").gt(30L), Conditions.attribute("name").equalsTo("Philip"))
+                .withMaxSize(10)
+                .build(), table);
+        assertEquals(3, calls.get());
+        query.invalidateAll();
+        query.apply(QueryParams.builder().build(), table);
+        assertEquals(4, calls.get());
+        assertEquals(1, query.getStatistics().getHitCount());
+    }
+
+    @Test
+    public void testConcurrentMissesCollapse() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CachingRetrievalStrategy query = CachingRetrievalStrategy.builder()
+                .withStrategy((params, table) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return page(params);
+                })
+                .withMaxBytes(1024 * 1024)
+                .build();
+        final List<CompletableFuture<QueryResult<Item>>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> query.apply(QueryParams.builder().build(), table), executor));
+        }
+        while (query.getStatistics().getCollapsedCount() < 3) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (final CompletableFuture<QueryResult<Item>> result : results) {
+            assertEquals(1, result.get(1, TimeUnit.SECONDS).getItems().size());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(3, query.getStatistics().getCollapsedCount());
+    }
+}
@@ -0,0 +1,138 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+public class ItemDiffTest {
+    private static final Item LOADED = ItemUtils.toItem(ItemUtils.toAttributeValues(new Item()
+            .withString("id", "abc")
+            .withInt("age", 13)
+            .withDouble("score", 2.5)
+            .withStringSet("tags", "a", "b")
+            .withBinary("photo", new byte[] { 1, 2 })
+            .withMap("counts", Collections.singletonMap("cars", 2))
+            .withString("nickname", "Dude")));
+
+    private static Item changed() {
+        return new Item()
+                .withString("id", "abc")
+                .withLong("age", 14)
+                .with("score", new BigDecimal("2.50"))
+                .withStringSet("tags", "b", "a")
+                .withBinary("photo", new byte[] { 1, 2 })
+                .withMap("counts", Collections.singletonMap("cars", 2L));
+    }
+
+    @Test
+    public void testSetsChangesAndRemovesNulls() {
+        final ItemDiff partial = ItemDiff.between(LOADED, changed(), Arrays.asList("id"));
+        assertEquals(Collections.singleton("age"), partial.getSets().keySet());
+        assertTrue(partial.getRemoves().isEmpty());
+
+        final ItemDiff diff = ItemDiff.between(LOADED, changed().withNull("nickname"), Arrays.asList("id"));
+        assertEquals(Collections.singleton("age"), diff.getSets().keySet());
+        assertEquals(Collections.singleton("nickname"), diff.getRemoves());
+        final UpdateItemSpec spec = diff.toUpdateItemSpec();
+        assertEquals("SET #a0 = :v0 REMOVE #a1", spec.getUpdateExpression());
+        assertEquals("attribute_exists(#k0) AND #c0 = :c0 AND #c1 = :c1 AND #c2 = :c2 AND #c3 = :c3",
+                spec.getConditionExpression());
+        final Map<String, String> names = new HashMap<>();
+        names.put("#a0", "age");
+        names.put("#a1", "nickname");
+        names.put("#k0", "id");
+        names.put("#c0", "score");
+        names.put("#c1", "tags");
+        names.put("#c2", "photo");
+        names.put("#c3", "counts");
+        assertEquals(names, spec.getNameMap());
+        assertEquals(new BigDecimal(14), spec.getValueMap().get(":v0"));
+        assertEquals(LOADED.get("score"), spec.getValueMap().get(":c0"));
+        assertEquals("abc", spec.getKeyComponents().iterator().next().getValue());
+    }
+
+    @Test
+    public void testTrackerDiffsAgainstLastKnownVersion() {
+        final ItemTracker tracker = ItemTracker.builder()
+                .withKeyNames("id")
+                .withMaxEntries(1)
+                .withStripes(1)
+                .build();
+        final ItemDiff untracked = tracker.diff(changed().withNull("nickname"));
+        assertNull(untracked.getBefore());
+        assertEquals(5, untracked.getSets().size());
+        assertEquals(Collections.singleton("nickname"), untracked.getRemoves());
+
+        tracker.track(LOADED);
+        assertFalse(tracker.diff(changed()).isEmpty());
+        assertEquals(untracked.getRemoves(), tracker.diff(changed().withNull("nickname")).getRemoves());
+        tracker.track(changed());
+        final ItemDiff unchanged = tracker.diff(changed());
+        assertTrue(unchanged.isEmpty());
+        assertNull(unchanged.toUpdateItemSpec().getUpdateExpression());
+        assertEquals(5, unchanged.getUnchanged().size());
+        assertEquals(5, unchanged.toUpdateItemSpec().getValueMap().size());
+        assertTrue(untracked.getUnchanged().isEmpty());
+
+        tracker.track(new Item().withString("id", "xyz"));
+        assertNull(tracker.get(changed()));
+    }
+
+    @Test
+    public void testUpdateSetsEverythingWhenAnUnchangedAttributeChanged() {
+        final Table table = mock(Table.class);
+        final ItemDiff diff = ItemDiff.between(LOADED, changed(), Arrays.asList("id"));
+        final UpdateItemSpec spec = diff.toUpdateItemSpec();
+        final UpdateItemOutcome outcome = new UpdateItemOutcome(new UpdateItemResult());
+        final List<UpdateItemSpec> updates = new ArrayList<>();
+        when(table.updateItem(any(UpdateItemSpec.class))).then(invoke -> {
+            updates.add(invoke.getArgumentAt(0, UpdateItemSpec.class));
+            if (updates.size() == 1) {
+                throw new ConditionalCheckFailedException("score changed");
+            }
+            return outcome;
+        });
+        assertSame(outcome, diff.update(table, spec));
+        assertEquals(2, updates.size());
+        assertSame(spec, updates.get(0));
+        assertEquals("attribute_exists(#k0)", updates.get(1).getConditionExpression());
+        assertEquals(5, updates.get(1).getValueMap().size());
+    }
+
+    @Test(expected = ConditionalCheckFailedException.class)
+    public void testUpdateKeepsTheConditionsOfACallerSpec() {
+        final Table table = mock(Table.class);
+        final ItemDiff diff = ItemDiff.between(LOADED, changed(), Arrays.asList("id"));
+        final UpdateItemSpec spec = diff.toUpdateItemSpec().withConditionExpression("attribute_not_exists(#k0)");
+        when(table.updateItem(any(UpdateItemSpec.class))).thenThrow(new ConditionalCheckFailedException("exists"));
+        try {
+            diff.update(table, spec);
+        } finally {
+            verify(table).updateItem(spec);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+
+public class ItemMappersTest {
+    @Test
+    public void testReadsWhatDynamoReturns() {
+        final Item item = ItemUtils.toItem(ItemUtils.toAttributeValues(new Item()
+                .withInt("age", 13)
+                .withBoolean("dead", true)
+                .withStringSet("scopes", "auth", "fortitude")
+                .withList("units", "SECONDS", "DAYS")
+                .withNumberSet("scores", 1, 2)
+                .withMap("counts", Collections.singletonMap("cars", 2))
+                .withString("photo", "AQI=")));
+        assertEquals(13, ItemMappers.number(item.get("age")).intValue());
+        assertEquals(Boolean.TRUE, ItemMappers.bool(item.get("dead")));
+        final List<String> scopes = ItemMappers.list(item.get("scopes"), ItemMappers::string);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("auth", "fortitude")), new LinkedHashSet<>(scopes));
+        final Set<TimeUnit> units = ItemMappers.set(item.get("units"),
+                unit -> ItemMappers.enumeration(unit, TimeUnit.class));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(TimeUnit.SECONDS, TimeUnit.DAYS)), units);
+        final Set<Long> scores = ItemMappers.set(item.get("scores"), score -> ItemMappers.number(score).longValue());
+        assertEquals(new LinkedHashSet<>(Arrays.asList(1L, 2L)), scores);
+        final Map<String, Integer> counts = ItemMappers.map(item.get("counts"),
+                count -> ItemMappers.number(count).intValue());
+        assertEquals(Collections.singletonMap("cars", 2), counts);
+        assertArrayEquals(new byte[] { 1, 2 }, ItemMappers.binary(item.get("photo")));
+        assertArrayEquals(new byte[] { 1, 2 }, ItemMappers.binary(ByteBuffer.wrap(new byte[] { 1, 2 })));
+        assertNull(ItemMappers.list(item.get("missing"), ItemMappers::string));
+    }
+
+    @Test
+    public void testWritesCollectionsAsLists() {
+        final Item item = new Item()
+                .with("units", ItemMappers.toAttributeList(new LinkedHashSet<>(Arrays.asList(TimeUnit.SECONDS)),
+                        unit -> ((TimeUnit) unit).name()))
+                .with("empty", ItemMappers.toAttributeList(Collections.emptySet(), value -> value))
+                .with("scores", ItemMappers.toAttributeMap(Collections.singletonMap("math", 1.5), value -> value))
+                .with("photo", ItemMappers.base64(new byte[] { 1, 2 }));
+        assertEquals(Arrays.asList("SECONDS"), item.getList("units"));
+        assertEquals(Collections.emptyList(), item.getList("empty"));
+        assertEquals(new BigDecimal("1.5"), item.getMap("scores").get("math"));
+        assertEquals("AQI=", item.getString("photo"));
+    }
+}
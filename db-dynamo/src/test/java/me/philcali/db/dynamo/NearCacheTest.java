@@ -0,0 +1,118 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+
+public class NearCacheTest {
+    private AtomicLong clock;
+
+    @Before
+    public void setUp() {
+        clock = new AtomicLong();
+    }
+
+    @Test
+    public void testReadThrough() {
+        final NearCache<String, String> cache = NearCache.<String, String>builder()
+                .withMaxEntries(10)
+                .withStripes(1)
+                .build();
+        final AtomicInteger loads = new AtomicInteger();
+        final Function<String, String> loader = key -> {
+            loads.incrementAndGet();
+            return key;
+        };
+        assertEquals("a", cache.get("a", loader));
+        assertEquals("a", cache.get("a", loader));
+        assertNull(cache.get("b", key -> null));
+        final CacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(2, statistics.getLoadCount());
+        assertEquals(1, statistics.getEntries());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testLruEviction() {
+        final NearCache<String, String> cache = NearCache.<String, String>builder()
+                .withMaxEntries(2)
+                .withStripes(1)
+                .withEviction(NearCache.Eviction.LRU)
+                .build();
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.get("a");
+        cache.put("c", "c");
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testTinyLfuKeepsFrequentEntries() {
+        final NearCache<String, String> cache = NearCache.<String, String>builder()
+                .withMaxEntries(10)
+                .withStripes(1)
+                .build();
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, "hot");
+            for (int hit = 0; hit < 5; hit++) {
+                cache.get("hot" + i);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold" + i, "cold");
+        }
+        int hot = 0;
+        for (int i = 0; i < 10; i++) {
+            hot += cache.get("hot" + i) == null ? 0 : 1;
+        }
+        assertEquals(9, hot);
+        assertEquals(10, cache.getStatistics().getEntries());
+    }
+
+    @Test
+    public void testTtlAndWeight() {
+        final NearCache<String, String> cache = NearCache.<String, String>builder()
+                .withMaxBytes(10)
+                .withWeigher(String::length)
+                .withTtl(1, TimeUnit.SECONDS)
+                .withClock(clock::get)
+                .withStripes(1)
+                .build();
+        cache.put("big", "this is too large");
+        assertNull(cache.get("big"));
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        assertEquals(10, cache.getStatistics().getWeightedSize());
+        clock.addAndGet(1000);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getStatistics().getExpirationCount());
+    }
+
+    @Test
+    public void testItemCacheInvalidation() {
+        final ItemCache cache = ItemCache.builder()
+                .withKeyNames("id")
+                .withMaxEntries(10)
+                .build();
+        final Item item = new Item().withPrimaryKey("id", 1).withString("name", "one");
+        cache.get(new PrimaryKey("id", 1L), key -> item);
+        assertEquals(item, cache.get(new PrimaryKey("id", 1), key -> null));
+        cache.invalidate(new Item().withNumber("id", 1.0));
+        assertNull(cache.get(new PrimaryKey("id", 1), key -> null));
+    }
+}
@@ -0,0 +1,114 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+public class PageFillPolicyTest {
+    private List<Integer> limits;
+
+    @Before
+    public void setUp() {
+        limits = new ArrayList<>();
+    }
+
+    /**
+     * Every read evaluates up to the limit of ids after the exclusive start key,
+     * and by default only one in four passes the filter.
+     */
+    private PageFillPolicy.Read read(final int limit, final PrimaryKey startKey, final int total) {
+        return read(limit, startKey, total, id -> id % 4 == 0);
+    }
+
+    private PageFillPolicy.Read read(final int limit, final PrimaryKey startKey, final int total,
+            final IntPredicate filter) {
+        limits.add(limit);
+        final int offset = startKey == null ? 0 : ((Number) startKey.getComponents().iterator().next().getValue()).intValue() + 1;
+        final List<Item> items = new ArrayList<>();
+        int evaluated = offset;
+        while (evaluated < Math.min(total, offset + limit)) {
+            if (filter.test(evaluated)) {
+                items.add(new Item().withInt("id", evaluated));
+            }
+            evaluated++;
+        }
+        final Map<String, AttributeValue> lastKey = evaluated < total
+                ? Collections.singletonMap("id", new AttributeValue().withN(Integer.toString(evaluated - 1)))
+                : null;
+        return new PageFillPolicy.Read(items, lastKey, evaluated - offset, 0.5);
+    }
+
+    @Test
+    public void testSingleRequest() {
+        final QueryResult<Item> result = PageFillPolicy.SINGLE_REQUEST.fill(QueryParams.builder().withMaxSize(8).build(),
+                (limit, startKey) -> read(limit, startKey, 100));
+        assertEquals(2, result.getItems().size());
+        assertTrue(result.isTruncated());
+        assertEquals(Arrays.asList(8), limits);
+    }
+
+    @Test
+    public void testFillsToMaxSize() {
+        final PageFillPolicy policy = PageFillPolicy.builder().build();
+        final QueryResult<Item> result = policy.fill(QueryParams.builder().withMaxSize(4).build(),
+                (limit, startKey) -> read(limit, startKey, 100));
+        assertEquals(4, result.getItems().size());
+        assertEquals(Arrays.asList(4, 12), limits);
+        assertTrue(result.isTruncated());
+        assertEquals(new BigDecimal(15), result.getToken().getKey().get("id"));
+    }
+
+    @Test
+    public void testOvershootIsCutAtLastReturnedItem() {
+        final PageFillPolicy policy = PageFillPolicy.builder().build();
+        final QueryResult<Item> result = policy.fill(QueryParams.builder().withMaxSize(4).build(),
+                (limit, startKey) -> read(limit, startKey, 100, id -> id == 0 || id > 3));
+        assertEquals(Arrays.asList(4, 12), limits);
+        assertEquals(Arrays.asList(0, 4, 5, 6), result.getItems().stream()
+                .map(item -> item.getInt("id"))
+                .collect(Collectors.toList()));
+        assertTrue(result.isTruncated());
+        assertEquals(new BigDecimal(6), result.getToken().getKey().get("id"));
+    }
+
+    @Test
+    public void testFillStopsWhenExhausted() {
+        final PageFillPolicy policy = PageFillPolicy.builder().build();
+        final QueryResult<Item> result = policy.fill(QueryParams.builder().withMaxSize(10).build(),
+                (limit, startKey) -> read(limit, startKey, 10));
+        assertEquals(3, result.getItems().size());
+        assertFalse(result.isTruncated());
+        assertNull(result.getToken());
+    }
+
+    @Test
+    public void testFillStopsOnReadUnitBudget() {
+        final PageFillPolicy policy = PageFillPolicy.builder().withMaxReadUnits(1.0).build();
+        final QueryResult<Item> result = policy.fill(QueryParams.builder().withMaxSize(10).build(),
+                (limit, startKey) -> read(limit, startKey, 1000));
+        assertEquals(Arrays.asList(10, 24), limits);
+        assertEquals(9, result.getItems().size());
+        assertTrue(result.isTruncated());
+        assertEquals(new BigDecimal(33), result.getToken().getKey().get("id"));
+    }
+}
@@ -0,0 +1,142 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemCollection;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.document.Page;
+import com.amazonaws.services.dynamodbv2.document.ScanOutcome;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import me.philcali.db.api.CompositePageKey;
+import me.philcali.db.api.PageKey;
+import me.philcali.db.api.PageTokenCodec;
+import me.philcali.db.api.QueryParams;
+import me.philcali.db.api.QueryResult;
+
+public class ParallelScanRetrievalStrategyTest {
+    private Table table;
+    private IRetrievalStrategy scan;
+    private List<ScanSpec> specs;
+
+    @Before
+    public void setUp() {
+        table = mock(Table.class);
+        specs = Collections.synchronizedList(new ArrayList<>());
+        scan = ParallelScanRetrievalStrategy.builder()
+                .withExecutor(Runnable::run)
+                .withTotalSegments(2)
+                .build();
+        when(table.scan(any(ScanSpec.class))).then(invoke -> {
+            final ScanSpec spec = invoke.getArgumentAt(0, ScanSpec.class);
+            specs.add(spec);
+            final ScanResult result = new ScanResult()
+                    .withItems(Arrays.asList(item("segment" + spec.getSegment())));
+            if (spec.getSegment() == 0 && spec.getExclusiveStartKey() == null) {
+                result.withLastEvaluatedKey(item("segment0"));
+            }
+            return collection(new ScanOutcome(result));
+        });
+    }
+
+    @Test
+    public void testScanAndResume() {
+        final QueryResult<Item> first = scan.apply(QueryParams.builder().withMaxSize(10).build(), table);
+        assertEquals(2, specs.size());
+        assertEquals(Integer.valueOf(5), specs.get(0).getMaxPageSize());
+        assertEquals(Arrays.asList("segment0", "segment1"), ids(first));
+        assertTrue(first.isTruncated());
+        final CompositePageKey token = (CompositePageKey) first.getToken();
+        assertEquals(Collections.singleton("0"), token.getCursors().keySet());
+        assertEquals(2, token.getAttribute(ParallelScanRetrievalStrategy.TOTAL_SEGMENTS).get());
+
+        final PageKey clientToken = new PageKey();
+        clientToken.setKey(token.getKey());
+        final QueryResult<Item> second = scan.apply(QueryParams.builder()
+                .withMaxSize(10)
+                .withToken(clientToken)
+                .build(), table);
+        assertEquals(3, specs.size());
+        assertEquals(Integer.valueOf(0), specs.get(2).getSegment());
+        assertEquals(Integer.valueOf(2), specs.get(2).getTotalSegments());
+        assertEquals(Integer.valueOf(10), specs.get(2).getMaxPageSize());
+        assertEquals(Arrays.asList("segment0"), ids(second));
+        assertFalse(second.isTruncated());
+        assertNull(second.getToken());
+    }
+
+    @Test
+    public void testResumeFromEncodedToken() {
+        final PageTokenCodec codec = PageTokenCodec.builder().build();
+        final QueryResult<Item> first = scan.apply(QueryParams.builder().withMaxSize(10).build(), table);
+        final String encoded = codec.encode(first.getToken());
+        final QueryResult<Item> second = scan.apply(QueryParams.builder()
+                .withMaxSize(10)
+                .withToken(codec.decode(encoded))
+                .build(), table);
+        assertEquals(Integer.valueOf(0), specs.get(2).getSegment());
+        assertEquals(Integer.valueOf(2), specs.get(2).getTotalSegments());
+        assertEquals(Arrays.asList("segment0"), ids(second));
+
+        final Map<String, AttributeValue> lastKey = new HashMap<>();
+        lastKey.put("id", new AttributeValue().withN("42"));
+        lastKey.put("hash", new AttributeValue().withB(ByteBuffer.wrap(new byte[] { 1, 2 })));
+        final Map<String, Object> components = new HashMap<>();
+        for (final KeyAttribute attribute : TranslationUtils.buildPrimaryKey(codec.decode(codec.encode(
+                new PageKeyDynamo(lastKey)))).getComponents()) {
+            components.put(attribute.getName(), attribute.getValue());
+        }
+        assertEquals(new BigDecimal(42), components.get("id"));
+        assertEquals(ByteBuffer.wrap(new byte[] { 1, 2 }), ByteBuffer.wrap((byte[]) components.get("hash")));
+    }
+
+    private static List<String> ids(final QueryResult<Item> result) {
+        return result.getItems().stream().map(item -> item.getString("id")).collect(Collectors.toList());
+    }
+
+    private static Map<String, AttributeValue> item(final String id) {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", new AttributeValue(id));
+        return item;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ItemCollection<ScanOutcome> collection(final ScanOutcome outcome) {
+        final ItemCollection<ScanOutcome> collection = mock(ItemCollection.class);
+        when(collection.firstPage()).thenReturn(new Page<Item, ScanOutcome>(outcome.getItems(), outcome) {
+            @Override
+            public boolean hasNextPage() {
+                return false;
+            }
+
+            @Override
+            public Page<Item, ScanOutcome> nextPage() {
+                return null;
+            }
+        });
+        return collection;
+    }
+}
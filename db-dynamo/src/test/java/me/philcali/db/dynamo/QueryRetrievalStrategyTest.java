@@ -3,6 +3,21 @@ package me.philcali.db.dynamo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +27,9 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 
 import me.philcali.db.api.Conditions;
 import me.philcali.db.api.QueryParams;
@@ -29,7 +47,7 @@ public class QueryRetrievalStrategyTest {
     private AmazonDynamoDB client;
     private DynamoDB db;
     private Table table;
-    private IRetrievalStrategy query;
+    private QueryRetrievalStrategy query;
 
     @Before
     public void setUp() {
@@ -48,6 +66,18 @@ public class QueryRetrievalStrategyTest {
         assertEquals(query, QueryRetrievalStrategy.fromTable(table));
     }
 
+    @Test
+    public void testBuildFromSchema() {
+        final TableSchema schema = TableSchema.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndex("name-index", "name")
+                .withIndex("age-index", "race", "age")
+                .build();
+        assertEquals(query, QueryRetrievalStrategy.fromSchema(table, schema));
+        assertTrue(schema.verify(table, Runnable::run).join().isEmpty());
+    }
+
     @Test
     public void testComplexFieldSearch() {
         final QueryParams params = QueryParams.builder()
@@ -84,4 +114,304 @@ public class QueryRetrievalStrategyTest {
         assertEquals(1, results.getItems().size());
         assertNotNull(results.getToken());
     }
+
+    @Test
+    public void testPlanIsCachedPerShape() {
+        final QueryPlan plan = query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("race").equalsTo("hobbit"))
+                .withConditions(Conditions.attribute("age").lt(50))
+                .withConditions(Conditions.attribute("origin.place").in("Shire", "Bree"))
+                .build());
+        assertSame(plan, query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("origin.place").in("Gondor", "Rohan"))
+                .withConditions(Conditions.attribute("race").equalsTo("human"))
+                .withConditions(Conditions.attribute("age").lt(40))
+                .build()));
+        assertEquals(Optional.of("age-index"), plan.getIndexName());
+        assertEquals("#race1 = :v1_0 AND #age2 < :v2_0", plan.getKeyConditionExpression());
+        assertEquals(Optional.of("#origin3.#place3 IN (:v3_0, :v3_1)"), plan.getFilterExpression());
+        final ValueMap values = plan.bind(QueryParams.builder()
+                .withConditions(Conditions.attribute("origin.place").in("Gondor", "Rohan"))
+                .withConditions(Conditions.attribute("race").equalsTo("human"))
+                .withConditions(Conditions.attribute("age").lt(40))
+                .build());
+        assertEquals("Gondor", values.get(":v3_0"));
+        assertEquals("Rohan", values.get(":v3_1"));
+        assertNotSame(plan, query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("race").equalsTo("hobbit"))
+                .withConditions(Conditions.attribute("age").gt(50))
+                .withConditions(Conditions.attribute("origin.place").in("Shire", "Bree"))
+                .build()));
+    }
+
+    @Test
+    public void testPlanCacheKeepsHotShapesOnceFull() {
+        final QueryRetrievalStrategy bounded = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withMaxCachedPlans(64)
+                .build();
+        for (int shape = 0; shape < 256; shape++) {
+            bounded.explain(QueryParams.builder()
+                    .withConditions(Conditions.attribute("once" + shape).equalsTo(shape))
+                    .build());
+        }
+        final QueryParams hot = QueryParams.builder()
+                .withConditions(Conditions.attribute("race").equalsTo("hobbit"))
+                .build();
+        final QueryPlan plan = bounded.explain(hot);
+        for (int shape = 0; shape < 256; shape++) {
+            assertSame(plan, bounded.explain(hot));
+            bounded.explain(QueryParams.builder()
+                    .withConditions(Conditions.attribute("later" + shape).equalsTo(shape))
+                    .build());
+        }
+    }
+
+    @Test
+    public void testExplainInOnHashKeyFansOut() {
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.attribute("race").in("hobbit", "human", "hobbit"))
+                .withConditions(Conditions.attribute("age").gt(30))
+                .build();
+        final QueryPlan plan = query.explain(params);
+        assertTrue(plan.isFanOut());
+        assertEquals(Optional.of("age-index"), plan.getIndexName());
+        assertEquals("#race1 = :v1_0 AND #age2 > :v2_0", plan.getKeyConditionExpression());
+        assertEquals(Arrays.asList("hobbit", "human"), plan.getFanOutValues(params));
+        assertEquals("human", plan.bind(params, "human").get(":v1_0"));
+        assertFalse(query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("race").in("hobbit", "human"))
+                .build()).getFilterExpression().isPresent());
+    }
+
+    @Test
+    public void testQueryInOnHashKeyMergesByRangeKey() {
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.attribute("race").in("hobbit", "human"))
+                .withCollation(QueryParams.Collation.DESCENDING)
+                .withMaxSize(2)
+                .build();
+        final QueryResult<Item> first = query.apply(params, table);
+        assertEquals(Arrays.asList("Bilbo Baggins", "Philip Cali"), first.getItems().stream()
+                .map(item -> item.getString("name"))
+                .collect(Collectors.toList()));
+        assertTrue(first.isTruncated());
+        final QueryResult<Item> second = query.apply(params.toBuilder().withToken(first.getToken()).build(), table);
+        assertEquals(1, second.getItems().size());
+        assertEquals("Frodo Baggins", second.getItems().get(0).getString("name"));
+        assertFalse(second.isTruncated());
+    }
+
+    @Test
+    public void testExplainOrOnKeysPlansUnion() {
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.or(
+                        Conditions.attribute("name").equalsTo("Frodo Baggins"),
+                        Conditions.and(
+                                Conditions.attribute("race").equalsTo("human"),
+                                Conditions.attribute("age").gt(30))))
+                .build();
+        final QueryPlan plan = query.explain(params);
+        assertTrue(plan.isUnion());
+        assertEquals(2, plan.getBranches().size());
+        final QueryPlan first = plan.getBranches().get(0);
+        assertEquals(Optional.of("name-index"), first.getIndexName());
+        assertFalse(first.getFilterExpression().isPresent());
+        final QueryPlan second = plan.getBranches().get(1);
+        assertEquals(Optional.of("age-index"), second.getIndexName());
+        assertEquals("#race1 = :v1_0 AND #age2 > :v2_0", second.getKeyConditionExpression());
+        assertEquals(Optional.of("NOT (#name3 = :v3_0)"), second.getFilterExpression());
+        final ValueMap values = second.bind(ConditionTrees.branches(params).get(1));
+        assertEquals("Frodo Baggins", values.get(":v3_0"));
+        assertFalse(query.explain(QueryParams.builder()
+                .withConditions(Conditions.or(
+                        Conditions.attribute("name").equalsTo("Frodo Baggins"),
+                        Conditions.attribute("age").gt(30)))
+                .build()).isUnion());
+    }
+
+    @Test(timeout = 10000)
+    public void testUnionOfFanOutRunsOnASingleThread() {
+        final AmazonDynamoDB mocked = mock(AmazonDynamoDB.class);
+        when(mocked.query(any(QueryRequest.class))).then(invoke -> {
+            final String values = invoke.getArgumentAt(0, QueryRequest.class).getExpressionAttributeValues().toString();
+            return new com.amazonaws.services.dynamodbv2.model.QueryResult()
+                    .withItems(Collections.singletonList(Collections.singletonMap("id", new AttributeValue(values))))
+                    .withCount(1)
+                    .withScannedCount(1);
+        });
+        final Table people = new DynamoDB(mocked).getTable("People");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final QueryParams params = QueryParams.builder()
+                    .withConditions(Conditions.or(
+                            Conditions.attribute("name").equalsTo("Frodo Baggins"),
+                            Conditions.attribute("id").in("a", "b")))
+                    .build();
+            final QueryRetrievalStrategy bounded = QueryRetrievalStrategy.builder()
+                    .withHashKey("id")
+                    .withIndexMap("name", people.getIndex("name-index"))
+                    .withExecutor(executor)
+                    .build();
+            assertTrue(bounded.explain(params).getBranches().get(1).isFanOut());
+            assertEquals(3, bounded.apply(params, people).getItems().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnionReadsOnlyWhatThePageKeeps() {
+        final AmazonDynamoDB mocked = mock(AmazonDynamoDB.class);
+        final AtomicInteger read = new AtomicInteger();
+        when(mocked.query(any(QueryRequest.class))).then(invoke -> {
+            final int limit = invoke.getArgumentAt(0, QueryRequest.class).getLimit();
+            read.addAndGet(limit);
+            return new com.amazonaws.services.dynamodbv2.model.QueryResult()
+                    .withItems(Collections.nCopies(limit, Collections.singletonMap("id", new AttributeValue("a"))))
+                    .withLastEvaluatedKey(Collections.singletonMap("id", new AttributeValue("a")))
+                    .withCount(limit)
+                    .withScannedCount(limit);
+        });
+        final Table people = new DynamoDB(mocked).getTable("People");
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.or(
+                        Conditions.attribute("name").equalsTo("Frodo Baggins"),
+                        Conditions.attribute("id").equalsTo("a")))
+                .withMaxSize(3)
+                .build();
+        final QueryRetrievalStrategy union = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withIndexMap("name", people.getIndex("name-index"))
+                .build();
+        final QueryResult<Item> page = union.apply(params, people);
+        assertEquals(3, page.getItems().size());
+        assertTrue(page.isTruncated());
+        assertEquals(3, read.get());
+    }
+
+    @Test
+    public void testExplainFiltersOnExpression() {
+        final QueryPlan plan = query.explain(QueryParams.builder()
+                .withConditions(Conditions.and(
+                        Conditions.attribute("id").equalsTo("abc"),
+                        Conditions.or(
+                                Conditions.attribute("age").lt(20),
+                                Conditions.not(Conditions.attribute("origin.place").exists()))))
+                .build());
+        assertTrue(plan.isQuery());
+        assertEquals("#id1 = :v1_0", plan.getKeyConditionExpression());
+        assertEquals(Optional.of("(#age2 < :v2_0 OR NOT (attribute_exists(#origin3.#place3)))"),
+                plan.getFilterExpression());
+    }
+
+    @Test
+    public void testQueryOrOnKeysUnionsWithoutDuplicates() {
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.or(
+                        Conditions.attribute("name").equalsTo("Frodo Baggins"),
+                        Conditions.attribute("race").equalsTo("hobbit")))
+                .withMaxSize(1)
+                .build();
+        final QueryResult<Item> first = query.apply(params, table);
+        assertEquals(1, first.getItems().size());
+        assertEquals("Frodo Baggins", first.getItems().get(0).getString("name"));
+        assertTrue(first.isTruncated());
+        final QueryResult<Item> second = query.apply(params.toBuilder().withToken(first.getToken()).build(), table);
+        assertEquals(1, second.getItems().size());
+        assertEquals("Bilbo Baggins", second.getItems().get(0).getString("name"));
+        assertFalse(second.isTruncated());
+    }
+
+    @Test
+    public void testPlanFallsBackWithoutKeyEquality() {
+        assertFalse(query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("id").startsWith("a"))
+                .build()).isQuery());
+    }
+
+    @Test
+    public void testExplainPicksCheapestIndex() {
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Frodo Baggins"))
+                .withConditions(Conditions.attribute("race").equalsTo("hobbit"))
+                .withConditions(Conditions.attribute("age").lt(50))
+                .build();
+        final TableStatistics.Builder statistics = TableStatistics.builder()
+                .withItemCount(100000)
+                .withSizeBytes(100000L * 2048)
+                .withCardinality("name", 90000)
+                .withCardinality("race", 4);
+        final QueryPlan byName = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndexMap("name", table.getIndex("name-index"))
+                .withIndexMap("race", "age", table.getIndex("age-index"))
+                .withStatistics(statistics.build())
+                .build()
+                .explain(params);
+        assertEquals(Optional.of("name-index"), byName.getIndexName());
+        assertEquals(0.5, byName.getEstimatedReadUnits(), 0.0);
+
+        final QueryPlan byRace = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndexMap("name", table.getIndex("name-index"))
+                .withIndexMap("race", "age", table.getIndex("age-index"))
+                .withStatistics(statistics
+                        .withIndex("name-index", new TableStatistics.IndexStatistics(100000, 100000L * 64,
+                                new HashSet<>(Arrays.asList("id", "updateTime", "name"))))
+                        .withCardinality("race", 50000)
+                        .build())
+                .build()
+                .explain(params);
+        assertEquals(Optional.of("age-index"), byRace.getIndexName());
+        assertEquals(Optional.of("age"), byRace.getRangeKey());
+    }
+
+    @Test
+    public void testExplainProjections() {
+        final QueryRetrievalStrategy keysOnly = QueryRetrievalStrategy.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndexMap("name", table.getIndex("name-index"))
+                .withStatistics(TableStatistics.builder()
+                        .withIndex("name-index", new TableStatistics.IndexStatistics(0, 0,
+                                new HashSet<>(Arrays.asList("id", "updateTime", "name"))))
+                        .build())
+                .build();
+        final QueryPlan plan = keysOnly.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Frodo Baggins"))
+                .withProjections("id", "updateTime")
+                .build());
+        assertEquals(Optional.of("name-index"), plan.getIndexName());
+        assertEquals(Optional.of("#id_p, #updateTime_p"), plan.getProjectionExpression());
+        final QueryPlan uncovered = keysOnly.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Frodo Baggins"))
+                .withProjections("id", "origin.place")
+                .build());
+        assertFalse(uncovered.getIndexName().isPresent());
+        assertFalse(keysOnly.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Frodo Baggins"))
+                .build()).getIndexName().isPresent());
+    }
+
+    @Test
+    public void testQueryProjections() {
+        final QueryResult<Item> results = query.apply(QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Philip Cali"))
+                .withProjections("name")
+                .build(), table);
+        assertEquals(1, results.getItems().size());
+        assertEquals(1, results.getItems().get(0).asMap().size());
+    }
+
+    @Test
+    public void testExplainScan() {
+        final QueryPlan plan = query.explain(QueryParams.builder()
+                .withConditions(Conditions.attribute("age").lt(50))
+                .build());
+        assertFalse(plan.isQuery());
+        assertTrue(plan.getEstimatedReadUnits() > 0);
+    }
 }
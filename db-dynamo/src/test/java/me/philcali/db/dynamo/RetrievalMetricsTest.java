@@ -0,0 +1,86 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import me.philcali.db.api.Conditions;
+import me.philcali.db.api.QueryParams;
+
+public class RetrievalMetricsTest {
+    private RetrievalMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new RetrievalMetrics();
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+        final long median = histogram.getPercentile(0.5, TimeUnit.MICROSECONDS);
+        assertTrue("median " + median, median >= 500 && median <= 500 * 1.125);
+        final long p99 = histogram.getPercentile(0.99, TimeUnit.MICROSECONDS);
+        assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1000);
+        for (long value = 0; value < 100_000; value += 7) {
+            final int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testScanReportsCapacityAndWaste() {
+        final AmazonDynamoDB client = mock(AmazonDynamoDB.class);
+        final List<ScanRequest> requests = new ArrayList<>();
+        when(client.scan(any(ScanRequest.class))).then(invoke -> {
+            requests.add(invoke.getArgumentAt(0, ScanRequest.class));
+            return new ScanResult()
+                    .withItems(Collections.singletonMap("name", new AttributeValue("Philip")))
+                    .withCount(1)
+                    .withScannedCount(4)
+                    .withConsumedCapacity(new ConsumedCapacity().withTableName("People").withCapacityUnits(2.0));
+        });
+        final Table table = new DynamoDB(client).getTable("People");
+        final IRetrievalStrategy scan = new ScanRetrievalStrategy(metrics);
+        final QueryParams params = QueryParams.builder()
+                .withConditions(Conditions.attribute("name").equalsTo("Philip"))
+                .build();
+        scan.apply(params, table);
+        scan.apply(params, table);
+
+        assertEquals("TOTAL", requests.get(0).getReturnConsumedCapacity());
+        final RetrievalStatistics statistics = metrics.getStatistics(
+                new RetrievalTags("People", null, RetrievalEvent.SCAN));
+        assertEquals(2, statistics.getPages());
+        assertEquals(8, statistics.getScannedCount());
+        assertEquals(2, statistics.getReturnedCount());
+        assertEquals(4.0, statistics.getConsumedReadUnits(), 0.001);
+        assertEquals(0.75, statistics.getFilterWaste(), 0.001);
+        assertEquals(2, statistics.getLatency().getCount());
+        assertEquals(1, metrics.getStatistics().size());
+    }
+}
@@ -0,0 +1,170 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+public class TableExporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AmazonDynamoDB client;
+    private Table table;
+    private AtomicInteger firstSegmentScans;
+    private AtomicBoolean failSecondSegment;
+
+    @Before
+    public void setUp() {
+        client = mock(AmazonDynamoDB.class);
+        table = new DynamoDB(client).getTable("People");
+        firstSegmentScans = new AtomicInteger();
+        failSecondSegment = new AtomicBoolean(true);
+        when(client.scan(any(ScanRequest.class))).then(invoke -> {
+            final ScanRequest request = invoke.getArgumentAt(0, ScanRequest.class);
+            if (request.getSegment() == 1) {
+                if (failSecondSegment.get()) {
+                    throw new AmazonServiceException("Segment went away");
+                }
+                return new ScanResult().withItems(person(3)).withCount(1).withScannedCount(1);
+            }
+            firstSegmentScans.incrementAndGet();
+            if (Objects.isNull(request.getExclusiveStartKey())) {
+                return new ScanResult().withItems(person(1)).withCount(1).withScannedCount(1)
+                        .withLastEvaluatedKey(Collections.singletonMap("id", new AttributeValue().withN("1")));
+            }
+            return new ScanResult().withItems(person(2)).withCount(1).withScannedCount(1);
+        });
+    }
+
+    private static Map<String, AttributeValue> person(final int id) {
+        return Collections.singletonMap("id", new AttributeValue().withN(Integer.toString(id)));
+    }
+
+    @Test
+    public void testExportResumesFromCheckpoints() throws IOException {
+        final LocalExportSink sink = new LocalExportSink(folder.getRoot().toPath());
+        final TableExporter exporter = TableExporter.builder()
+                .withSink(sink)
+                .withPrefix("people/")
+                .withFormat(ExportFormat.BINARY)
+                .withCompression(true)
+                .withMaxFileItems(1)
+                .withTotalSegments(2)
+                .build();
+        try {
+            exporter.export(table);
+            fail("Expected the second segment to fail");
+        } catch (AmazonServiceException e) {
+            assertEquals(2, firstSegmentScans.get());
+        }
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("people/" + TableExporter.MANIFEST)));
+
+        failSecondSegment.set(false);
+        final ExportResult result = exporter.export(table);
+        assertEquals(2, firstSegmentScans.get());
+        assertEquals(2, result.getTotalSegments());
+        assertEquals(3, result.getItemCount());
+        assertEquals(Arrays.asList(
+                "people/segment-00000-part-00000.bin.gz",
+                "people/segment-00000-part-00001.bin.gz",
+                "people/segment-00001-part-00000.bin.gz"), result.getFiles());
+        assertEquals(result.getFiles(), Files.readAllLines(
+                folder.getRoot().toPath().resolve("people/" + TableExporter.MANIFEST), StandardCharsets.UTF_8));
+        final List<Integer> ids = new ArrayList<>();
+        for (final String file : result.getFiles()) {
+            try (InputStream input = new GZIPInputStream(sink.open(file).get());
+                    ExportFormat.ItemReader reader = ExportFormat.BINARY.reader(input)) {
+                for (Item item = reader.read(); Objects.nonNull(item); item = reader.read()) {
+                    ids.add(item.getInt("id"));
+                }
+            }
+        }
+        assertEquals(Arrays.asList(1, 2, 3), ids);
+    }
+
+    @Test
+    public void testExportsOnASingleThread() {
+        failSecondSegment.set(false);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final ExecutorService readExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final TableExporter.Builder builder = TableExporter.builder()
+                    .withSink(new LocalExportSink(folder.getRoot().toPath()))
+                    .withTotalSegments(2)
+                    .withExecutor(executor);
+            assertEquals(3, builder.withPrefix("inline/").build().export(table).getItemCount());
+            assertEquals(3, builder.withPrefix("overlapped/")
+                    .withReadExecutor(readExecutor)
+                    .build()
+                    .export(table)
+                    .getItemCount());
+        } finally {
+            executor.shutdownNow();
+            readExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBinaryFormatRoundTripsEveryType() throws IOException {
+        final Item item = new Item()
+                .withPrimaryKey("id", 1)
+                .withString("name", "Philip")
+                .withBinary("photo", new byte[] { 1, 2, 3 })
+                .withBoolean("active", true)
+                .withNull("nickname")
+                .withStringSet("tags", "a", "b")
+                .withNumberSet("scores", 1, 2.5)
+                .withBinarySet("keys", new byte[] { 4 }, new byte[] { 5 })
+                .withList("history", "x", 2)
+                .withMap("address", Collections.singletonMap("city", "Seattle"));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ExportFormat.ItemWriter writer = ExportFormat.BINARY.writer(output)) {
+            writer.write(item);
+        }
+        try (ExportFormat.ItemReader reader = ExportFormat.BINARY.reader(
+                new ByteArrayInputStream(output.toByteArray()))) {
+            final Item read = reader.read();
+            assertEquals(ItemUtils.toAttributeValues(item), ItemUtils.toAttributeValues(read));
+            assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), ByteBuffer.wrap(read.getBinary("photo")));
+            assertNull(reader.read());
+        }
+    }
+}
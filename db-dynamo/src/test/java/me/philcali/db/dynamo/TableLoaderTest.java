@@ -0,0 +1,154 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchWriteItemSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class TableLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DynamoDB db;
+    private LocalExportSink sink;
+    private Set<Integer> written;
+    private AtomicInteger requests;
+
+    @Before
+    public void setUp() {
+        db = mock(DynamoDB.class);
+        sink = new LocalExportSink(folder.getRoot().toPath());
+        written = Collections.synchronizedSet(new TreeSet<>());
+        requests = new AtomicInteger();
+        when(db.batchWriteItem(any(BatchWriteItemSpec.class))).then(invoke -> {
+            final BatchWriteItemSpec spec = invoke.getArgumentAt(0, BatchWriteItemSpec.class);
+            final BatchWriteItemResult result = new BatchWriteItemResult()
+                    .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.0));
+            if (requests.incrementAndGet() == 1) {
+                // Throttles the first item of the first request, which only the retry writes
+                final TableWriteItems writes = spec.getTableWriteItems().iterator().next();
+                final List<Item> items = new ArrayList<>(writes.getItemsToPut());
+                items.subList(1, items.size()).forEach(item -> written.add(item.getInt("id")));
+                result.addUnprocessedItemsEntry("People", Arrays.asList(new WriteRequest()
+                        .withPutRequest(new PutRequest().withItem(Collections.singletonMap("id",
+                                new AttributeValue().withN(Integer.toString(items.get(0).getInt("id"))))))));
+            } else if (Objects.nonNull(spec.getTableWriteItems())) {
+                spec.getTableWriteItems().forEach(writes -> writes.getItemsToPut()
+                        .forEach(item -> written.add(item.getInt("id"))));
+            } else {
+                spec.getUnprocessedItems().values().forEach(writes -> writes.forEach(write -> written.add(
+                        Integer.parseInt(write.getPutRequest().getItem().get("id").getN()))));
+            }
+            return new BatchWriteItemOutcome(result);
+        });
+    }
+
+    private TableLoader.Builder loader() {
+        return TableLoader.builder()
+                .withDynamoDB(db)
+                .withTableName("People")
+                .withKeyNames("id")
+                .withSource(sink)
+                .withBackoff(new ExponentialBackoff(1, 1));
+    }
+
+    private void writeLines(final String name, final int from, final int to) throws IOException {
+        try (OutputStream output = new GZIPOutputStream(sink.create(name))) {
+            for (int id = from; id < to; id++) {
+                output.write(("{\"id\":" + id + ",\"name\":\"person" + id + "\"}\n\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testLoadExportRetriesUnprocessedItems() throws IOException {
+        final List<String> files = new ArrayList<>();
+        for (int part = 0; part < 3; part++) {
+            final String name = String.format("people/segment-%05d-part-00000.bin", part);
+            try (ExportFormat.ItemWriter writer = ExportFormat.BINARY.writer(sink.create(name))) {
+                for (int id = part * 40; id < (part + 1) * 40; id++) {
+                    writer.write(new Item().withInt("id", id).withStringSet("tags", "a", "b"));
+                }
+            }
+            files.add(name);
+        }
+        try (OutputStream manifest = sink.create("people/" + TableExporter.MANIFEST)) {
+            manifest.write(String.join("\n", files).getBytes(StandardCharsets.UTF_8));
+        }
+        final AtomicInteger progress = new AtomicInteger();
+        final LoadStatistics statistics = loader()
+                .withChunkSize(30)
+                .withMaxConcurrency(3)
+                .withListener(update -> progress.incrementAndGet())
+                .build()
+                .loadExport("people/");
+        assertEquals(120, written.size());
+        assertEquals(3, statistics.getFiles());
+        assertEquals(120, statistics.getItemsRead());
+        assertEquals(120, statistics.getItemsWritten());
+        assertEquals(1, statistics.getBatches().getRetries());
+        assertEquals(requests.get(), (int) statistics.getBatches().getConsumedCapacity());
+        assertTrue(statistics.getBytes() > 0);
+        // Chunks never span files: 30, 10 for every file of 40
+        assertEquals(6, progress.get());
+    }
+
+    @Test
+    public void testLoadParsesCompressedLines() throws IOException {
+        writeLines("a.ndjson.gz", 0, 60);
+        writeLines("b.ndjson.gz", 60, 75);
+        final LoadStatistics statistics = loader()
+                .withChunkSize(25)
+                .build()
+                .load(Arrays.asList("a.ndjson.gz", "b.ndjson.gz"));
+        assertEquals(75, written.size());
+        assertEquals(75, statistics.getItemsWritten());
+        assertEquals(2, statistics.getFiles());
+    }
+
+    @Test
+    public void testLoadFailsAfterWritesInFlight() throws IOException {
+        writeLines("a.ndjson.gz", 0, 100);
+        doThrow(new AmazonServiceException("Table went away")).when(db).batchWriteItem(any(BatchWriteItemSpec.class));
+        try {
+            loader().withChunkSize(10).build().load(Arrays.asList("a.ndjson.gz"));
+            fail("Expected the writes to fail");
+        } catch (AmazonServiceException e) {
+            assertEquals("Table went away", e.getErrorMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+public class TableSchemaTest {
+    private static final TableDescription DESCRIPTION = new TableDescription()
+            .withTableName("People")
+            .withKeySchema(new KeySchemaElement("id", KeyType.HASH), new KeySchemaElement("updateTime", KeyType.RANGE))
+            .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                    .withIndexName("name-index")
+                    .withKeySchema(new KeySchemaElement("name", KeyType.HASH)))
+            .withLocalSecondaryIndexes(new LocalSecondaryIndexDescription()
+                    .withIndexName("age-index")
+                    .withKeySchema(new KeySchemaElement("id", KeyType.HASH), new KeySchemaElement("age", KeyType.RANGE)));
+
+    @Test
+    public void testDifferencesFromLiveTable() {
+        final TableSchema schema = TableSchema.builder()
+                .withHashKey("id")
+                .withRangeKey("updateTime")
+                .withIndex("name-index", "name")
+                .withIndex("age-index", "id", "age")
+                .build();
+        assertTrue(schema.differences(DESCRIPTION).isEmpty());
+        assertEquals(schema.getIndexRangeKeys(), TableSchema.fromDescription(DESCRIPTION).getIndexRangeKeys());
+        final TableSchema stale = TableSchema.builder()
+                .withHashKey("id")
+                .withIndex("age-index", "id")
+                .withIndex("place-index", "origin")
+                .build();
+        assertEquals(Arrays.asList(
+                "Table People has range key updateTime, not null",
+                "Table People has index age-index on id/age, not id/null",
+                "Table People has index name-index, which is not declared",
+                "Table People has no index place-index"), stale.differences(DESCRIPTION));
+    }
+
+    @Test
+    public void testVerifyOnlyWarns() {
+        final Table table = mock(Table.class);
+        when(table.getTableName()).thenReturn("People");
+        when(table.describe()).thenThrow(new AmazonServiceException("Not authorized"));
+        final TableSchema schema = TableSchema.builder().withHashKey("id").build();
+        assertEquals(Collections.emptyList(), schema.verify(table, Runnable::run).join());
+    }
+}
@@ -0,0 +1,122 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+
+public class ThroughputGovernorTest {
+    private AtomicLong now;
+    private List<Long> sleeps;
+    private ThroughputGovernor.Builder builder;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong();
+        sleeps = new ArrayList<>();
+        builder = ThroughputGovernor.builder()
+                .withInitialRate(10)
+                .withAdditiveIncrease(2)
+                .withBackoff(new ExponentialBackoff(1, 1))
+                .withClock(now::get)
+                .withSleeper(nanos -> {
+                    sleeps.add(nanos);
+                    now.addAndGet(nanos);
+                });
+    }
+
+    @Test
+    public void testThrottleCutsRateAndRetries() {
+        final ThroughputGovernor governor = builder.build();
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = governor.execute(() -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new ProvisionedThroughputExceededException("slow down");
+            }
+            return "done";
+        }, value -> 1);
+        assertEquals("done", result);
+        assertEquals(2, calls.get());
+        assertEquals(1, governor.getThrottleCount());
+        assertEquals(5, governor.getRate(), 0.001);
+    }
+
+    @Test
+    public void testThrottlesInOneIntervalCutOnce() {
+        final ThroughputGovernor governor = builder.build();
+        governor.throttled();
+        governor.throttled();
+        assertEquals(5, governor.getRate(), 0.001);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        governor.throttled();
+        assertEquals(2.5, governor.getRate(), 0.001);
+        assertEquals(3, governor.getThrottleCount());
+    }
+
+    @Test
+    public void testOnlyAdaptsTheRateWithoutRetries() {
+        final ThroughputGovernor governor = builder.withMaxRetries(0).build();
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            governor.execute(() -> {
+                calls.incrementAndGet();
+                throw new ProvisionedThroughputExceededException("slow down");
+            }, value -> 1);
+            fail("Expected the throttle to surface");
+        } catch (ProvisionedThroughputExceededException e) {
+            assertEquals(1, calls.get());
+            assertEquals(5, governor.getRate(), 0.001);
+            assertTrue(sleeps.isEmpty());
+        }
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        final ThroughputGovernor governor = builder.withMaxRetries(2).build();
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            governor.execute(() -> {
+                calls.incrementAndGet();
+                throw new ProvisionedThroughputExceededException("slow down");
+            }, value -> 1);
+            fail("Expected the throttle to surface");
+        } catch (ProvisionedThroughputExceededException e) {
+            assertEquals(3, calls.get());
+        }
+    }
+
+    @Test
+    public void testPacesByConsumedCapacityAndIncreasesAdditively() {
+        final ThroughputGovernor governor = builder.build();
+        for (int call = 0; call < 10; call++) {
+            governor.execute(() -> "page", value -> 5);
+        }
+        // 50 units at 10 to 14 units a second, with a full second of burst to start
+        final long elapsed = now.get();
+        assertTrue("elapsed " + elapsed, elapsed >= TimeUnit.MILLISECONDS.toNanos(2500));
+        assertTrue("elapsed " + elapsed, elapsed <= TimeUnit.SECONDS.toNanos(5));
+        assertTrue("rate " + governor.getRate(), governor.getRate() >= 14);
+    }
+
+    @Test
+    public void testBackgroundLeavesReserveToInteractive() {
+        final ThroughputGovernor governor = builder.withBackgroundReserve(0.5).build();
+        governor.execute(() -> "page", value -> 7);
+        sleeps.clear();
+        governor.execute(() -> "page", value -> 1);
+        assertTrue(sleeps.isEmpty());
+        governor.withPriority(ThroughputGovernor.Priority.BACKGROUND).execute(() -> "page", value -> 1);
+        final long waited = sleeps.stream().mapToLong(Long::longValue).sum();
+        assertTrue("waited " + waited, waited >= TimeUnit.MILLISECONDS.toNanos(300));
+    }
+}
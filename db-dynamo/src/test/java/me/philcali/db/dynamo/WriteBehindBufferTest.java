@@ -0,0 +1,222 @@
+package me.philcali.db.dynamo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchWriteItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.DeleteItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+
+public class WriteBehindBufferTest {
+    private DynamoDB db;
+    private List<TableWriteItems> requests;
+
+    @Before
+    public void setUp() {
+        db = mock(DynamoDB.class);
+        requests = Collections.synchronizedList(new ArrayList<>());
+        when(db.batchWriteItem(any(BatchWriteItemSpec.class))).then(invoke -> {
+            final BatchWriteItemSpec spec = invoke.getArgumentAt(0, BatchWriteItemSpec.class);
+            requests.addAll(spec.getTableWriteItems());
+            return new BatchWriteItemOutcome(new BatchWriteItemResult());
+        });
+    }
+
+    private WriteBehindBuffer.Builder buffer() {
+        return WriteBehindBuffer.builder()
+                .withDynamoDB(db)
+                .withTableName("Sessions")
+                .withKeyNames("id")
+                .withExecutor(Runnable::run)
+                .withWindow(1, TimeUnit.HOURS);
+    }
+
+    private static Item session(final int id, final int hits) {
+        return new Item().withInt("id", id).withInt("hits", hits);
+    }
+
+    @Test
+    public void testCoalescesWritesOfAKey() {
+        try (WriteBehindBuffer buffer = buffer().build()) {
+            for (int hits = 1; hits <= 3; hits++) {
+                buffer.put(session(1, hits));
+            }
+            buffer.put(session(2, 1));
+            buffer.put(session(3, 1));
+            buffer.delete(new PrimaryKey("id", 3L));
+            assertEquals(3, buffer.get(new PrimaryKey("id", 1), key -> null).getInt("hits"));
+            assertNull(buffer.get(new PrimaryKey("id", 3), key -> session(3, 1)));
+            assertEquals(4, buffer.get(new PrimaryKey("id", 4), key -> session(4, 4)).getInt("hits"));
+            assertTrue(requests.isEmpty());
+
+            buffer.flush();
+            assertEquals(1, requests.size());
+            assertEquals(2, requests.get(0).getItemsToPut().size());
+            assertEquals(1, requests.get(0).getPrimaryKeysToDelete().size());
+            assertEquals(6, buffer.getBufferedCount());
+            assertEquals(3, buffer.getCoalescedCount());
+            assertEquals(0, buffer.getPendingCount());
+            assertEquals(1, buffer.get(new PrimaryKey("id", 1), key -> session(1, 1)).getInt("hits"));
+        }
+    }
+
+    @Test
+    public void testFlushesOnBatchSize() {
+        try (WriteBehindBuffer buffer = buffer().withMaxBatchSize(2).build()) {
+            buffer.put(session(1, 1));
+            assertTrue(requests.isEmpty());
+            buffer.put(session(2, 1));
+            assertEquals(1, requests.size());
+            assertEquals(1, buffer.getFlushCount());
+        }
+    }
+
+    @Test
+    public void testFlushesInTheBackgroundOnASingleThread() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WriteBehindBuffer buffer = buffer().withExecutor(executor).withMaxBatchSize(2).build()) {
+            buffer.put(session(1, 1));
+            buffer.put(session(2, 1));
+            for (int wait = 0; wait < 100 && buffer.getFlushCount() == 0; wait++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, buffer.getFlushCount());
+            assertEquals(1, requests.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetriesTheWritesOfAFailedFlush() {
+        final List<Throwable> errors = new ArrayList<>();
+        try (WriteBehindBuffer buffer = buffer().withErrorHandler(errors::add).withMaxBatchSize(2).build()) {
+            buffer.put(session(1, 1));
+            doThrow(new ProvisionedThroughputExceededException("Slow down"))
+                    .when(db).batchWriteItem(any(BatchWriteItemSpec.class));
+            buffer.put(session(2, 1));
+            assertEquals(1, errors.size());
+            assertEquals(1, buffer.getFailedFlushCount());
+            assertEquals(2, buffer.getPendingCount());
+
+            buffer.put(session(1, 2));
+            doAnswer(invoke -> {
+                requests.addAll(invoke.getArgumentAt(0, BatchWriteItemSpec.class).getTableWriteItems());
+                return new BatchWriteItemOutcome(new BatchWriteItemResult());
+            }).when(db).batchWriteItem(any(BatchWriteItemSpec.class));
+            buffer.flush();
+            assertEquals(1, requests.size());
+            final List<Item> puts = new ArrayList<>(requests.get(0).getItemsToPut());
+            assertEquals(2, puts.size());
+            assertEquals(Arrays.asList(1, 2), Arrays.asList(puts.get(0).getInt("id"), puts.get(1).getInt("id")));
+            assertEquals(2, puts.get(0).getInt("hits"));
+            assertEquals(0, buffer.getPendingCount());
+        }
+    }
+
+    @Test
+    public void testDropsOnlyTheWritesDynamoDBRejects() {
+        doAnswer(invoke -> {
+            final BatchWriteItemSpec spec = invoke.getArgumentAt(0, BatchWriteItemSpec.class);
+            final TableWriteItems writes = spec.getTableWriteItems().iterator().next();
+            if (writes.getItemsToPut().stream().anyMatch(item -> item.getInt("id") == 2)) {
+                final AmazonServiceException e = new AmazonServiceException("Item size has exceeded the maximum");
+                e.setErrorCode("ValidationException");
+                e.setErrorType(AmazonServiceException.ErrorType.Client);
+                throw e;
+            }
+            requests.add(writes);
+            return new BatchWriteItemOutcome(new BatchWriteItemResult());
+        }).when(db).batchWriteItem(any(BatchWriteItemSpec.class));
+        final List<Throwable> errors = new ArrayList<>();
+        try (WriteBehindBuffer buffer = buffer().withErrorHandler(errors::add).build()) {
+            buffer.put(session(1, 1));
+            buffer.put(session(2, 1));
+            buffer.put(session(3, 1));
+            buffer.flush();
+            assertEquals(2, requests.size());
+            assertEquals(1, errors.size());
+            assertEquals(1, buffer.getDroppedCount());
+            assertEquals(0, buffer.getPendingCount());
+            assertEquals(0, buffer.getFailedFlushCount());
+
+            buffer.put(session(4, 1));
+            buffer.flush();
+            assertEquals(3, requests.size());
+        }
+    }
+
+    @Test
+    public void testLeavesConditionalWritesToDynamoDB() {
+        assertTrue(WriteBehindBuffer.isBufferable(new PutItemSpec().withItem(session(1, 1))));
+        assertFalse(WriteBehindBuffer.isBufferable(new PutItemSpec().withItem(session(1, 1))
+                .withConditionExpression("attribute_not_exists(id)")));
+        assertTrue(WriteBehindBuffer.isBufferable(new DeleteItemSpec().withPrimaryKey("id", 1)));
+        assertFalse(WriteBehindBuffer.isBufferable(new DeleteItemSpec().withPrimaryKey("id", 1)
+                .withConditionExpression("hits > :hits")));
+
+        final ItemDiff diff = ItemDiff.between(null, session(1, 2), Arrays.asList("id"));
+        assertTrue(WriteBehindBuffer.isMergeable(diff.toUpdateItemSpec(), diff));
+        assertFalse(WriteBehindBuffer.isMergeable(diff.toUpdateItemSpec()
+                .withConditionExpression("attribute_exists(#k0) AND hits < :v0"), diff));
+        assertFalse(WriteBehindBuffer.isMergeable(
+                ItemDiff.between(null, session(1, 3), Arrays.asList("id")).toUpdateItemSpec(), diff));
+    }
+
+    @Test
+    public void testMergesAndReadsThroughTheBuffer() {
+        final WriteBehindBuffer buffer = buffer().build();
+        assertNull(buffer.merge(session(1, 0), item -> item.withInt("hits", 10)));
+        buffer.put(session(1, 1));
+        final Item merged = buffer.merge(session(1, 0), item -> Item.fromMap(item.asMap()).withString("name", "a"));
+        assertEquals("a", merged.getString("name"));
+        buffer.put(session(2, 2));
+        buffer.delete(new PrimaryKey("id", 2));
+        final List<Item> items = buffer.getAll(Arrays.asList(
+                new PrimaryKey("id", 3), new PrimaryKey("id", 2), new PrimaryKey("id", 1)),
+                keys -> {
+                    assertEquals(1, keys.size());
+                    return Arrays.asList(session(3, 3));
+                });
+        assertEquals(Arrays.asList(3, 1), Arrays.asList(items.get(0).getInt("id"), items.get(1).getInt("id")));
+
+        buffer.close();
+        assertEquals(1, requests.size());
+        assertTrue(requests.get(0).getItemsToPut().stream()
+                .anyMatch(item -> Objects.equals("a", item.getString("name"))));
+        try {
+            buffer.put(session(1, 1));
+            fail("Expected the closed buffer to refuse writes");
+        } catch (IllegalStateException e) {
+            assertEquals("The write behind buffer is closed", e.getMessage());
+        }
+    }
+}
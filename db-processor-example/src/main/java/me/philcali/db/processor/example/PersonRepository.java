@@ -1,15 +1,20 @@
 package me.philcali.db.processor.example;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.amazonaws.SdkBaseException;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 
+import me.philcali.db.annotation.Cache;
 import me.philcali.db.annotation.ExceptionTranslation;
 import me.philcali.db.annotation.ExceptionTranslations;
 import me.philcali.db.annotation.Key;
 import me.philcali.db.annotation.Repository;
 import me.philcali.db.annotation.Repository.Action;
+import me.philcali.db.annotation.Tracking;
 import me.philcali.db.api.QueryParams;
 import me.philcali.db.api.QueryResult;
 import me.philcali.db.processor.example.exception.PersonAlreadyExistsException;
@@ -17,7 +22,11 @@ import me.philcali.db.processor.example.exception.PersonNotFoundException;
 import me.philcali.db.processor.example.exception.PersonStorageException;
 import me.philcali.zero.lombok.example.Person;
 
-@Repository(keys = @Key(partition = "name"))
+@Repository(
+        keys = @Key(partition = "name"),
+        cache = @Cache(maxEntries = 1000, ttlSeconds = 60),
+        listCache = @Cache(maxBytes = 1024 * 1024, ttlSeconds = 5),
+        tracking = @Tracking(maxEntries = 1000))
 @ExceptionTranslations({
     @ExceptionTranslation(source = SdkBaseException.class, destination = PersonStorageException.class)
 })
@@ -27,6 +36,10 @@ public interface PersonRepository {
 
     QueryResult<Person> list(QueryParams params) throws PersonStorageException;
 
+    Stream<Person> listAll(QueryParams params) throws PersonStorageException;
+
+    <P> QueryResult<P> listAs(QueryParams params, Class<P> projectionType) throws PersonStorageException;
+
     void delete(String name) throws PersonStorageException;
 
     @ExceptionTranslation(source = ConditionalCheckFailedException.class, destination = PersonAlreadyExistsException.class)
@@ -36,4 +49,10 @@ public interface PersonRepository {
     Person update(Person partial) throws PersonNotFoundException, PersonStorageException;
 
     Person put(Person completePerson) throws PersonStorageException;
+
+    List<Person> batchGet(Collection<String> names) throws PersonStorageException;
+
+    void batchPut(Collection<Person> people) throws PersonStorageException;
+
+    void batchDelete(Collection<String> names) throws PersonStorageException;
 }
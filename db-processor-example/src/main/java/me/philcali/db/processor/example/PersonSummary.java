@@ -0,0 +1,22 @@
+package me.philcali.db.processor.example;
+
+public class PersonSummary {
+    private String name;
+    private int age;
+
+    public int getAge() {
+        return age;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setAge(final int age) {
+        this.age = age;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+}
@@ -3,7 +3,10 @@ package me.philcali.db.processor.example;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +47,23 @@ public class PersonRepositoryTest {
         assertTrue(people.size() >= 3);
     }
 
+    @Test
+    public void testListAllWalksEveryPage() {
+        try (Stream<Person> people = repo.listAll(QueryParams.builder().withMaxSize(1).build())) {
+            final List<String> names = people.map(Person::getName).collect(Collectors.toList());
+            assertTrue(names.size() >= 3);
+            assertTrue(names.contains("Philip Cali"));
+        }
+    }
+
+    @Test
+    public void testListAsProjection() {
+        List<PersonSummary> people = repo.listAs(QueryParams.builder().withMaxSize(10).build(), PersonSummary.class)
+                .getItems();
+        assertTrue(people.size() >= 3);
+        assertTrue(people.stream().allMatch(person -> person.getName() != null));
+    }
+
     @Test(expected = PersonAlreadyExistsException.class)
     public void testCreateConflict() {
         repo.create(PersonData.builder().withName("Philip Cali").withDead(true).build());
@@ -67,6 +87,17 @@ public class PersonRepositoryTest {
         repo.delete(dude.getName());
     }
 
+    @Test
+    public void testBatchLifecycle() {
+        final List<Person> people = Arrays.asList(
+                PersonData.builder().withName("Merry").withAge(36).withDead(false).build(),
+                PersonData.builder().withName("Pippin").withAge(28).withDead(false).build());
+        repo.batchPut(people);
+        assertEquals(people, repo.batchGet(Arrays.asList("Merry", "Nobody", "Pippin")));
+        repo.batchDelete(Arrays.asList("Merry", "Pippin"));
+        assertTrue(repo.batchGet(Arrays.asList("Merry", "Pippin")).isEmpty());
+    }
+
     @Test
     public void testGet() {
         Person philip = repo.get("Philip Cali").get();
@@ -78,6 +109,47 @@ public class PersonRepositoryTest {
         repo.update(PersonData.builder().withName("Fartso").withAge(50).build());
     }
 
+    @Test
+    public void testListIsCachedUntilWritten() {
+        final PersonRepositoryDynamo cached = (PersonRepositoryDynamo) repo;
+        final QueryParams params = QueryParams.builder().withMaxSize(5).build();
+        repo.list(params);
+        repo.list(QueryParams.builder().withMaxSize(5).build());
+        assertEquals(1, cached.getListCacheStatistics().getHitCount());
+        repo.update(PersonData.builder().withName("Philip Cali").withAge(33).build());
+        repo.list(params);
+        assertEquals(2, cached.getListCacheStatistics().getMissCount());
+    }
+
+    @Test
+    public void testGetIsCachedUntilUpdated() {
+        final PersonRepositoryDynamo cached = (PersonRepositoryDynamo) repo;
+        assertEquals("Philip Cali", repo.get("Philip Cali").get().getName());
+        repo.get("Philip Cali");
+        assertEquals(1, cached.getCacheStatistics().getHitCount());
+        repo.update(PersonData.builder().withName("Philip Cali").withAge(34).build());
+        assertEquals(34, repo.get("Philip Cali").get().getAge());
+        assertEquals(2, cached.getCacheStatistics().getMissCount());
+    }
+
+    @Test
+    public void testTrackedUpdateKeepsUnsetProperties() {
+        final Person sam = PersonData.builder()
+                .withName("Samwise Gamgee")
+                .withAge(38)
+                .withDead(false)
+                .addScopes("gardening")
+                .build();
+        repo.put(sam);
+        final PersonRepository reader = new PersonRepositoryDynamo("GeneratedPeople", db);
+        assertEquals(sam, reader.get("Samwise Gamgee").get());
+        final Person updated = reader.update(PersonData.builder().withName("Samwise Gamgee").withAge(39).build());
+        assertEquals(39, updated.getAge());
+        assertEquals(Arrays.asList("gardening"), updated.getScopes());
+        assertEquals(updated, repo.get("Samwise Gamgee").get());
+        repo.delete("Samwise Gamgee");
+    }
+
     @Test
     public void testUpdate() {
         assertEquals(33, repo.update(PersonData.builder().withName("Philip Cali").withAge(33).build()).getAge());
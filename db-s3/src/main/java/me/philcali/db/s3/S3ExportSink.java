@@ -0,0 +1,143 @@
+package me.philcali.db.s3;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+import me.philcali.db.dynamo.IExportSink;
+
+/**
+ * Puts export files in a bucket, under the key prefix. Every file is spooled
+ * to a local temporary file and uploaded with a single put when it is closed,
+ * so the object only exists once it is whole. Closing blocks on the upload,
+ * which holds the export back while S3 catches up.
+ */
+public class S3ExportSink implements IExportSink {
+    private static final int NOT_FOUND = 404;
+    private static final String SPOOL_PREFIX = "db-export";
+
+    public static final class Builder {
+        private AmazonS3 s3;
+        private String bucketName;
+        private String keyPrefix;
+        private Path spoolDirectory;
+
+        public Builder withBucketName(final String bucketName) {
+            this.bucketName = bucketName;
+            return this;
+        }
+
+        public Builder withKeyPrefix(final String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+            return this;
+        }
+
+        public Builder withS3(final AmazonS3 s3) {
+            this.s3 = s3;
+            return this;
+        }
+
+        /**
+         * Where files are spooled before their upload; the default temporary directory otherwise.
+         */
+        public Builder withSpoolDirectory(final Path spoolDirectory) {
+            this.spoolDirectory = spoolDirectory;
+            return this;
+        }
+
+        public S3ExportSink build() {
+            Objects.requireNonNull(s3);
+            Objects.requireNonNull(bucketName);
+            return new S3ExportSink(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final String keyPrefix;
+    private final Path spoolDirectory;
+
+    public S3ExportSink(final Builder builder) {
+        this.s3 = builder.s3;
+        this.bucketName = builder.bucketName;
+        this.keyPrefix = Optional.ofNullable(builder.keyPrefix).orElse("");
+        this.spoolDirectory = builder.spoolDirectory;
+    }
+
+    @Override
+    public ExportFile create(final String name) throws IOException {
+        final Path spool = Objects.isNull(spoolDirectory)
+                ? Files.createTempFile(SPOOL_PREFIX, null)
+                : Files.createTempFile(spoolDirectory, SPOOL_PREFIX, null);
+        final OutputStream output = new BufferedOutputStream(Files.newOutputStream(spool));
+        return new ExportFile() {
+            private boolean closed;
+
+            @Override
+            public void write(final int value) throws IOException {
+                output.write(value);
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                output.write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                output.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    output.close();
+                    s3.putObject(bucketName, keyPrefix + name, spool.toFile());
+                } finally {
+                    Files.deleteIfExists(spool);
+                }
+            }
+
+            @Override
+            public void abort() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    output.close();
+                } finally {
+                    Files.deleteIfExists(spool);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Optional<InputStream> open(final String name) throws IOException {
+        try {
+            return Optional.of(s3.getObject(bucketName, keyPrefix + name).getObjectContent());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+}